@@ -0,0 +1,42 @@
+package com.stockmanagement.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.async.AsyncWebRequest;
+import org.springframework.web.context.request.async.CallableProcessingInterceptor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Gives streaming exports their own async timeout. Other async requests keep the container's
+ * default; a request marked with EXPORT_ATTRIBUTE gets export.timeout-ms instead, so a large
+ * download is not cut off while a stalled one still ends.
+ */
+@Configuration
+public class AsyncConfig implements WebMvcConfigurer {
+    public static final String EXPORT_ATTRIBUTE = AsyncConfig.class.getName() + ".export";
+    
+    private final long exportTimeoutMillis;
+    
+    public AsyncConfig(@Value("${export.timeout-ms:1800000}") long exportTimeoutMillis) {
+        this.exportTimeoutMillis = exportTimeoutMillis;
+    }
+    
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.registerCallableInterceptors(new CallableProcessingInterceptor() {
+            // Runs before the request goes async, while its timeout can still change
+            @Override
+            public <T> void beforeConcurrentHandling(NativeWebRequest request, Callable<T> task) {
+                if (request instanceof AsyncWebRequest asyncRequest
+                        && request.getAttribute(EXPORT_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST) != null) {
+                    asyncRequest.setTimeout(exportTimeoutMillis);
+                }
+            }
+        });
+    }
+}
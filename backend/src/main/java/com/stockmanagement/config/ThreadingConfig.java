@@ -0,0 +1,22 @@
+package com.stockmanagement.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Fails startup when virtual threads are requested on a JVM older than Java 21. Spring Boot
+ * ignores spring.threads.virtual.enabled there and would quietly serve every request from the
+ * platform-thread pool instead.
+ */
+@Configuration
+public class ThreadingConfig {
+    private static final int VIRTUAL_THREADS_JAVA_VERSION = 21;
+    
+    public ThreadingConfig(@Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        int javaVersion = Runtime.version().feature();
+        if (virtualThreads && javaVersion < VIRTUAL_THREADS_JAVA_VERSION) {
+            throw new IllegalStateException("Virtual threads (spring.threads.virtual.enabled / VIRTUAL_THREADS) need Java " +
+                VIRTUAL_THREADS_JAVA_VERSION + "+, but this JVM is Java " + javaVersion);
+        }
+    }
+}
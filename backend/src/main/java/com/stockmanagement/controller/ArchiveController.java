@@ -0,0 +1,40 @@
+package com.stockmanagement.controller;
+
+import com.stockmanagement.dto.ApiResponse;
+import com.stockmanagement.entity.ArchiveSegment;
+import com.stockmanagement.service.ArchiveService;
+import com.stockmanagement.service.ArchiveStore;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/archive")
+@RequiredArgsConstructor
+@PreAuthorize("hasRole('ADMIN')")
+@CrossOrigin(origins = "*")
+public class ArchiveController {
+    
+    private final ArchiveService archiveService;
+    private final ArchiveStore archiveStore;
+    
+    @GetMapping("/segments")
+    public ResponseEntity<ApiResponse<List<ArchiveSegment>>> getSegments() {
+        List<ArchiveSegment> segments = new ArrayList<>(archiveStore.getSegments(ArchiveStore.BILLS));
+        segments.addAll(archiveStore.getSegments(ArchiveStore.STOCK_TRANSACTIONS));
+        return ResponseEntity.ok(ApiResponse.success(segments));
+    }
+    
+    @PostMapping("/run")
+    public ResponseEntity<ApiResponse<List<ArchiveSegment>>> archive() {
+        try {
+            return ResponseEntity.ok(ApiResponse.success("Archive run completed", archiveService.archive()));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
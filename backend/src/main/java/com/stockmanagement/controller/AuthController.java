@@ -1,50 +1,47 @@
 package com.stockmanagement.controller;
 
 import com.stockmanagement.dto.ApiResponse;
+import com.stockmanagement.dto.ChangePasswordRequest;
 import com.stockmanagement.dto.LoginRequest;
 import com.stockmanagement.dto.LoginResponse;
 import com.stockmanagement.entity.User;
-import com.stockmanagement.security.JwtUtil;
+import com.stockmanagement.service.LoginService;
 import com.stockmanagement.service.UserService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
-import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
-import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/auth")
 @RequiredArgsConstructor
 @CrossOrigin(origins = "*")
 public class AuthController {
     
-    private final AuthenticationManager authenticationManager;
-    private final UserDetailsService userDetailsService;
-    private final JwtUtil jwtUtil;
+    private final LoginService loginService;
     private final UserService userService;
     
     @PostMapping("/login")
-    public ResponseEntity<ApiResponse<LoginResponse>> login(@RequestBody LoginRequest request) {
-        try {
-            authenticationManager.authenticate(
-                new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword())
-            );
-        } catch (BadCredentialsException e) {
-            return ResponseEntity.badRequest()
-                .body(ApiResponse.error("Invalid username or password"));
-        }
-        
-        final UserDetails userDetails = userDetailsService.loadUserByUsername(request.getUsername());
-        final String jwt = jwtUtil.generateToken(userDetails);
-        
-        User user = userService.findByUsername(request.getUsername()).orElseThrow();
-        userService.updateLastLogin(request.getUsername());
-        
-        LoginResponse response = new LoginResponse(jwt, user.getUsername(), user.getFullName(), user.getRole());
-        return ResponseEntity.ok(ApiResponse.success("Login successful", response));
+    public CompletableFuture<ResponseEntity<ApiResponse<LoginResponse>>> login(@RequestBody LoginRequest request) {
+        return loginService.login(request)
+            .thenApply(response -> ResponseEntity.ok(ApiResponse.success("Login successful", response)))
+            .exceptionally(e -> {
+                Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+                if (cause instanceof BadCredentialsException) {
+                    return ResponseEntity.badRequest().body(ApiResponse.error("Invalid username or password"));
+                }
+                if (cause instanceof RejectedExecutionException) {
+                    return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(ApiResponse.error("Too many logins in progress, please retry"));
+                }
+                throw cause instanceof RuntimeException runtime ? runtime : new CompletionException(cause);
+            });
     }
     
     @PostMapping("/register")
@@ -57,4 +54,29 @@ public class AuthController {
         User createdUser = userService.createUser(user);
         return ResponseEntity.ok(ApiResponse.success("User registered successfully", createdUser));
     }
+    
+    // Revokes the presented token only; other sessions of the user stay signed in
+    @PostMapping("/logout")
+    public ResponseEntity<ApiResponse<Void>> logout(@RequestHeader(value = "Authorization", required = false) String authorization,
+                                                    Authentication authentication) {
+        if (authentication == null || authorization == null || !authorization.startsWith("Bearer ")) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("Not logged in"));
+        }
+        userService.logout(authorization.substring(7));
+        return ResponseEntity.ok(ApiResponse.success("Logged out", null));
+    }
+    
+    @PostMapping("/change-password")
+    public ResponseEntity<ApiResponse<Void>> changePassword(@RequestBody ChangePasswordRequest request,
+                                                            Authentication authentication) {
+        if (authentication == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error("Not logged in"));
+        }
+        try {
+            userService.changePassword(authentication.getName(), request.getCurrentPassword(), request.getNewPassword());
+            return ResponseEntity.ok(ApiResponse.success("Password changed, please log in again", null));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
 }
@@ -1,17 +1,28 @@
 package com.stockmanagement.controller;
 
+import com.stockmanagement.config.AsyncConfig;
 import com.stockmanagement.dto.ApiResponse;
 import com.stockmanagement.dto.BillRequest;
+import com.stockmanagement.dto.BillResponse;
+import com.stockmanagement.dto.CursorPage;
 import com.stockmanagement.entity.Bill;
 import com.stockmanagement.entity.User;
 import com.stockmanagement.repository.UserRepository;
 import com.stockmanagement.service.BillingService;
+import com.stockmanagement.service.ExportFormat;
+import com.stockmanagement.service.ExportService;
+import com.stockmanagement.service.IdempotencyStore;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
 @RestController
 @RequestMapping("/api/bills")
@@ -20,36 +31,72 @@ import java.util.List;
 public class BillingController {
     
     private final BillingService billingService;
+    private final ExportService exportService;
     private final UserRepository userRepository;
+    private final IdempotencyStore idempotencyStore;
     
     @PostMapping
-    public ResponseEntity<ApiResponse<Bill>> createBill(
+    public ResponseEntity<ApiResponse<BillResponse>> createBill(
             @RequestBody BillRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
             Authentication authentication) {
+        return idempotencyStore.execute(idempotencyKey, authentication.getName() + ":bill", request, () -> {
+            try {
+                User user = userRepository.findByUsername(authentication.getName()).orElseThrow();
+                Bill bill = billingService.createBill(request, user);
+                return ResponseEntity.ok(ApiResponse.success("Bill created successfully", BillResponse.from(bill)));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+            }
+        });
+    }
+    
+    @GetMapping
+    public ResponseEntity<ApiResponse<CursorPage<BillResponse>>> getBills(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
         try {
-            User user = userRepository.findByUsername(authentication.getName()).orElseThrow();
-            Bill bill = billingService.createBill(request, user);
-            return ResponseEntity.ok(ApiResponse.success("Bill created successfully", bill));
-        } catch (Exception e) {
+            CursorPage<BillResponse> bills = billingService.getBills(cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success(bills));
+        } catch (IllegalArgumentException e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
     
-    @GetMapping
-    public ResponseEntity<ApiResponse<List<Bill>>> getAllBills() {
-        List<Bill> bills = billingService.getAllBills();
-        return ResponseEntity.ok(ApiResponse.success(bills));
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportBills(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletRequest request) {
+        try {
+            ExportFormat exportFormat = ExportFormat.fromParam(format);
+            request.setAttribute(AsyncConfig.EXPORT_ATTRIBUTE, Boolean.TRUE);
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            StreamingResponseBody body = out -> exportService.exportBills(start, end, exportFormat, gzip, out);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"bills." + exportFormat.getExtension() + "\"");
+            if (gzip) {
+                response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            return response.body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     @GetMapping("/{id}")
-    public ResponseEntity<ApiResponse<Bill>> getBillById(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<BillResponse>> getBillById(@PathVariable Long id) {
         return billingService.getBillById(id)
             .map(bill -> ResponseEntity.ok(ApiResponse.success(bill)))
             .orElse(ResponseEntity.notFound().build());
     }
     
     @GetMapping("/number/{billNumber}")
-    public ResponseEntity<ApiResponse<Bill>> getBillByNumber(@PathVariable String billNumber) {
+    public ResponseEntity<ApiResponse<BillResponse>> getBillByNumber(@PathVariable String billNumber) {
         return billingService.getBillByNumber(billNumber)
             .map(bill -> ResponseEntity.ok(ApiResponse.success(bill)))
             .orElse(ResponseEntity.notFound().build());
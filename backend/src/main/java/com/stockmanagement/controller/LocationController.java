@@ -0,0 +1,36 @@
+package com.stockmanagement.controller;
+
+import com.stockmanagement.dto.ApiResponse;
+import com.stockmanagement.entity.Location;
+import com.stockmanagement.service.LocationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/locations")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class LocationController {
+    
+    private final LocationService locationService;
+    
+    @GetMapping
+    public ResponseEntity<ApiResponse<List<Location>>> getLocations() {
+        return ResponseEntity.ok(ApiResponse.success(locationService.getLocations()));
+    }
+    
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Location>> createLocation(@RequestBody Location location) {
+        try {
+            Location created = locationService.createLocation(location);
+            return ResponseEntity.ok(ApiResponse.success("Location created successfully", created));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
@@ -1,11 +1,18 @@
 package com.stockmanagement.controller;
 
 import com.stockmanagement.dto.ApiResponse;
+import com.stockmanagement.dto.CatalogChanges;
+import com.stockmanagement.dto.ProductStock;
 import com.stockmanagement.entity.Product;
+import com.stockmanagement.service.CatalogVersions;
+import com.stockmanagement.service.LowStockRegistry;
 import com.stockmanagement.service.ProductService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -16,6 +23,8 @@ import java.util.List;
 public class ProductController {
     
     private final ProductService productService;
+    private final LowStockRegistry lowStockRegistry;
+    private final CatalogVersions catalogVersions;
     
     @PostMapping
     public ResponseEntity<ApiResponse<Product>> createProduct(@RequestBody Product product) {
@@ -27,16 +36,49 @@ public class ProductController {
         }
     }
     
+    // The ETag is the catalog version read before loading, so it never claims newer data than it holds
     @GetMapping
-    public ResponseEntity<ApiResponse<List<Product>>> getAllProducts() {
+    public ResponseEntity<ApiResponse<List<Product>>> getAllProducts(WebRequest request) {
+        String etag = CatalogVersions.etag(catalogVersions.current());
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
         List<Product> products = productService.getAllProducts();
-        return ResponseEntity.ok(ApiResponse.success(products));
+        return ResponseEntity.ok().eTag(etag).body(ApiResponse.success(products));
+    }
+    
+    // One location's view of the catalog, with that location's stock instead of the total
+    @GetMapping(params = "locationId")
+    public ResponseEntity<ApiResponse<List<ProductStock>>> getProductsAtLocation(@RequestParam Long locationId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(productService.getProductsAtLocation(locationId, false)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @GetMapping(value = "/active", params = "locationId")
+    public ResponseEntity<ApiResponse<List<ProductStock>>> getActiveProductsAtLocation(@RequestParam Long locationId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(productService.getProductsAtLocation(locationId, true)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
     }
     
     @GetMapping("/active")
-    public ResponseEntity<ApiResponse<List<Product>>> getActiveProducts() {
+    public ResponseEntity<ApiResponse<List<Product>>> getActiveProducts(WebRequest request) {
+        String etag = CatalogVersions.etag(catalogVersions.current());
+        if (request.checkNotModified(etag)) {
+            return null;
+        }
         List<Product> products = productService.getActiveProducts();
-        return ResponseEntity.ok(ApiResponse.success(products));
+        return ResponseEntity.ok().eTag(etag).body(ApiResponse.success(products));
+    }
+    
+    @GetMapping("/changes-since")
+    public ResponseEntity<ApiResponse<CatalogChanges>> getChangesSince(@RequestParam long version) {
+        return ResponseEntity.ok(ApiResponse.success(productService.getChangesSince(version)));
     }
     
     @GetMapping("/{id}")
@@ -52,9 +94,25 @@ public class ProductController {
         return ResponseEntity.ok(ApiResponse.success(products));
     }
     
+    @GetMapping(value = "/low-stock", params = "locationId")
+    public ResponseEntity<ApiResponse<List<ProductStock>>> getLowStockProductsAtLocation(@RequestParam Long locationId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(productService.getLowStockProductsAtLocation(locationId)));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @GetMapping(value = "/low-stock/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLowStockEvents() {
+        return lowStockRegistry.subscribe();
+    }
+    
     @GetMapping("/search")
-    public ResponseEntity<ApiResponse<List<Product>>> searchProducts(@RequestParam String keyword) {
-        List<Product> products = productService.searchProducts(keyword);
+    public ResponseEntity<ApiResponse<List<Product>>> searchProducts(
+            @RequestParam String keyword,
+            @RequestParam(required = false) Integer limit) {
+        List<Product> products = productService.searchProducts(keyword, limit);
         return ResponseEntity.ok(ApiResponse.success(products));
     }
     
@@ -0,0 +1,82 @@
+package com.stockmanagement.controller;
+
+import com.stockmanagement.dto.ApiResponse;
+import com.stockmanagement.dto.BackfillResult;
+import com.stockmanagement.dto.ForecastRecomputeResult;
+import com.stockmanagement.dto.ReorderSuggestion;
+import com.stockmanagement.dto.SalesReport;
+import com.stockmanagement.service.DemandForecastService;
+import com.stockmanagement.service.ReportGrouping;
+import com.stockmanagement.service.SalesRollupService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/reports")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ReportController {
+    
+    private final SalesRollupService salesRollupService;
+    private final DemandForecastService demandForecastService;
+    
+    @GetMapping("/sales")
+    public ResponseEntity<ApiResponse<SalesReport>> getSalesReport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "day") String groupBy) {
+        try {
+            SalesReport report = salesRollupService.getSalesReport(from, to, ReportGrouping.fromParam(groupBy));
+            return ResponseEntity.ok(ApiResponse.success(report));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/sales/backfill")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<BackfillResult>> backfillSales(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        try {
+            BackfillResult result = salesRollupService.backfill(from, to);
+            return ResponseEntity.ok(ApiResponse.success("Sales rollups rebuilt", result));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    // Products at or below their reorder point, or every active product with all=true
+    @GetMapping("/reorder")
+    public ResponseEntity<ApiResponse<List<ReorderSuggestion>>> getReorderSuggestions(
+            @RequestParam(defaultValue = "false") boolean all) {
+        return ResponseEntity.ok(ApiResponse.success(demandForecastService.getSuggestions(!all)));
+    }
+    
+    @GetMapping("/reorder/product/{productId}")
+    public ResponseEntity<ApiResponse<ReorderSuggestion>> getReorderSuggestion(@PathVariable Long productId) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(demandForecastService.getSuggestion(productId)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/reorder/recompute")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<ForecastRecomputeResult>> recomputeForecasts(
+            @RequestParam(defaultValue = "180") int days) {
+        try {
+            ForecastRecomputeResult result = demandForecastService.recompute(days);
+            return ResponseEntity.ok(ApiResponse.success("Demand forecasts recomputed", result));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
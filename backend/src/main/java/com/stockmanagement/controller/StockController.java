@@ -1,17 +1,38 @@
 package com.stockmanagement.controller;
 
+import com.stockmanagement.config.AsyncConfig;
 import com.stockmanagement.dto.ApiResponse;
+import com.stockmanagement.dto.CursorPage;
+import com.stockmanagement.dto.ImportResult;
+import com.stockmanagement.dto.ProductStock;
+import com.stockmanagement.dto.StockHistory;
+import com.stockmanagement.dto.StockTransferRequest;
 import com.stockmanagement.dto.StockUpdateRequest;
 import com.stockmanagement.entity.StockTransaction;
 import com.stockmanagement.entity.User;
 import com.stockmanagement.repository.UserRepository;
+import com.stockmanagement.service.ExportFormat;
+import com.stockmanagement.service.ExportService;
+import com.stockmanagement.service.IdempotencyStore;
+import com.stockmanagement.service.ImportService;
+import com.stockmanagement.service.StockHistoryService;
 import com.stockmanagement.service.StockService;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.security.core.Authentication;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 @RestController
 @RequestMapping("/api/stock")
@@ -20,31 +41,143 @@ import java.util.List;
 public class StockController {
     
     private final StockService stockService;
+    private final ExportService exportService;
+    private final ImportService importService;
+    private final StockHistoryService stockHistoryService;
     private final UserRepository userRepository;
+    private final IdempotencyStore idempotencyStore;
     
     @PostMapping("/update")
     public ResponseEntity<ApiResponse<StockTransaction>> updateStock(
             @RequestBody StockUpdateRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        return idempotencyStore.execute(idempotencyKey, authentication.getName() + ":stock-update", request, () -> {
+            try {
+                User user = userRepository.findByUsername(authentication.getName()).orElseThrow();
+                StockTransaction transaction = stockService.updateStock(request, user);
+                return ResponseEntity.ok(ApiResponse.success("Stock updated successfully", transaction));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+            }
+        });
+    }
+    
+    @PostMapping("/transfer")
+    public ResponseEntity<ApiResponse<List<StockTransaction>>> transferStock(
+            @RequestBody StockTransferRequest request,
+            @RequestHeader(value = IdempotencyStore.HEADER, required = false) String idempotencyKey,
+            Authentication authentication) {
+        return idempotencyStore.execute(idempotencyKey, authentication.getName() + ":stock-transfer", request, () -> {
+            try {
+                User user = userRepository.findByUsername(authentication.getName()).orElseThrow();
+                List<StockTransaction> transactions = stockService.transferStock(request, user);
+                return ResponseEntity.ok(ApiResponse.success("Stock transferred successfully", transactions));
+            } catch (Exception e) {
+                return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+            }
+        });
+    }
+    
+    @GetMapping("/locations/product/{productId}")
+    public ResponseEntity<ApiResponse<List<ProductStock>>> getStockByLocation(@PathVariable Long productId) {
+        return ResponseEntity.ok(ApiResponse.success(stockService.getStockByLocation(productId)));
+    }
+    
+    @PostMapping("/import")
+    public ResponseEntity<ApiResponse<ImportResult>> importStock(
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.CONTENT_ENCODING, required = false) String contentEncoding,
+            InputStream body,
             Authentication authentication) {
         try {
+            ExportFormat importFormat = ExportFormat.fromParam(format);
             User user = userRepository.findByUsername(authentication.getName()).orElseThrow();
-            StockTransaction transaction = stockService.updateStock(request, user);
-            return ResponseEntity.ok(ApiResponse.success("Stock updated successfully", transaction));
-        } catch (Exception e) {
+            InputStream in = "gzip".equalsIgnoreCase(contentEncoding) ? new GZIPInputStream(body) : body;
+            ImportResult result = importService.importRows(in, importFormat, user);
+            return ResponseEntity.ok(ApiResponse.success("Import finished", result));
+        } catch (IllegalArgumentException | IOException e) {
             return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
     
     @GetMapping("/transactions")
-    public ResponseEntity<ApiResponse<List<StockTransaction>>> getAllTransactions() {
-        List<StockTransaction> transactions = stockService.getAllTransactions();
-        return ResponseEntity.ok(ApiResponse.success(transactions));
+    public ResponseEntity<ApiResponse<CursorPage<StockTransaction>>> getTransactions(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            CursorPage<StockTransaction> transactions = stockService.getTransactions(cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success(transactions));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
     }
     
     @GetMapping("/transactions/product/{productId}")
-    public ResponseEntity<ApiResponse<List<StockTransaction>>> getProductTransactions(
-            @PathVariable Long productId) {
-        List<StockTransaction> transactions = stockService.getProductTransactions(productId);
-        return ResponseEntity.ok(ApiResponse.success(transactions));
+    public ResponseEntity<ApiResponse<CursorPage<StockTransaction>>> getProductTransactions(
+            @PathVariable Long productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        try {
+            CursorPage<StockTransaction> transactions =
+                stockService.getProductTransactions(productId, from, to, cursor, limit);
+            return ResponseEntity.ok(ApiResponse.success(transactions));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/history")
+    public ResponseEntity<ApiResponse<StockHistory>> getCatalogStockAt(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(stockHistoryService.getCatalogStockAt(at)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @GetMapping("/history/product/{productId}")
+    public ResponseEntity<ApiResponse<StockHistory>> getProductStockAt(
+            @PathVariable Long productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        try {
+            return ResponseEntity.ok(ApiResponse.success(stockHistoryService.getProductStockAt(productId, at)));
+        } catch (Exception e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @PostMapping("/history/snapshots")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<ApiResponse<Integer>> takeSnapshot() {
+        return ResponseEntity.ok(ApiResponse.success("Snapshot written", stockHistoryService.takeSnapshot()));
+    }
+    
+    @GetMapping("/transactions/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime start,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime end,
+            @RequestParam(defaultValue = "ndjson") String format,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            HttpServletRequest request) {
+        try {
+            ExportFormat exportFormat = ExportFormat.fromParam(format);
+            request.setAttribute(AsyncConfig.EXPORT_ATTRIBUTE, Boolean.TRUE);
+            boolean gzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+            StreamingResponseBody body = out -> exportService.exportStockTransactions(start, end, exportFormat, gzip, out);
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.getContentType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"stock-transactions." + exportFormat.getExtension() + "\"");
+            if (gzip) {
+                response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+            }
+            return response.body(body);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
 }
@@ -0,0 +1,39 @@
+package com.stockmanagement.controller;
+
+import com.stockmanagement.dto.ApiResponse;
+import com.stockmanagement.dto.UserSummary;
+import com.stockmanagement.service.UserService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+@PreAuthorize("hasRole('ADMIN')")
+public class UserController {
+    
+    private final UserService userService;
+    
+    @PutMapping("/{id}/deactivate")
+    public ResponseEntity<ApiResponse<UserSummary>> deactivateUser(@PathVariable Long id) {
+        try {
+            UserSummary user = UserSummary.from(userService.setActive(id, false));
+            return ResponseEntity.ok(ApiResponse.success("User deactivated", user));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    @PutMapping("/{id}/activate")
+    public ResponseEntity<ApiResponse<UserSummary>> activateUser(@PathVariable Long id) {
+        try {
+            UserSummary user = UserSummary.from(userService.setActive(id, true));
+            return ResponseEntity.ok(ApiResponse.success("User activated", user));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BackfillResult {
+    private LocalDate from;
+    private LocalDate to;
+    private Integer chunks;
+    private Long billsRead;
+    private Long rollupsWritten;
+    private Long elapsedMillis;
+}
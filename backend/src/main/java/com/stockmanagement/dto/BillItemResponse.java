@@ -0,0 +1,24 @@
+package com.stockmanagement.dto;
+
+import com.stockmanagement.entity.BillItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillItemResponse {
+    private Long id;
+    private ProductSummary product;
+    private Integer quantity;
+    private BigDecimal unitPrice;
+    private BigDecimal lineTotal;
+    
+    public static BillItemResponse from(BillItem item) {
+        return new BillItemResponse(item.getId(), ProductSummary.from(item.getProduct()),
+            item.getQuantity(), item.getUnitPrice(), item.getLineTotal());
+    }
+}
@@ -17,4 +17,5 @@ public class BillRequest {
     private String paymentMethod;
     private Double tax;
     private Double discount;
+    private Long locationId; // Store the goods leave from; the default location when not given
 }
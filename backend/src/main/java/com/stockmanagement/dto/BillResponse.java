@@ -0,0 +1,49 @@
+package com.stockmanagement.dto;
+
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.entity.BillItem;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillResponse {
+    private Long id;
+    private String billNumber;
+    private LocalDateTime billDate;
+    private String customerName;
+    private String customerPhone;
+    private String customerEmail;
+    private List<BillItemResponse> items;
+    private BigDecimal subtotal;
+    private BigDecimal tax;
+    private BigDecimal discount;
+    private BigDecimal total;
+    private String paymentMethod;
+    private String status;
+    private UserSummary cashier;
+    private Long locationId;
+    
+    public static BillResponse from(Bill bill) {
+        return from(bill, bill.getItems());
+    }
+    
+    // Items are passed separately so list pages can supply ones fetched in a single query
+    public static BillResponse from(Bill bill, List<BillItem> items) {
+        List<BillItemResponse> itemResponses = new ArrayList<>(items.size());
+        for (BillItem item : items) {
+            itemResponses.add(BillItemResponse.from(item));
+        }
+        return new BillResponse(bill.getId(), bill.getBillNumber(), bill.getBillDate(), bill.getCustomerName(),
+            bill.getCustomerPhone(), bill.getCustomerEmail(), itemResponses, bill.getSubtotal(), bill.getTax(),
+            bill.getDiscount(), bill.getTotal(), bill.getPaymentMethod(), bill.getStatus(),
+            UserSummary.from(bill.getUser()), bill.getLocation() != null ? bill.getLocation().getId() : null);
+    }
+}
@@ -0,0 +1,18 @@
+package com.stockmanagement.dto;
+
+import com.stockmanagement.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogChanges {
+    private Long version; // Pass back as ?version= on the next poll
+    private Boolean fullSync; // products holds the whole catalog; replace the local copy
+    private List<Product> products;
+    private List<Long> deletedIds;
+}
@@ -0,0 +1,19 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ForecastRecomputeResult {
+    private LocalDate from;
+    private LocalDate to;
+    private Integer chunks;
+    private Long salesDaysRead;
+    private Long forecastsWritten;
+    private Long elapsedMillis;
+}
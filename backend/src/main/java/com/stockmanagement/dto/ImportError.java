@@ -0,0 +1,14 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportError {
+    private Long row; // 1-based data row, header excluded
+    private String sku;
+    private String message;
+}
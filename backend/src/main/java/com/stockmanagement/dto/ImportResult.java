@@ -0,0 +1,19 @@
+package com.stockmanagement.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+public class ImportResult {
+    private long rowsRead;
+    private long productsCreated;
+    private long productsUpdated;
+    private long movementsApplied;
+    private long rowsFailed;
+    private boolean errorsTruncated; // more rows failed than are listed in errors
+    private List<ImportError> errors = new ArrayList<>();
+}
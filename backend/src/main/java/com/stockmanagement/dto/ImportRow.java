@@ -0,0 +1,37 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImportRow {
+    private String sku;
+    
+    // Product fields; a new SKU needs name, category and both prices
+    private String name;
+    private String description;
+    private String category;
+    private BigDecimal purchasePrice;
+    private BigDecimal sellingPrice;
+    private Integer minStockLevel;
+    private Boolean active;
+    
+    // Optional movement applied after the product fields
+    private String transactionType; // IN, ADJUSTMENT
+    private Integer quantity;
+    private String notes;
+    
+    public boolean hasProductFields() {
+        return name != null || description != null || category != null || purchasePrice != null
+            || sellingPrice != null || minStockLevel != null || active != null;
+    }
+    
+    public boolean hasMovement() {
+        return transactionType != null || quantity != null;
+    }
+}
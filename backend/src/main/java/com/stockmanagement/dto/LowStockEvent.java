@@ -0,0 +1,20 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LowStockEvent {
+    private String type; // LOW (fell to or below minStockLevel), RESTOCKED (back above it)
+    private Long productId;
+    private String sku;
+    private String name;
+    private Integer currentStock;
+    private Integer minStockLevel;
+    private LocalDateTime timestamp;
+}
@@ -0,0 +1,28 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// A product as seen from one location: the catalog fields plus that location's stock
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductStock {
+    private Long productId;
+    private String sku;
+    private String name;
+    private String category;
+    private BigDecimal sellingPrice;
+    private Integer minStockLevel;
+    private Boolean active;
+    private Long locationId;
+    private String locationCode;
+    private Integer quantity;
+    
+    public boolean isLowStock() {
+        return minStockLevel != null && quantity <= minStockLevel;
+    }
+}
@@ -0,0 +1,19 @@
+package com.stockmanagement.dto;
+
+import com.stockmanagement.entity.Product;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ProductSummary {
+    private Long id;
+    private String sku;
+    private String name;
+    
+    public static ProductSummary from(Product product) {
+        return new ProductSummary(product.getId(), product.getSku(), product.getName());
+    }
+}
@@ -0,0 +1,23 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ReorderSuggestion {
+    private Long productId;
+    private String sku;
+    private String name;
+    private Integer currentStock;
+    private Integer minStockLevel;
+    private Double dailyVelocity; // Units per day
+    private Double demandStdDev;
+    private Integer daysObserved;
+    private Integer reorderPoint; // Demand over the lead time plus safety stock
+    private Integer orderUpToLevel;
+    private Integer suggestedOrderQuantity; // Zero while stock is above the reorder point
+    private Boolean needsReorder;
+}
@@ -0,0 +1,22 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesReport {
+    private LocalDate from;
+    private LocalDate to;
+    private String groupBy;
+    private List<SalesReportRow> rows;
+    private Long totalQuantity;
+    private BigDecimal totalGrossAmount;
+    private BigDecimal totalNetAmount;
+}
@@ -0,0 +1,18 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SalesReportRow {
+    private String key; // Day, payment method, category or product id, depending on the grouping
+    private String label; // Product name when grouped by product
+    private Long quantity;
+    private BigDecimal grossAmount;
+    private BigDecimal netAmount;
+}
@@ -0,0 +1,18 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockHistory {
+    private LocalDateTime asOf;
+    private LocalDateTime snapshotAt; // Snapshot the levels were derived from; null when none was used
+    private Long transactionsReplayed;
+    private List<StockPosition> positions;
+}
@@ -0,0 +1,15 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockPosition {
+    private Long productId;
+    private String sku;
+    private String name;
+    private Integer stockLevel;
+}
@@ -0,0 +1,16 @@
+package com.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockTransferRequest {
+    private Long productId;
+    private Long fromLocationId;
+    private Long toLocationId;
+    private Integer quantity;
+    private String notes;
+}
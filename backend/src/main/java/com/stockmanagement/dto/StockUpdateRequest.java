@@ -12,4 +12,5 @@ public class StockUpdateRequest {
     private Integer quantity;
     private String transactionType; // IN, OUT, ADJUSTMENT
     private String notes;
+    private Long locationId; // Default location when not given
 }
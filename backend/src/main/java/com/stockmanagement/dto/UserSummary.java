@@ -0,0 +1,18 @@
+package com.stockmanagement.dto;
+
+import com.stockmanagement.entity.User;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserSummary {
+    private Long id;
+    private String fullName;
+    
+    public static UserSummary from(User user) {
+        return user != null ? new UserSummary(user.getId(), user.getFullName()) : null;
+    }
+}
@@ -0,0 +1,48 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// One archived month of one dataset; the unique key keeps two archivers from writing the same month
+@Entity
+@Table(name = "archive_segments",
+    uniqueConstraints = @UniqueConstraint(name = "uk_archive_segments_dataset_period", columnNames = {"dataset", "period_start"}))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ArchiveSegment {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+    
+    @Column(nullable = false, length = 50)
+    private String dataset; // bills, stock_transactions
+    
+    @Column(nullable = false)
+    private LocalDate periodStart; // First day of the month
+    
+    @Column(nullable = false)
+    private LocalDate periodEnd; // First day of the next month
+    
+    @Column(nullable = false)
+    private String path; // Relative to archive.directory
+    
+    @Column(nullable = false)
+    private String status; // WRITING, PURGING (read from the segment, hot rows still being deleted), ARCHIVED
+    
+    private Long rowCount;
+    
+    private Long sizeBytes;
+    
+    @Column(nullable = false)
+    private LocalDateTime createdAt = LocalDateTime.now();
+    
+    private LocalDateTime readableAt; // When reads switched to the segment (PURGING)
+    
+    private LocalDateTime archivedAt;
+}
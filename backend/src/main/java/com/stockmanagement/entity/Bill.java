@@ -11,13 +11,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "bills")
+@Table(name = "bills", indexes = @Index(name = "idx_bills_bill_date_id", columnList = "bill_date, id"))
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Bill {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bill_seq")
+    @SequenceGenerator(name = "bill_seq", sequenceName = "bill_seq", allocationSize = 50)
     private Long id;
     
     @Column(unique = true, nullable = false)
@@ -54,10 +55,14 @@ public class Bill {
     @Column(nullable = false)
     private String status; // COMPLETED, CANCELLED
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "user_id")
     private User user;
     
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "location_id")
+    private Location location; // Null for bills created before locations existed
+    
     public void calculateTotals() {
         this.subtotal = items.stream()
             .map(BillItem::getLineTotal)
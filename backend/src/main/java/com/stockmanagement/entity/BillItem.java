@@ -15,15 +15,16 @@ import java.math.BigDecimal;
 @AllArgsConstructor
 public class BillItem {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "bill_item_seq")
+    @SequenceGenerator(name = "bill_item_seq", sequenceName = "bill_item_seq", allocationSize = 50)
     private Long id;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "bill_id", nullable = false)
     @JsonIgnore
     private Bill bill;
     
-    @ManyToOne
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
     
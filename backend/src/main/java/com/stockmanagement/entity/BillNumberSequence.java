@@ -0,0 +1,22 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+// Read and written over JDBC by BillNumberAllocator; mapped here so the table is part of the schema
+@Entity
+@Table(name = "bill_number_sequences")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillNumberSequence {
+    @Id
+    private LocalDate billDay;
+    
+    @Column(nullable = false)
+    private Long nextValue; // First number not yet handed out to any instance
+}
@@ -0,0 +1,23 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Catalog version each product last changed or was deleted at, written over JDBC by CatalogVersions
+@Entity
+@Table(name = "catalog_changes", indexes = @Index(name = "idx_catalog_changes_version", columnList = "version"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogChange {
+    @Id
+    private Long productId; // No foreign key, so the row outlives a deleted product as its tombstone
+    
+    @Column(nullable = false)
+    private Long version;
+    
+    @Column(nullable = false)
+    private Boolean deleted;
+}
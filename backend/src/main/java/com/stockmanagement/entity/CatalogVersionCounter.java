@@ -0,0 +1,23 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Single row read and written over JDBC by CatalogVersions; mapped here so the table is part of the schema
+@Entity
+@Table(name = "catalog_version")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CatalogVersionCounter {
+    @Id
+    private Integer id;
+    
+    @Column(nullable = false)
+    private Long version; // Latest committed catalog version, shared by all instances
+    
+    @Column(nullable = false)
+    private Long baseVersion; // Version the counter started at; deltas before it are unknown
+}
@@ -0,0 +1,28 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+// Written over JDBC by SalesRollupService, with upserts from the billing path and batch inserts from the backfill
+@Entity
+@Table(name = "daily_sales_rollups", indexes = @Index(name = "idx_daily_sales_rollups_day", columnList = "sales_day"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailySalesRollup {
+    @EmbeddedId
+    private DailySalesRollupId id;
+    
+    @Column(nullable = false)
+    private Long quantity;
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal grossAmount; // Sum of line totals
+    
+    @Column(nullable = false, precision = 14, scale = 2)
+    private BigDecimal netAmount; // Share of bill totals, after tax and discount
+}
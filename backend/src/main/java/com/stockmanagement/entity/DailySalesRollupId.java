@@ -0,0 +1,25 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailySalesRollupId implements Serializable {
+    @Column(nullable = false)
+    private LocalDate salesDay;
+    
+    @Column(nullable = false)
+    private Long productId; // No foreign key, so history outlives deleted products
+    
+    @Column(nullable = false)
+    private String paymentMethod;
+}
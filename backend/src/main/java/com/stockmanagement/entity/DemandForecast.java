@@ -0,0 +1,38 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+// Exponentially weighted averages of a product's daily demand, folded forward one day at a time
+@Entity
+@Table(name = "demand_forecasts")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DemandForecast {
+    @Id
+    private Long productId;
+    
+    @Column(nullable = false)
+    private LocalDate currentDay; // The day still collecting sales; not yet in the averages
+    
+    @Column(nullable = false)
+    private Integer currentQuantity = 0;
+    
+    @Column(nullable = false)
+    private Double meanDaily = 0.0; // Units sold per day over the closed days
+    
+    @Column(nullable = false)
+    private Double variance = 0.0;
+    
+    @Column(nullable = false)
+    private Integer daysObserved = 0;
+    
+    @Column(nullable = false)
+    private LocalDateTime updatedAt = LocalDateTime.now();
+}
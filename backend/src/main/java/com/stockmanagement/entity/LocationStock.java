@@ -0,0 +1,25 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Stock of one product at one location. Every product has a row at every location, so movements
+// only ever update rows, and movements at different locations never wait on each other.
+@Entity
+@Table(name = "location_stock", indexes = @Index(name = "idx_location_stock_location", columnList = "location_id, product_id"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationStock {
+    @EmbeddedId
+    private LocationStockId id;
+    
+    @Column(nullable = false)
+    private Integer quantity;
+    
+    private LocalDateTime updatedAt;
+}
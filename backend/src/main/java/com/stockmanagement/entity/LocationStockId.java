@@ -0,0 +1,21 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LocationStockId implements Serializable {
+    @Column(nullable = false)
+    private Long productId;
+    
+    @Column(nullable = false)
+    private Long locationId;
+}
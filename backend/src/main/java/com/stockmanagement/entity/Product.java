@@ -4,12 +4,19 @@ import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 
+// Cached by id; all writes, stock totals included, go through the entity and refresh its entry
 @Entity
 @Table(name = "products")
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "product")
+@DynamicUpdate
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -36,11 +43,14 @@ public class Product {
     @Column(nullable = false, precision = 10, scale = 2)
     private BigDecimal sellingPrice;
     
+    // Stock summed over all locations, written only by StockTotals; the initial stock of a new
+    // product goes to the default location. Updates are dynamic, so saving other fields never
+    // writes back a total loaded before a flush
     @Column(nullable = false)
     private Integer currentStock = 0;
     
     @Column(nullable = false)
-    private Integer minStockLevel = 10; // Threshold for low stock alert
+    private Integer minStockLevel; // Threshold for low stock alert; stock.alert.threshold when not given
     
     @Column(nullable = false)
     private Boolean active = true;
@@ -50,8 +60,9 @@ public class Product {
     
     private LocalDateTime updatedAt;
     
+    // Without a threshold (a product not yet saved through ProductService) nothing is low
     @Transient
     public boolean isLowStock() {
-        return currentStock <= minStockLevel;
+        return minStockLevel != null && currentStock <= minStockLevel;
     }
 }
@@ -0,0 +1,20 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Advanced in the same transaction as each batch of journaled stock transactions
+@Entity
+@Table(name = "stock_journal_checkpoints")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockJournalCheckpoint {
+    @Id
+    private String journalName;
+    
+    @Column(nullable = false)
+    private Long lastSequence; // Highest journal sequence already in stock_transactions
+}
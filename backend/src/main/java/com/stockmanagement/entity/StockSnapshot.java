@@ -0,0 +1,20 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Stock level of every product at snapshotAt, written in bulk by StockHistoryService
+@Entity
+@Table(name = "stock_snapshots", indexes = @Index(name = "idx_stock_snapshots_at", columnList = "snapshot_at"))
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSnapshot {
+    @EmbeddedId
+    private StockSnapshotId id;
+    
+    @Column(nullable = false)
+    private Integer stockLevel;
+}
@@ -0,0 +1,22 @@
+package com.stockmanagement.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+@Embeddable
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockSnapshotId implements Serializable {
+    @Column(nullable = false)
+    private Long productId; // No foreign key, so snapshots do not block deleting a product
+    
+    @Column(nullable = false)
+    private LocalDateTime snapshotAt;
+}
@@ -8,26 +8,34 @@ import lombok.NoArgsConstructor;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "stock_transactions")
+@Table(name = "stock_transactions", indexes = {
+    @Index(name = "idx_stock_tx_date_id", columnList = "transaction_date, id"),
+    @Index(name = "idx_stock_tx_product_date_id", columnList = "product_id, transaction_date, id")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class StockTransaction {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "stock_transaction_seq")
+    @SequenceGenerator(name = "stock_transaction_seq", sequenceName = "stock_transaction_seq", allocationSize = 50)
     private Long id;
     
     @ManyToOne
     @JoinColumn(name = "product_id", nullable = false)
     private Product product;
     
+    @ManyToOne
+    @JoinColumn(name = "location_id")
+    private Location location; // Null for movements recorded before locations existed
+    
     @Column(nullable = false)
-    private String transactionType; // IN (restock), OUT (sale), ADJUSTMENT
+    private String transactionType; // IN (restock), OUT (sale), ADJUSTMENT, TRANSFER_OUT, TRANSFER_IN
     
     @Column(nullable = false)
     private Integer quantity;
     
-    private Integer previousStock;
+    private Integer previousStock; // Levels at the movement's location
     
     private Integer newStock;
     
@@ -1,14 +1,20 @@
 package com.stockmanagement.entity;
 
+import com.stockmanagement.security.UserCacheEvictionListener;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 
 import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "users")
+@EntityListeners(UserCacheEvictionListener.class)
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -35,6 +41,10 @@ public class User {
     @Column(nullable = false)
     private Boolean active = true;
     
+    // Bumped on deactivation and password change; tokens issued with an older version are revoked
+    @Column(nullable = false)
+    private Integer tokenVersion = 0;
+    
     @Column(nullable = false)
     private LocalDateTime createdAt = LocalDateTime.now();
     
@@ -0,0 +1,85 @@
+package com.stockmanagement.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Meters for the billing, stock and authentication hot paths. Every meter is registered once
+ * here with fixed tags, so recording is a plain field access plus an increment and callers time
+ * work with System.nanoTime() instead of allocating a Timer.Sample.
+ */
+@Component
+public class ServiceMetrics {
+    
+    private final Timer createBillTimer;
+    private final Timer updateStockTimer;
+    private final Timer jwtFilterTimer;
+    private final Counter billsCreated;
+    private final DistributionSummary billLineItems;
+    private final Counter insufficientStock;
+    private final DistributionSummary statementsPerRequest;
+    
+    public ServiceMetrics(MeterRegistry registry) {
+        this.createBillTimer = Timer.builder("stock.billing.create")
+                .description("Time spent in BillingService.createBill, excluding the commit")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.updateStockTimer = Timer.builder("stock.movement.update")
+                .description("Time spent in StockService.updateStock, excluding the commit")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.jwtFilterTimer = Timer.builder("stock.auth.jwt.filter")
+                .description("Time spent authenticating a request in JwtRequestFilter")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.billsCreated = Counter.builder("stock.billing.bills")
+                .description("Bills created")
+                .register(registry);
+        this.billLineItems = DistributionSummary.builder("stock.billing.line.items")
+                .description("Line items per bill")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(1000.0)
+                .register(registry);
+        this.insufficientStock = Counter.builder("stock.movement.rejected")
+                .description("Stock movements rejected because the product had too little stock")
+                .tag("reason", "insufficient-stock")
+                .register(registry);
+        this.statementsPerRequest = DistributionSummary.builder("stock.db.statements")
+                .description("SQL statements prepared by Hibernate per HTTP request")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(1.0)
+                .maximumExpectedValue(1000.0)
+                .register(registry);
+    }
+    
+    public void recordCreateBill(long startNanos) {
+        createBillTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public void recordUpdateStock(long startNanos) {
+        updateStockTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public void recordJwtFilter(long startNanos) {
+        jwtFilterTimer.record(System.nanoTime() - startNanos, TimeUnit.NANOSECONDS);
+    }
+    
+    public void billCreated(int lineItems) {
+        billsCreated.increment();
+        billLineItems.record(lineItems);
+    }
+    
+    public void insufficientStock() {
+        insufficientStock.increment();
+    }
+    
+    public void recordStatements(int statements) {
+        statementsPerRequest.record(statements);
+    }
+}
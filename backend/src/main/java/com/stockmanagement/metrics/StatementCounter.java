@@ -0,0 +1,26 @@
+package com.stockmanagement.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Counts the statements Hibernate prepares on the current thread. The count is reset and read
+ * by StatementCountFilter around each HTTP request; JdbcTemplate queries are not seen here.
+ */
+public class StatementCounter implements StatementInspector {
+    
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+    
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+    
+    static void reset() {
+        COUNT.get()[0] = 0;
+    }
+    
+    static int current() {
+        return COUNT.get()[0];
+    }
+}
@@ -0,0 +1,25 @@
+package com.stockmanagement.repository;
+
+import com.stockmanagement.entity.ArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface ArchiveSegmentRepository extends JpaRepository<ArchiveSegment, Long> {
+    List<ArchiveSegment> findByDatasetOrderByPeriodStart(String dataset);
+    List<ArchiveSegment> findByDatasetAndStatusNotOrderByPeriodStart(String dataset, String status);
+    
+    // End of the archived months: older rows are read from segments, newer ones from the hot table
+    @Query("SELECT MAX(s.periodEnd) FROM ArchiveSegment s WHERE s.dataset = :dataset AND s.status <> 'WRITING'")
+    LocalDate findHotFrom(@Param("dataset") String dataset);
+    
+    @Query("SELECT s FROM ArchiveSegment s WHERE s.dataset = :dataset AND s.status <> 'WRITING' " +
+           "AND s.periodStart <= :to AND s.periodEnd > :from ORDER BY s.periodStart")
+    List<ArchiveSegment> findReadableOverlapping(@Param("dataset") String dataset,
+                                                 @Param("from") LocalDate from, @Param("to") LocalDate to);
+}
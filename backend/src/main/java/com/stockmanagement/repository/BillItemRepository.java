@@ -0,0 +1,16 @@
+package com.stockmanagement.repository;
+
+import com.stockmanagement.entity.BillItem;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface BillItemRepository extends JpaRepository<BillItem, Long> {
+    @Query("SELECT i FROM BillItem i JOIN FETCH i.product WHERE i.bill.id IN :billIds ORDER BY i.id")
+    List<BillItem> findWithProductByBillIdIn(@Param("billIds") Collection<Long> billIds);
+}
@@ -1,6 +1,7 @@
 package com.stockmanagement.repository;
 
 import com.stockmanagement.entity.Bill;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -13,13 +14,22 @@ import java.util.Optional;
 @Repository
 public interface BillRepository extends JpaRepository<Bill, Long> {
     Optional<Bill> findByBillNumber(String billNumber);
+    
+    // Whole read graph of one bill in a single statement
+    @Query("SELECT DISTINCT b FROM Bill b LEFT JOIN FETCH b.user LEFT JOIN FETCH b.items i " +
+           "LEFT JOIN FETCH i.product WHERE b.id = :id")
+    Optional<Bill> findWithItemsById(@Param("id") Long id);
+    
+    @Query("SELECT DISTINCT b FROM Bill b LEFT JOIN FETCH b.user LEFT JOIN FETCH b.items i " +
+           "LEFT JOIN FETCH i.product WHERE b.billNumber = :billNumber")
+    Optional<Bill> findWithItemsByBillNumber(@Param("billNumber") String billNumber);
     List<Bill> findByCustomerName(String customerName);
     List<Bill> findByBillDateBetween(LocalDateTime start, LocalDateTime end);
     List<Bill> findByStatus(String status);
     
-    @Query("SELECT b FROM Bill b ORDER BY b.billDate DESC")
-    List<Bill> findAllOrderByBillDateDesc();
-    
-    @Query("SELECT COUNT(b) FROM Bill b WHERE b.billDate >= :date")
-    Long countBillsSince(@Param("date") LocalDateTime date);
+    // Keyset page walking (billDate, id) downwards from the given position
+    @Query("SELECT b FROM Bill b LEFT JOIN FETCH b.user " +
+           "WHERE b.billDate < :billDate OR (b.billDate = :billDate AND b.id < :id) " +
+           "ORDER BY b.billDate DESC, b.id DESC")
+    List<Bill> findPageBefore(@Param("billDate") LocalDateTime billDate, @Param("id") Long id, Pageable pageable);
 }
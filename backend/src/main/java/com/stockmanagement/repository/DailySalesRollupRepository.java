@@ -0,0 +1,43 @@
+package com.stockmanagement.repository;
+
+import com.stockmanagement.dto.SalesReportRow;
+import com.stockmanagement.entity.DailySalesRollup;
+import com.stockmanagement.entity.DailySalesRollupId;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface DailySalesRollupRepository extends JpaRepository<DailySalesRollup, DailySalesRollupId> {
+    
+    @Query("SELECT new com.stockmanagement.dto.SalesReportRow(CAST(r.id.salesDay AS String), NULL, " +
+           "SUM(r.quantity), SUM(r.grossAmount), SUM(r.netAmount)) " +
+           "FROM DailySalesRollup r WHERE r.id.salesDay BETWEEN :from AND :to " +
+           "GROUP BY r.id.salesDay ORDER BY r.id.salesDay")
+    List<SalesReportRow> sumByDay(@Param("from") LocalDate from, @Param("to") LocalDate to);
+    
+    @Query("SELECT new com.stockmanagement.dto.SalesReportRow(r.id.paymentMethod, NULL, " +
+           "SUM(r.quantity), SUM(r.grossAmount), SUM(r.netAmount)) " +
+           "FROM DailySalesRollup r WHERE r.id.salesDay BETWEEN :from AND :to " +
+           "GROUP BY r.id.paymentMethod ORDER BY SUM(r.netAmount) DESC")
+    List<SalesReportRow> sumByPaymentMethod(@Param("from") LocalDate from, @Param("to") LocalDate to);
+    
+    // Categories are read from the product as it is now; rows of deleted products fall under UNKNOWN
+    @Query("SELECT new com.stockmanagement.dto.SalesReportRow(COALESCE(p.category, 'UNKNOWN'), NULL, " +
+           "SUM(r.quantity), SUM(r.grossAmount), SUM(r.netAmount)) " +
+           "FROM DailySalesRollup r LEFT JOIN Product p ON p.id = r.id.productId " +
+           "WHERE r.id.salesDay BETWEEN :from AND :to " +
+           "GROUP BY p.category ORDER BY SUM(r.netAmount) DESC")
+    List<SalesReportRow> sumByCategory(@Param("from") LocalDate from, @Param("to") LocalDate to);
+    
+    @Query("SELECT new com.stockmanagement.dto.SalesReportRow(CAST(r.id.productId AS String), p.name, " +
+           "SUM(r.quantity), SUM(r.grossAmount), SUM(r.netAmount)) " +
+           "FROM DailySalesRollup r LEFT JOIN Product p ON p.id = r.id.productId " +
+           "WHERE r.id.salesDay BETWEEN :from AND :to " +
+           "GROUP BY r.id.productId, p.name ORDER BY SUM(r.netAmount) DESC")
+    List<SalesReportRow> sumByProduct(@Param("from") LocalDate from, @Param("to") LocalDate to);
+}
@@ -0,0 +1,20 @@
+package com.stockmanagement.repository;
+
+import com.stockmanagement.entity.DemandForecast;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface DemandForecastRepository extends JpaRepository<DemandForecast, Long> {
+    // Locked in product order, so flushes from several instances cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT f FROM DemandForecast f WHERE f.productId IN :productIds ORDER BY f.productId")
+    List<DemandForecast> findForUpdate(@Param("productIds") Collection<Long> productIds);
+}
@@ -0,0 +1,13 @@
+package com.stockmanagement.repository;
+
+import com.stockmanagement.entity.Location;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface LocationRepository extends JpaRepository<Location, Long> {
+    Optional<Location> findByCode(String code);
+    boolean existsByCode(String code);
+}
@@ -0,0 +1,83 @@
+package com.stockmanagement.repository;
+
+import com.stockmanagement.dto.ProductStock;
+import com.stockmanagement.entity.LocationStock;
+import com.stockmanagement.entity.LocationStockId;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface LocationStockRepository extends JpaRepository<LocationStock, LocationStockId> {
+    
+    @Query("SELECT s.quantity FROM LocationStock s WHERE s.id.productId = :productId AND s.id.locationId = :locationId")
+    Integer findQuantity(@Param("productId") Long productId, @Param("locationId") Long locationId);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM LocationStock s WHERE s.id.productId = :productId AND s.id.locationId = :locationId")
+    LocationStock findForUpdate(@Param("productId") Long productId, @Param("locationId") Long locationId);
+    
+    // [productId, total quantity over all locations]; products without rows are left out
+    @Query("SELECT s.id.productId, SUM(s.quantity) FROM LocationStock s WHERE s.id.productId IN :productIds " +
+           "GROUP BY s.id.productId")
+    List<Object[]> sumByProduct(@Param("productIds") Collection<Long> productIds);
+    
+    // Multi-row locks are always taken in (location, product) order, so concurrent movements cannot deadlock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM LocationStock s WHERE s.id.locationId = :locationId AND s.id.productId IN :productIds " +
+           "ORDER BY s.id.productId")
+    List<LocationStock> findAtLocationForUpdate(@Param("locationId") Long locationId,
+                                                @Param("productIds") Collection<Long> productIds);
+    
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM LocationStock s WHERE s.id.productId = :productId AND s.id.locationId IN :locationIds " +
+           "ORDER BY s.id.locationId")
+    List<LocationStock> findForProductForUpdate(@Param("productId") Long productId,
+                                                @Param("locationIds") Collection<Long> locationIds);
+    
+    // Several movements on one row in a single statement: required is the lowest level that keeps
+    // every intermediate level of the sequence at or above zero
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("UPDATE LocationStock s SET s.quantity = s.quantity + :delta, s.updatedAt = :now " +
+           "WHERE s.id.productId = :productId AND s.id.locationId = :locationId AND s.quantity >= :required")
+    int applyStockDelta(@Param("productId") Long productId, @Param("locationId") Long locationId,
+                        @Param("delta") Integer delta, @Param("required") Integer required,
+                        @Param("now") LocalDateTime now);
+    
+    @Query("SELECT s FROM LocationStock s WHERE s.id.locationId = :locationId AND s.id.productId IN :productIds")
+    List<LocationStock> findAtLocation(@Param("locationId") Long locationId,
+                                       @Param("productIds") Collection<Long> productIds);
+    
+    @Query("SELECT new com.stockmanagement.dto.ProductStock(p.id, p.sku, p.name, p.category, p.sellingPrice, " +
+           "p.minStockLevel, p.active, l.id, l.code, s.quantity) " +
+           "FROM LocationStock s, Product p, Location l " +
+           "WHERE p.id = s.id.productId AND l.id = s.id.locationId AND s.id.locationId = :locationId " +
+           "AND (:activeOnly = false OR p.active = true) ORDER BY p.id")
+    List<ProductStock> findProductsAtLocation(@Param("locationId") Long locationId,
+                                              @Param("activeOnly") boolean activeOnly);
+    
+    @Query("SELECT new com.stockmanagement.dto.ProductStock(p.id, p.sku, p.name, p.category, p.sellingPrice, " +
+           "p.minStockLevel, p.active, l.id, l.code, s.quantity) " +
+           "FROM LocationStock s, Product p, Location l " +
+           "WHERE p.id = s.id.productId AND l.id = s.id.locationId AND s.id.locationId = :locationId " +
+           "AND s.quantity <= p.minStockLevel AND p.active = true ORDER BY s.quantity, p.name")
+    List<ProductStock> findLowStockAtLocation(@Param("locationId") Long locationId);
+    
+    @Query("SELECT new com.stockmanagement.dto.ProductStock(p.id, p.sku, p.name, p.category, p.sellingPrice, " +
+           "p.minStockLevel, p.active, l.id, l.code, s.quantity) " +
+           "FROM LocationStock s, Product p, Location l " +
+           "WHERE p.id = s.id.productId AND l.id = s.id.locationId AND s.id.productId = :productId ORDER BY l.id")
+    List<ProductStock> findByProduct(@Param("productId") Long productId);
+    
+    @Modifying
+    @Query("DELETE FROM LocationStock s WHERE s.id.productId = :productId")
+    int deleteByProductId(@Param("productId") Long productId);
+}
@@ -0,0 +1,9 @@
+package com.stockmanagement.repository;
+
+import com.stockmanagement.entity.StockJournalCheckpoint;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StockJournalCheckpointRepository extends JpaRepository<StockJournalCheckpoint, String> {
+}
@@ -0,0 +1,45 @@
+package com.stockmanagement.repository;
+
+import com.stockmanagement.entity.StockSnapshot;
+import com.stockmanagement.entity.StockSnapshotId;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StockSnapshotRepository extends JpaRepository<StockSnapshot, StockSnapshotId> {
+    
+    @Query("SELECT MAX(s.id.snapshotAt) FROM StockSnapshot s WHERE s.id.snapshotAt <= :at")
+    LocalDateTime findLatestSnapshotTime(@Param("at") LocalDateTime at);
+    
+    @Query("SELECT MIN(s.id.snapshotAt) FROM StockSnapshot s WHERE s.id.snapshotAt > :at")
+    LocalDateTime findNextSnapshotTime(@Param("at") LocalDateTime at);
+    
+    @Query("SELECT s FROM StockSnapshot s WHERE s.id.productId = :productId AND s.id.snapshotAt <= :at " +
+           "ORDER BY s.id.snapshotAt DESC")
+    List<StockSnapshot> findLatestForProduct(@Param("productId") Long productId, @Param("at") LocalDateTime at,
+                                             Pageable pageable);
+    
+    @Query("SELECT s FROM StockSnapshot s WHERE s.id.productId = :productId AND s.id.snapshotAt > :at " +
+           "ORDER BY s.id.snapshotAt")
+    List<StockSnapshot> findNextForProduct(@Param("productId") Long productId, @Param("at") LocalDateTime at,
+                                           Pageable pageable);
+    
+    @Query("SELECT DISTINCT s.id.snapshotAt FROM StockSnapshot s WHERE s.id.snapshotAt < :before " +
+           "ORDER BY s.id.snapshotAt")
+    List<LocalDateTime> findSnapshotTimesBefore(@Param("before") LocalDateTime before);
+    
+    @Modifying
+    @Query("DELETE FROM StockSnapshot s WHERE s.id.snapshotAt = :at")
+    int deleteAt(@Param("at") LocalDateTime at);
+    
+    @Modifying
+    @Query("DELETE FROM StockSnapshot s WHERE s.id.snapshotAt < :before")
+    int deleteOlderThan(@Param("before") LocalDateTime before);
+}
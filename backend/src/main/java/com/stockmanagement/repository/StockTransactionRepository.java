@@ -1,7 +1,10 @@
 package com.stockmanagement.repository;
 
 import com.stockmanagement.entity.StockTransaction;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -12,5 +15,19 @@ public interface StockTransactionRepository extends JpaRepository<StockTransacti
     List<StockTransaction> findByProductId(Long productId);
     List<StockTransaction> findByTransactionType(String transactionType);
     List<StockTransaction> findByTransactionDateBetween(LocalDateTime start, LocalDateTime end);
-    List<StockTransaction> findByProductIdOrderByTransactionDateDesc(Long productId);
+    
+    // Keyset pages walking (transactionDate, id) downwards from the given position
+    @Query("SELECT t FROM StockTransaction t WHERE t.transactionDate < :transactionDate " +
+           "OR (t.transactionDate = :transactionDate AND t.id < :id) " +
+           "ORDER BY t.transactionDate DESC, t.id DESC")
+    List<StockTransaction> findPageBefore(@Param("transactionDate") LocalDateTime transactionDate,
+                                          @Param("id") Long id, Pageable pageable);
+    
+    @Query("SELECT t FROM StockTransaction t WHERE t.product.id = :productId AND t.transactionDate >= :from " +
+           "AND (t.transactionDate < :transactionDate OR (t.transactionDate = :transactionDate AND t.id < :id)) " +
+           "ORDER BY t.transactionDate DESC, t.id DESC")
+    List<StockTransaction> findProductPageBefore(@Param("productId") Long productId,
+                                                 @Param("from") LocalDateTime from,
+                                                 @Param("transactionDate") LocalDateTime transactionDate,
+                                                 @Param("id") Long id, Pageable pageable);
 }
@@ -0,0 +1,29 @@
+package com.stockmanagement.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+
+import java.util.Collection;
+
+/**
+ * UserDetails that also carries the profile fields the login response needs, so a login
+ * can be answered from the authenticated principal without loading the user again. The
+ * principal of a JWT request is rebuilt from the token's claims, with no password.
+ */
+@Getter
+public class AppUserDetails extends org.springframework.security.core.userdetails.User {
+    
+    private final Long id;
+    private final String fullName;
+    private final String role;
+    private final Integer tokenVersion;
+    
+    public AppUserDetails(Long id, String username, String password, boolean enabled, String fullName, String role,
+                          Integer tokenVersion, Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, enabled, true, true, true, authorities);
+        this.id = id;
+        this.fullName = fullName;
+        this.role = role;
+        this.tokenVersion = tokenVersion;
+    }
+}
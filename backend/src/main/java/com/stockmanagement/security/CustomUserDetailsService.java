@@ -22,13 +22,14 @@ public class CustomUserDetailsService implements UserDetailsService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + username));
         
-        return new org.springframework.security.core.userdetails.User(
+        return new AppUserDetails(
+                user.getId(),
                 user.getUsername(),
                 user.getPassword(),
                 user.getActive(),
-                true,
-                true,
-                true,
+                user.getFullName(),
+                user.getRole(),
+                user.getTokenVersion(),
                 Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + user.getRole()))
         );
     }
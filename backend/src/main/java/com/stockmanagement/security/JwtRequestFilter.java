@@ -1,11 +1,15 @@
 package com.stockmanagement.security;
 
+import com.stockmanagement.metrics.ServiceMetrics;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
@@ -13,42 +17,70 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Collections;
 
 @Component
 @RequiredArgsConstructor
 public class JwtRequestFilter extends OncePerRequestFilter {
     
+    // Only tokens issued before claims were added are authorized by loading the user
     private final CustomUserDetailsService userDetailsService;
+    private final UserDetailsCache userDetailsCache;
+    private final TokenRevocations tokenRevocations;
     private final JwtUtil jwtUtil;
+    private final ServiceMetrics serviceMetrics;
     
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
-        
+        long start = System.nanoTime();
+        try {
+            authenticate(request);
+        } finally {
+            serviceMetrics.recordJwtFilter(start);
+        }
+        chain.doFilter(request, response);
+    }
+    
+    private void authenticate(HttpServletRequest request) {
         final String authorizationHeader = request.getHeader("Authorization");
         
-        String username = null;
-        String jwt = null;
+        Claims claims = null;
         
         if (authorizationHeader != null && authorizationHeader.startsWith("Bearer ")) {
-            jwt = authorizationHeader.substring(7);
+            String jwt = authorizationHeader.substring(7);
             try {
-                username = jwtUtil.extractUsername(jwt);
-            } catch (Exception e) {
+                // Signature and expiry are checked by this single parse
+                claims = jwtUtil.parseToken(jwt);
+            } catch (JwtException | IllegalArgumentException e) {
                 logger.error("Error extracting username from JWT", e);
             }
         }
         
-        if (username != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+        if (claims != null && SecurityContextHolder.getContext().getAuthentication() == null) {
+            UserDetails userDetails = claims.get(JwtUtil.USER_ID_CLAIM) != null
+                ? fromClaims(claims)
+                : userDetailsCache.get(claims.getSubject(), userDetailsService::loadUserByUsername);
             
-            if (jwtUtil.validateToken(jwt, userDetails)) {
+            if (userDetails != null && userDetails.isEnabled()) {
                 UsernamePasswordAuthenticationToken authenticationToken =
                         new UsernamePasswordAuthenticationToken(userDetails, null, userDetails.getAuthorities());
                 authenticationToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                 SecurityContextHolder.getContext().setAuthentication(authenticationToken);
             }
         }
-        chain.doFilter(request, response);
+    }
+    
+    // The token carries the role and token version, so only the revocation check is needed
+    private UserDetails fromClaims(Claims claims) {
+        long userId = ((Number) claims.get(JwtUtil.USER_ID_CLAIM)).longValue();
+        Number tokenVersion = claims.get(JwtUtil.TOKEN_VERSION_CLAIM, Number.class);
+        if (tokenVersion == null || tokenRevocations.isRevoked(userId, tokenVersion.intValue(), claims.getId())) {
+            return null;
+        }
+        String role = claims.get(JwtUtil.ROLE_CLAIM, String.class);
+        return new AppUserDetails(userId, claims.getSubject(), "", true,
+                claims.get(JwtUtil.FULL_NAME_CLAIM, String.class), role, tokenVersion.intValue(),
+                Collections.singletonList(new SimpleGrantedAuthority("ROLE_" + role)));
     }
 }
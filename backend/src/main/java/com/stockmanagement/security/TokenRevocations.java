@@ -0,0 +1,216 @@
+package com.stockmanagement.security;
+
+import com.stockmanagement.entity.RevokedToken;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.RevokedTokenRepository;
+import com.stockmanagement.service.TransactionHooks;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * In-memory record of which JWTs are no longer accepted, checked on every request instead of
+ * loading the user. Two structures cover the two ways a token is revoked:
+ *
+ * - the minimum token version per user, for users whose tokenVersion was bumped (password
+ *   change, deactivation) or who are inactive, which revokes every token they hold;
+ * - a Bloom filter of the ids of single revoked tokens (logout). A false positive only makes
+ *   an unlucky token log in again. Filters rotate every token lifetime and the previous one
+ *   is kept, so an id stays in a filter until the token it names has expired.
+ *
+ * Changes made here apply as soon as they commit; changes made by other instances or directly
+ * in the database are picked up by the periodic refresh. The refresh merges rather than
+ * replaces, keeping whichever state has the higher token version, so a read that started
+ * before a local change committed cannot undo it.
+ */
+@Component
+public class TokenRevocations {
+    private static final String REVOKED_USERS_SQL =
+        "SELECT id, token_version, active FROM users WHERE token_version > 0 OR active = false";
+    
+    // Revocations committed by other instances may carry a slightly older revokedAt than the
+    // last refresh saw, so each refresh looks back this far; re-adding an id is harmless
+    private static final long REFRESH_OVERLAP_SECONDS = 60;
+    
+    private final RevokedTokenRepository revokedTokenRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final long tokenLifetimeMillis;
+    private final int expectedTokens;
+    private final double falsePositiveRate;
+    
+    private final Map<Long, UserTokens> users = new ConcurrentHashMap<>();
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private long rotatedAt; // Guarded by this
+    private LocalDateTime lastRefresh; // Guarded by this
+    
+    public TokenRevocations(RevokedTokenRepository revokedTokenRepository, DataSource dataSource,
+                            @Value("${jwt.expiration}") long tokenLifetimeMillis,
+                            @Value("${auth.revocation.expected-tokens:100000}") int expectedTokens,
+                            @Value("${auth.revocation.false-positive-rate:0.001}") double falsePositiveRate) {
+        this.revokedTokenRepository = revokedTokenRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.tokenLifetimeMillis = tokenLifetimeMillis;
+        this.expectedTokens = expectedTokens;
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = newFilter();
+        this.previous = newFilter();
+        this.rotatedAt = System.currentTimeMillis();
+    }
+    
+    @PostConstruct
+    void load() {
+        refresh();
+    }
+    
+    public boolean isRevoked(long userId, int tokenVersion, String tokenId) {
+        UserTokens user = users.get(userId);
+        if (user != null && tokenVersion < user.minimumVersion()) {
+            return true;
+        }
+        return tokenId != null && (current.mightContain(tokenId) || previous.mightContain(tokenId));
+    }
+    
+    /**
+     * Applies a change to the user's active flag or token version once the surrounding
+     * transaction commits.
+     */
+    public void userChanged(User user) {
+        Long userId = user.getId();
+        UserTokens changed = new UserTokens(user.getTokenVersion(), user.getActive());
+        TransactionHooks.afterCommit(() -> users.merge(userId, changed, UserTokens::newer));
+    }
+    
+    public void revokeToken(String tokenId, Date expiresAt) {
+        LocalDateTime expiry = LocalDateTime.ofInstant(expiresAt.toInstant(), ZoneId.systemDefault());
+        revokedTokenRepository.save(new RevokedToken(tokenId, LocalDateTime.now(), expiry));
+        current.add(tokenId);
+    }
+    
+    @Scheduled(fixedDelayString = "${auth.revocation.refresh-ms:5000}")
+    public synchronized void refresh() {
+        LocalDateTime now = LocalDateTime.now();
+        if (System.currentTimeMillis() - rotatedAt >= tokenLifetimeMillis) {
+            previous = current;
+            current = newFilter();
+            rotatedAt = System.currentTimeMillis();
+            revokedTokenRepository.deleteExpiredBefore(now);
+            // The new filter starts empty, so reload every token that is still revoked
+            lastRefresh = null;
+        }
+        
+        Set<Long> loaded = new HashSet<>();
+        jdbcTemplate.query(REVOKED_USERS_SQL, rs -> {
+            loaded.add(rs.getLong(1));
+            users.merge(rs.getLong(1), new UserTokens(rs.getInt(2), rs.getBoolean(3)), UserTokens::newer);
+        });
+        // Users the query skipped are active at token version 0
+        for (Long userId : users.keySet()) {
+            if (!loaded.contains(userId)) {
+                users.computeIfPresent(userId, (id, user) -> UserTokens.newer(user, UserTokens.UNREVOKED));
+            }
+        }
+        
+        LocalDateTime since = lastRefresh != null
+            ? lastRefresh.minusSeconds(REFRESH_OVERLAP_SECONDS)
+            : LocalDateTime.of(1970, 1, 1, 0, 0);
+        BloomFilter filter = current;
+        for (String tokenId : revokedTokenRepository.findTokenIdsRevokedSince(since, now)) {
+            filter.add(tokenId);
+        }
+        lastRefresh = now;
+    }
+    
+    private BloomFilter newFilter() {
+        return new BloomFilter(expectedTokens, falsePositiveRate);
+    }
+    
+    /**
+     * A user's token version and active flag. Token versions only grow, so of two states the one
+     * with the higher version is the later; on a tie the incoming one wins, which lets a
+     * reactivation through, and a stale inactive read only holds until the next refresh.
+     */
+    private record UserTokens(int tokenVersion, boolean active) {
+        static final UserTokens UNREVOKED = new UserTokens(0, true);
+        
+        // Inactive users hold no valid token at all
+        int minimumVersion() {
+            return active ? tokenVersion : Integer.MAX_VALUE;
+        }
+        
+        static UserTokens newer(UserTokens existing, UserTokens incoming) {
+            return incoming.tokenVersion >= existing.tokenVersion ? incoming : existing;
+        }
+    }
+    
+    /**
+     * Fixed-size Bloom filter over strings, safe for concurrent adds and lookups. Bit positions
+     * come from the two halves of a 64-bit hash (Kirsch-Mitzenmacher double hashing).
+     */
+    static final class BloomFilter {
+        private final AtomicLongArray words;
+        private final long bitCount;
+        private final int hashCount;
+        
+        BloomFilter(int expectedInsertions, double falsePositiveRate) {
+            double ln2 = Math.log(2);
+            long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (ln2 * ln2));
+            this.words = new AtomicLongArray((int) Math.max(1, (bits + 63) / 64));
+            this.bitCount = words.length() * 64L;
+            this.hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * ln2));
+        }
+        
+        void add(String value) {
+            long hash = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hash, i);
+                words.getAndAccumulate((int) (bit >>> 6), 1L << bit, (word, mask) -> word | mask);
+            }
+        }
+        
+        boolean mightContain(String value) {
+            long hash = hash(value);
+            for (int i = 0; i < hashCount; i++) {
+                long bit = index(hash, i);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        
+        private long index(long hash, int i) {
+            int h1 = (int) hash;
+            int h2 = (int) (hash >>> 32);
+            return ((h1 + (long) i * h2) & Long.MAX_VALUE) % bitCount;
+        }
+        
+        // FNV-1a followed by the MurmurHash3 finalizer to spread the bits
+        private static long hash(String value) {
+            long hash = 0xcbf29ce484222325L;
+            for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+                hash ^= b;
+                hash *= 0x100000001b3L;
+            }
+            hash ^= hash >>> 33;
+            hash *= 0xff51afd7ed558ccdL;
+            hash ^= hash >>> 33;
+            hash *= 0xc4ceb9fe1a85ec53L;
+            hash ^= hash >>> 33;
+            return hash;
+        }
+    }
+}
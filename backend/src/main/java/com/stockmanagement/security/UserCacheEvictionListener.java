@@ -0,0 +1,34 @@
+package com.stockmanagement.security;
+
+import com.stockmanagement.entity.User;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import lombok.RequiredArgsConstructor;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Drops a user's cached UserDetails when the row is updated or deleted, e.g. on
+ * deactivation or a role change. The entry is evicted again once the transaction
+ * completes so a request reloading it before the commit cannot keep the old state.
+ */
+@RequiredArgsConstructor
+public class UserCacheEvictionListener {
+    
+    private final UserDetailsCache userDetailsCache;
+    
+    @PostUpdate
+    @PostRemove
+    public void evict(User user) {
+        String username = user.getUsername();
+        userDetailsCache.evict(username);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    userDetailsCache.evict(username);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.stockmanagement.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * Bounded, expiring cache of the UserDetails used to authorize JWT requests whose token
+ * predates the role and version claims; newer tokens are authorized from their claims.
+ * Entries are evicted by UserCacheEvictionListener whenever a user row changes;
+ * the TTL only bounds staleness for changes made outside this application.
+ * Hit and miss counts are published as the cache.gets meter with cache="userDetails".
+ */
+@Component
+public class UserDetailsCache {
+    
+    private final Cache<String, UserDetails> cache;
+    
+    public UserDetailsCache(@Value("${auth.user-cache.max-size:10000}") long maxSize,
+                            @Value("${auth.user-cache.ttl-seconds:300}") long ttlSeconds,
+                            MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "userDetails");
+    }
+    
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+        return cache.get(username, loader);
+    }
+    
+    public void evict(String username) {
+        cache.invalidate(username);
+    }
+}
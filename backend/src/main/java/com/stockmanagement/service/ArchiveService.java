@@ -0,0 +1,238 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.entity.ArchiveSegment;
+import com.stockmanagement.repository.ArchiveSegmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moves closed months older than the retention window out of the hot tables, oldest first,
+ * so the hot tables only ever hold the retention window. Each month goes through three states
+ * recorded in archive_segments:
+ *
+ * - WRITING: the segment file (and for bills, the lookup file of BillArchive) is written to a
+ *   temporary name, synced and renamed into place; reads still go to the hot table.
+ * - PURGING: the segment is complete and reads of the month switch to it; the month's hot
+ *   rows are deleted in small transactions. For bills, deletion waits until every instance
+ *   has had one lookup refresh interval to map the month's lookup file, so a bill number is
+ *   always found on one side; a month published too recently is purged by a later run.
+ * - ARCHIVED: the hot rows are gone.
+ *
+ * A run interrupted in either of the first two states picks up from there on the next run.
+ */
+@Slf4j
+@Service
+public class ArchiveService {
+    private static final String WRITING = "WRITING";
+    private static final String PURGING = "PURGING";
+    private static final String ARCHIVED = "ARCHIVED";
+    
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    
+    private static final Map<String, String> OLDEST_SQL = Map.of(
+        ArchiveStore.BILLS, "SELECT MIN(bill_date) FROM bills",
+        ArchiveStore.STOCK_TRANSACTIONS, "SELECT MIN(transaction_date) FROM stock_transactions");
+    
+    private static final Map<String, String> PURGE_IDS_SQL = Map.of(
+        ArchiveStore.BILLS, "SELECT id FROM bills WHERE bill_date >= ? AND bill_date < ? ORDER BY id LIMIT ",
+        ArchiveStore.STOCK_TRANSACTIONS,
+        "SELECT id FROM stock_transactions WHERE transaction_date >= ? AND transaction_date < ? ORDER BY id LIMIT ");
+    
+    // Children first
+    private static final Map<String, List<String>> PURGE_SQL = Map.of(
+        ArchiveStore.BILLS, List.of("DELETE FROM bill_items WHERE bill_id IN (:ids)", "DELETE FROM bills WHERE id IN (:ids)"),
+        ArchiveStore.STOCK_TRANSACTIONS, List.of("DELETE FROM stock_transactions WHERE id IN (:ids)"));
+    
+    private final ArchiveSegmentRepository segmentRepository;
+    private final ArchiveStore archiveStore;
+    private final BillArchive billArchive;
+    private final ExportService exportService;
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int retentionMonths;
+    private final int purgeBatchSize;
+    private final long lookupRefreshMillis;
+    
+    public ArchiveService(ArchiveSegmentRepository segmentRepository, ArchiveStore archiveStore,
+                          BillArchive billArchive, ExportService exportService, DataSource dataSource,
+                          PlatformTransactionManager transactionManager,
+                          @Value("${archive.enabled:false}") boolean enabled,
+                          @Value("${archive.retention-months:12}") int retentionMonths,
+                          @Value("${archive.purge-batch-size:1000}") int purgeBatchSize,
+                          @Value("${archive.lookup.refresh-ms:60000}") long lookupRefreshMillis) {
+        this.segmentRepository = segmentRepository;
+        this.archiveStore = archiveStore;
+        this.billArchive = billArchive;
+        this.exportService = exportService;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.retentionMonths = retentionMonths;
+        this.purgeBatchSize = purgeBatchSize;
+        this.lookupRefreshMillis = lookupRefreshMillis;
+        if (enabled && !Files.isWritable(archiveStore.directory())) {
+            throw new IllegalStateException("archive.enabled is set but archive.directory " + archiveStore.directory() +
+                " is not writable");
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${archive.interval-ms:86400000}", initialDelayString = "${archive.initial-delay-ms:60000}")
+    public void scheduledArchive() {
+        if (enabled) {
+            archive();
+        }
+    }
+    
+    /**
+     * Archives every month that ended before the retention window, returning the segments
+     * completed by this run. Only the instance with archive.enabled may run it.
+     */
+    public synchronized List<ArchiveSegment> archive() {
+        if (!enabled) {
+            throw new IllegalStateException("Archiving is disabled on this instance (archive.enabled=false)");
+        }
+        LocalDate before = LocalDate.now().withDayOfMonth(1).minusMonths(retentionMonths);
+        List<ArchiveSegment> archived = new ArrayList<>();
+        for (String dataset : List.of(ArchiveStore.BILLS, ArchiveStore.STOCK_TRANSACTIONS)) {
+            archived.addAll(archive(dataset, before));
+        }
+        return archived;
+    }
+    
+    private List<ArchiveSegment> archive(String dataset, LocalDate before) {
+        List<ArchiveSegment> archived = new ArrayList<>();
+        for (ArchiveSegment segment : segmentRepository.findByDatasetOrderByPeriodStart(dataset)) {
+            if (!ARCHIVED.equals(segment.getStatus())) {
+                archived.add(complete(segment));
+            }
+        }
+        LocalDate month = nextMonth(dataset);
+        while (month != null && month.isBefore(before)) {
+            ArchiveSegment segment;
+            try {
+                segment = segmentRepository.save(new ArchiveSegment(null, dataset, month, month.plusMonths(1),
+                    dataset + "/" + month.toString().substring(0, 7) + ".ndjson.gz", WRITING, null, null,
+                    LocalDateTime.now(), null, null));
+            } catch (DataIntegrityViolationException e) {
+                log.info("Archive of {} {} already started elsewhere", dataset, month);
+                break;
+            }
+            archived.add(complete(segment));
+            month = month.plusMonths(1);
+        }
+        return archived;
+    }
+    
+    // First month to archive: the one after the last segment, or the month of the oldest hot row
+    private LocalDate nextMonth(String dataset) {
+        LocalDateTime hotFrom = archiveStore.hotFrom(dataset);
+        if (hotFrom != null) {
+            return hotFrom.toLocalDate();
+        }
+        Timestamp oldest = jdbcTemplate.queryForObject(OLDEST_SQL.get(dataset), Timestamp.class);
+        return oldest != null ? oldest.toLocalDateTime().toLocalDate().withDayOfMonth(1) : null;
+    }
+    
+    private ArchiveSegment complete(ArchiveSegment segment) {
+        if (WRITING.equals(segment.getStatus())) {
+            write(segment);
+            segment.setStatus(PURGING);
+            segment.setReadableAt(LocalDateTime.now());
+            segment = segmentRepository.save(segment);
+        }
+        if (ArchiveStore.BILLS.equals(segment.getDataset())) {
+            // Serve lookups of the month's bills from the archive before their rows are deleted
+            billArchive.refresh();
+            if (segment.getReadableAt() != null &&
+                    segment.getReadableAt().plusNanos(lookupRefreshMillis * 1_000_000).isAfter(LocalDateTime.now())) {
+                log.info("Purge of bills {} waits for other instances to map its lookup file", segment.getPeriodStart());
+                return segment;
+            }
+        }
+        int purged = purge(segment);
+        segment.setStatus(ARCHIVED);
+        segment.setArchivedAt(LocalDateTime.now());
+        log.info("Archived {} {}: {} rows, {} bytes, {} hot rows purged", segment.getDataset(),
+            segment.getPeriodStart(), segment.getRowCount(), segment.getSizeBytes(), purged);
+        return segmentRepository.save(segment);
+    }
+    
+    private void write(ArchiveSegment segment) {
+        Path target = archiveStore.directory().resolve(segment.getPath());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        LocalDateTime start = segment.getPeriodStart().atStartOfDay();
+        // The export range is inclusive; rows are stored at microsecond precision
+        LocalDateTime end = segment.getPeriodEnd().atStartOfDay().minusNanos(1000);
+        try {
+            Files.createDirectories(target.getParent());
+            Files.deleteIfExists(temp);
+            long rows;
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                GZIPOutputStream out = new GZIPOutputStream(new BufferedOutputStream(file, WRITE_BUFFER_SIZE),
+                    WRITE_BUFFER_SIZE);
+                rows = exportService.exportHot(segment.getDataset(), start, end, out);
+                out.finish();
+                out.flush();
+                file.getFD().sync();
+            }
+            // A segment that already exists came from a run that stopped before recording it
+            if (Files.exists(target)) {
+                target.toFile().setWritable(true);
+            }
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            target.toFile().setReadOnly();
+            segment.setRowCount(rows);
+            segment.setSizeBytes(Files.size(target));
+            if (ArchiveStore.BILLS.equals(segment.getDataset())) {
+                billArchive.write(segment);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not write archive segment " + target, e);
+        }
+    }
+    
+    private int purge(ArchiveSegment segment) {
+        String idsSql = PURGE_IDS_SQL.get(segment.getDataset()) + purgeBatchSize;
+        Timestamp start = Timestamp.valueOf(segment.getPeriodStart().atStartOfDay());
+        Timestamp end = Timestamp.valueOf(segment.getPeriodEnd().atStartOfDay());
+        int purged = 0;
+        while (true) {
+            List<Long> ids = jdbcTemplate.queryForList(idsSql, Long.class, start, end);
+            if (ids.isEmpty()) {
+                return purged;
+            }
+            transactionTemplate.executeWithoutResult(status -> {
+                for (String sql : PURGE_SQL.get(segment.getDataset())) {
+                    namedJdbcTemplate.update(sql, Map.of("ids", ids));
+                }
+            });
+            purged += ids.size();
+        }
+    }
+}
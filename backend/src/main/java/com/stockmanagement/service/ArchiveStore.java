@@ -0,0 +1,188 @@
+package com.stockmanagement.service;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.cfg.JsonNodeFeature;
+import com.stockmanagement.entity.ArchiveSegment;
+import com.stockmanagement.repository.ArchiveSegmentRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Read side of the archive. Bills and stock transactions are split by month: closed months
+ * older than the retention window live in gzip-compressed NDJSON segment files listed in
+ * archive_segments, everything newer stays in the hot tables. Archived months always form a
+ * prefix of time, so one boundary tells a date-range read which side each part of its range
+ * is on, and each side only touches the months it needs.
+ */
+@Slf4j
+@Component
+public class ArchiveStore {
+    public static final String BILLS = "bills";
+    public static final String STOCK_TRANSACTIONS = "stock_transactions";
+    
+    private static final int READ_BUFFER_SIZE = 64 * 1024;
+    
+    // Rows in a segment are ordered by this column
+    private static final Map<String, String> DATE_COLUMNS = Map.of(
+        BILLS, "bill_date",
+        STOCK_TRANSACTIONS, "transaction_date");
+    
+    private final ArchiveSegmentRepository segmentRepository;
+    private final ObjectReader rowReader;
+    private final Path directory;
+    
+    public ArchiveStore(ArchiveSegmentRepository segmentRepository, ObjectMapper objectMapper,
+                        @Value("${archive.directory:./data/archive}") String directory) {
+        this.segmentRepository = segmentRepository;
+        // Keeps the scale of decimal columns, so amounts read back exactly as they were written
+        this.rowReader = objectMapper.readerFor(JsonNode.class)
+            .with(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS)
+            .without(JsonNodeFeature.STRIP_TRAILING_BIGDECIMAL_ZEROES);
+        this.directory = Paths.get(directory);
+        try {
+            Files.createDirectories(this.directory);
+        } catch (IOException e) {
+            // Only fatal where segments are read or written; checked below and by ArchiveService
+            log.warn("Could not create archive.directory {}: {}", this.directory, e.toString());
+        }
+    }
+    
+    // Months already archived are only readable from their segments, so a directory that does not
+    // hold them (an unmounted share, the wrong path) must stop startup rather than hide those rows
+    @PostConstruct
+    void checkSegments() {
+        for (String dataset : List.of(BILLS, STOCK_TRANSACTIONS)) {
+            for (ArchiveSegment segment : getReadableSegments(dataset)) {
+                if (!Files.isReadable(directory.resolve(segment.getPath()))) {
+                    throw new IllegalStateException("Archive segment " + segment.getPath() + " is not readable under " +
+                        "archive.directory " + directory.toAbsolutePath() +
+                        "; point ARCHIVE_DIRECTORY at the archive share mounted on every instance");
+                }
+            }
+        }
+    }
+    
+    /**
+     * Start of the oldest month still in the hot table, or null when nothing is archived.
+     * Rows dated before it are only in segments.
+     */
+    public LocalDateTime hotFrom(String dataset) {
+        LocalDate hotFrom = segmentRepository.findHotFrom(dataset);
+        return hotFrom != null ? hotFrom.atStartOfDay() : null;
+    }
+    
+    // Rejects ranges reaching into archived months, for reads that only work on hot rows
+    public void requireHot(String dataset, LocalDateTime from, String what) {
+        LocalDateTime hotFrom = hotFrom(dataset);
+        if (hotFrom != null && from.isBefore(hotFrom)) {
+            throw new IllegalArgumentException(what + " before " + hotFrom.toLocalDate() + " is archived");
+        }
+    }
+    
+    public List<ArchiveSegment> getSegments(String dataset) {
+        return segmentRepository.findByDatasetOrderByPeriodStart(dataset);
+    }
+    
+    Path directory() {
+        return directory;
+    }
+    
+    /**
+     * Streams the archived rows dated within [start, end] in date order, opening only the
+     * segments of the months the range overlaps.
+     */
+    public void read(String dataset, LocalDateTime start, LocalDateTime end, RowHandler handler) throws IOException {
+        for (ArchiveSegment segment : segmentRepository.findReadableOverlapping(dataset,
+                start.toLocalDate(), end.toLocalDate())) {
+            read(segment, start, end, handler);
+        }
+    }
+    
+    // Segments whose rows are read from the archive rather than the hot table
+    public List<ArchiveSegment> getReadableSegments(String dataset) {
+        return segmentRepository.findByDatasetAndStatusNotOrderByPeriodStart(dataset, "WRITING");
+    }
+    
+    // Every row of one segment
+    void readSegment(ArchiveSegment segment, RowHandler handler) throws IOException {
+        read(segment, null, null, handler);
+    }
+    
+    private void read(ArchiveSegment segment, LocalDateTime start, LocalDateTime end,
+                      RowHandler handler) throws IOException {
+        String dateColumn = DATE_COLUMNS.get(segment.getDataset());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(directory.resolve(segment.getPath())),
+                READ_BUFFER_SIZE);
+             MappingIterator<JsonNode> rows = rowReader.readValues(in)) {
+            String[] columns = null;
+            while (rows.hasNext()) {
+                JsonNode row = rows.next();
+                if (start != null) {
+                    LocalDateTime date = LocalDateTime.parse(row.get(dateColumn).textValue());
+                    if (date.isAfter(end)) {
+                        break;
+                    }
+                    if (date.isBefore(start)) {
+                        continue;
+                    }
+                }
+                if (columns == null) {
+                    columns = columnNames(row);
+                }
+                Object[] values = new Object[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    values[i] = value(row.get(columns[i]));
+                }
+                handler.row(columns, values);
+            }
+        }
+    }
+    
+    private static String[] columnNames(JsonNode row) {
+        List<String> names = new ArrayList<>(row.size());
+        for (Iterator<String> it = row.fieldNames(); it.hasNext(); ) {
+            names.add(it.next());
+        }
+        return names.toArray(new String[0]);
+    }
+    
+    private static Object value(JsonNode node) {
+        if (node == null || node.isNull()) {
+            return null;
+        }
+        if (node.isBigDecimal()) {
+            return node.decimalValue();
+        }
+        if (node.isNumber()) {
+            return node.numberValue();
+        }
+        if (node.isBoolean()) {
+            return node.booleanValue();
+        }
+        return node.asText();
+    }
+    
+    @FunctionalInterface
+    public interface RowHandler {
+        void row(String[] columns, Object[] values) throws IOException;
+    }
+}
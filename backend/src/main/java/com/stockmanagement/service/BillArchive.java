@@ -0,0 +1,408 @@
+package com.stockmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmanagement.dto.BillItemResponse;
+import com.stockmanagement.dto.BillResponse;
+import com.stockmanagement.dto.ProductSummary;
+import com.stockmanagement.dto.UserSummary;
+import com.stockmanagement.entity.ArchiveSegment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Lookup of archived bills by bill number without touching the database. Next to each archived
+ * month of bills sits an immutable lookup file:
+ *
+ * - a header: magic, version, bill count, key width, the offset of the index and the length
+ *   of the dictionary;
+ * - the JSON of the month's first bill, the preset dictionary of every record, so the field
+ *   names and recurring values shared by all bills cost next to nothing per record;
+ * - one deflate-compressed JSON BillResponse per bill, in bill date order;
+ * - an index sorted by bill number, with fixed-width entries (the number zero-padded to the
+ *   key width, then the record's offset, compressed length and length).
+ *
+ * Files are memory-mapped and searched in place, so a lookup costs a binary search over the
+ * mapped index plus inflating one record. Bill numbers carry their date, so months cover
+ * disjoint number ranges and a number is looked up in the month whose range holds it.
+ */
+@Slf4j
+@Component
+public class BillArchive {
+    private static final int MAGIC = 0x42494C4C; // "BILL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int ENTRY_TRAILER_SIZE = 16;
+    private static final String SEGMENT_SUFFIX = ".ndjson.gz";
+    private static final String LOOKUP_SUFFIX = ".lookup";
+    
+    private final ArchiveStore archiveStore;
+    private final ObjectMapper objectMapper;
+    private final Set<Long> loaded = new HashSet<>(); // Guarded by this
+    private volatile List<LookupFile> files = List.of();
+    
+    public BillArchive(ArchiveStore archiveStore, ObjectMapper objectMapper) {
+        this.archiveStore = archiveStore;
+        this.objectMapper = objectMapper;
+    }
+    
+    /**
+     * The archived bill with this number, if the number falls in an archived month. Only reads
+     * the mapped files.
+     */
+    public Optional<BillResponse> find(String billNumber) {
+        byte[] key = billNumber.getBytes(StandardCharsets.UTF_8);
+        for (LookupFile file : files) {
+            if (file.covers(key)) {
+                return Optional.ofNullable(file.find(key)).map(this::decode);
+            }
+        }
+        return Optional.empty();
+    }
+    
+    /**
+     * Maps the lookup files of months archived since the last call, writing any that are missing.
+     * Runs at startup, on a schedule and after the archiver publishes a month, never on a lookup,
+     * so lookups only ever read what is already mapped. Returns whether anything new was mapped.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${archive.lookup.refresh-ms:60000}", initialDelayString = "${archive.lookup.refresh-ms:60000}")
+    public synchronized boolean refresh() {
+        List<LookupFile> mapped = new ArrayList<>(files);
+        boolean changed = false;
+        for (ArchiveSegment segment : archiveStore.getReadableSegments(ArchiveStore.BILLS)) {
+            if (loaded.contains(segment.getId())) {
+                continue;
+            }
+            Path path = lookupPath(segment);
+            try {
+                if (!Files.exists(path)) {
+                    write(segment);
+                }
+                LookupFile file = LookupFile.map(path);
+                if (file.count > 0) {
+                    mapped.add(file);
+                }
+            } catch (IOException | RuntimeException e) {
+                log.warn("Could not map bill lookup file {}", path, e);
+                continue;
+            }
+            loaded.add(segment.getId());
+            changed = true;
+        }
+        if (changed) {
+            mapped.sort(Comparator.comparing(file -> file.firstKey, Arrays::compareUnsigned));
+            files = List.copyOf(mapped);
+        }
+        return changed;
+    }
+    
+    /**
+     * Writes the lookup file of an archived month of bills from its segment. Records are written
+     * as the segment is read; only the index entries are held until the end.
+     */
+    void write(ArchiveSegment segment) throws IOException {
+        Path target = lookupPath(segment);
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        List<IndexEntry> entries = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_SIZE);
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            byte[][] dictionary = new byte[1][];
+            try {
+                BillAssembler assembler = new BillAssembler(bill -> entries.add(append(channel, deflater, dictionary, bill)));
+                archiveStore.readSegment(segment, assembler::row);
+                assembler.finish();
+            } finally {
+                deflater.end();
+            }
+            
+            entries.sort((a, b) -> Arrays.compareUnsigned(a.key, b.key));
+            int keyWidth = entries.stream().mapToInt(entry -> entry.key.length).max().orElse(0);
+            long indexOffset = channel.position();
+            ByteBuffer index = ByteBuffer.allocate(entries.size() * (keyWidth + ENTRY_TRAILER_SIZE));
+            for (IndexEntry entry : entries) {
+                index.put(entry.key).put(new byte[keyWidth - entry.key.length]);
+                index.putLong(entry.offset).putInt(entry.compressedLength).putInt(entry.length);
+            }
+            writeFully(channel, index.flip());
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC).putInt(VERSION).putInt(entries.size()).putInt(keyWidth).putLong(indexOffset)
+                .putInt(dictionary[0] != null ? dictionary[0].length : 0);
+            channel.position(0);
+            writeFully(channel, header.flip());
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        target.toFile().setReadOnly();
+    }
+    
+    private IndexEntry append(FileChannel channel, Deflater deflater, byte[][] dictionary, BillResponse bill) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(bill);
+            if (dictionary[0] == null) {
+                dictionary[0] = json;
+                writeFully(channel, ByteBuffer.wrap(json));
+            }
+            deflater.reset();
+            deflater.setDictionary(dictionary[0]);
+            deflater.setInput(json);
+            deflater.finish();
+            byte[] compressed = new byte[json.length + 64];
+            int length = 0;
+            while (!deflater.finished()) {
+                if (length == compressed.length) {
+                    compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                length += deflater.deflate(compressed, length, compressed.length - length);
+            }
+            long offset = channel.position();
+            writeFully(channel, ByteBuffer.wrap(compressed, 0, length));
+            return new IndexEntry(bill.getBillNumber().getBytes(StandardCharsets.UTF_8), offset, length, json.length);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    private BillResponse decode(Record record) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(record.compressed);
+            byte[] json = new byte[record.length];
+            int read = 0;
+            while (read < json.length && !inflater.finished()) {
+                int inflated = inflater.inflate(json, read, json.length - read);
+                if (inflated == 0 && inflater.needsDictionary()) {
+                    inflater.setDictionary(record.dictionary);
+                } else if (inflated == 0 && inflater.needsInput()) {
+                    throw new DataFormatException("Truncated record");
+                }
+                read += inflated;
+            }
+            return objectMapper.readValue(json, BillResponse.class);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupt archived bill record", e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+    
+    private Path lookupPath(ArchiveSegment segment) {
+        String path = segment.getPath();
+        if (path.endsWith(SEGMENT_SUFFIX)) {
+            path = path.substring(0, path.length() - SEGMENT_SUFFIX.length());
+        }
+        return archiveStore.directory().resolve(path + LOOKUP_SUFFIX);
+    }
+    
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+    
+    private record IndexEntry(byte[] key, long offset, int compressedLength, int length) {
+    }
+    
+    private record Record(byte[] compressed, int length, byte[] dictionary) {
+    }
+    
+    /**
+     * One mapped lookup file. The mapping is read-only and only read with absolute gets, so any
+     * number of threads can search it at once.
+     */
+    private static final class LookupFile {
+        private final MappedByteBuffer buffer;
+        private final int count;
+        private final int keyWidth;
+        private final int indexOffset;
+        private final int entrySize;
+        private final byte[] dictionary;
+        private final byte[] firstKey;
+        private final byte[] lastKey;
+        
+        private LookupFile(MappedByteBuffer buffer) {
+            this.buffer = buffer;
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IllegalStateException("Not a bill lookup file");
+            }
+            this.count = buffer.getInt(8);
+            this.keyWidth = buffer.getInt(12);
+            this.indexOffset = (int) buffer.getLong(16);
+            this.entrySize = keyWidth + ENTRY_TRAILER_SIZE;
+            this.dictionary = new byte[buffer.getInt(24)];
+            buffer.get(HEADER_SIZE, dictionary);
+            this.firstKey = count > 0 ? key(0) : null;
+            this.lastKey = count > 0 ? key(count - 1) : null;
+        }
+        
+        static LookupFile map(Path path) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                if (channel.size() > Integer.MAX_VALUE) {
+                    throw new IllegalStateException("Bill lookup file too large to map: " + path);
+                }
+                // The mapping stays valid after the channel is closed
+                return new LookupFile(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            }
+        }
+        
+        boolean covers(byte[] key) {
+            return Arrays.compareUnsigned(key, firstKey) >= 0 && Arrays.compareUnsigned(key, lastKey) <= 0;
+        }
+        
+        Record find(byte[] key) {
+            if (key.length > keyWidth) {
+                return null;
+            }
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(key, mid);
+                if (cmp > 0) {
+                    low = mid + 1;
+                } else if (cmp < 0) {
+                    high = mid - 1;
+                } else {
+                    int entry = indexOffset + mid * entrySize + keyWidth;
+                    int offset = (int) buffer.getLong(entry);
+                    byte[] compressed = new byte[buffer.getInt(entry + 8)];
+                    buffer.get(offset, compressed);
+                    return new Record(compressed, buffer.getInt(entry + 12), dictionary);
+                }
+            }
+            return null;
+        }
+        
+        // Compares the key with the zero-padded key of the entry
+        private int compare(byte[] key, int entry) {
+            int base = indexOffset + entry * entrySize;
+            for (int i = 0; i < keyWidth; i++) {
+                int a = i < key.length ? key[i] & 0xFF : 0;
+                int b = buffer.get(base + i) & 0xFF;
+                if (a != b) {
+                    return a - b;
+                }
+            }
+            return 0;
+        }
+        
+        private byte[] key(int entry) {
+            int base = indexOffset + entry * entrySize;
+            int length = keyWidth;
+            while (length > 0 && buffer.get(base + length - 1) == 0) {
+                length--;
+            }
+            byte[] key = new byte[length];
+            buffer.get(base, key);
+            return key;
+        }
+    }
+    
+    /**
+     * Turns segment rows, one per bill line with the bill columns repeated, back into bills. Rows
+     * of a bill are adjacent in the segment.
+     */
+    private static final class BillAssembler {
+        private final Consumer<BillResponse> sink;
+        private Map<String, Integer> columnIndex;
+        private BillResponse current;
+        
+        BillAssembler(Consumer<BillResponse> sink) {
+            this.sink = sink;
+        }
+        
+        void row(String[] columns, Object[] values) {
+            if (columnIndex == null) {
+                columnIndex = new HashMap<>();
+                for (int i = 0; i < columns.length; i++) {
+                    columnIndex.put(columns[i], i);
+                }
+            }
+            Long billId = asLong(values, "bill_id");
+            if (current == null || !current.getId().equals(billId)) {
+                finish();
+                Long userId = asLong(values, "user_id");
+                current = new BillResponse(billId, asString(values, "bill_number"),
+                    LocalDateTime.parse(asString(values, "bill_date")), asString(values, "customer_name"),
+                    asString(values, "customer_phone"), asString(values, "customer_email"), new ArrayList<>(),
+                    asDecimal(values, "subtotal"), asDecimal(values, "tax"), asDecimal(values, "discount"),
+                    asDecimal(values, "total"), asString(values, "payment_method"), asString(values, "status"),
+                    userId != null ? new UserSummary(userId, asString(values, "cashier_name")) : null,
+                    asLong(values, "location_id"));
+            }
+            Long itemId = asLong(values, "item_id");
+            if (itemId != null) {
+                Long productId = asLong(values, "product_id");
+                current.getItems().add(new BillItemResponse(itemId,
+                    productId != null ? new ProductSummary(productId, asString(values, "sku"), asString(values, "product_name")) : null,
+                    asInteger(values, "quantity"), asDecimal(values, "unit_price"), asDecimal(values, "line_total")));
+            }
+        }
+        
+        void finish() {
+            if (current != null) {
+                sink.accept(current);
+                current = null;
+            }
+        }
+        
+        private Object value(Object[] values, String column) {
+            Integer index = columnIndex.get(column);
+            return index != null ? values[index] : null;
+        }
+        
+        private String asString(Object[] values, String column) {
+            Object value = value(values, column);
+            return value != null ? value.toString() : null;
+        }
+        
+        private Long asLong(Object[] values, String column) {
+            Object value = value(values, column);
+            return value != null ? ((Number) value).longValue() : null;
+        }
+        
+        private Integer asInteger(Object[] values, String column) {
+            Object value = value(values, column);
+            return value != null ? ((Number) value).intValue() : null;
+        }
+        
+        private BigDecimal asDecimal(Object[] values, String column) {
+            Object value = value(values, column);
+            return value instanceof BigDecimal decimal ? decimal : value != null ? new BigDecimal(value.toString()) : null;
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package com.stockmanagement.service;
+
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * Hands out BILL-yyyyMMdd-NNNN numbers from blocks reserved in the bill_number_sequences table.
+ * Each block is claimed in its own short transaction, so instances never share a number and the
+ * sequence row is only locked once per block rather than for the whole checkout. Numbers left in
+ * a block when the day rolls over or the app stops are skipped, never reused.
+ *
+ * Reservations run on a private single-connection pool: the caller is usually inside a checkout
+ * that already holds a connection from the main pool, and waiting on that pool for a second one
+ * can deadlock once every connection belongs to such a caller.
+ */
+@Service
+public class BillNumberAllocator {
+    private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final int MAX_RESERVE_ATTEMPTS = 3;
+    
+    private final HikariDataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int blockSize;
+    
+    private LocalDate currentDay;
+    private long nextValue;
+    private long blockEnd;
+    
+    public BillNumberAllocator(DataSourceProperties dataSourceProperties,
+                               @Value("${bill.number.block-size:20}") int blockSize) {
+        this.dataSource = dataSourceProperties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        this.dataSource.setPoolName("bill-number-pool");
+        this.dataSource.setMaximumPoolSize(1);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        this.blockSize = blockSize;
+    }
+    
+    public synchronized String nextBillNumber(LocalDate day) {
+        if (!day.equals(currentDay) || nextValue >= blockEnd) {
+            nextValue = reserveBlock(day);
+            blockEnd = nextValue + blockSize;
+            currentDay = day;
+        }
+        return String.format("BILL-%s-%04d", day.format(DAY_FORMAT), nextValue++);
+    }
+    
+    private long reserveBlock(LocalDate day) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> {
+                    Long first = jdbcTemplate.query(
+                        "SELECT next_value FROM bill_number_sequences WHERE bill_day = ? FOR UPDATE",
+                        rs -> rs.next() ? rs.getLong(1) : null, day);
+                    if (first == null) {
+                        first = firstValueFor(day);
+                        jdbcTemplate.update("INSERT INTO bill_number_sequences (bill_day, next_value) VALUES (?, ?)",
+                            day, first + blockSize);
+                    } else {
+                        jdbcTemplate.update("UPDATE bill_number_sequences SET next_value = ? WHERE bill_day = ?",
+                            first + blockSize, day);
+                    }
+                    return first;
+                });
+            } catch (DuplicateKeyException e) {
+                // Another instance created the row for this day first; lock it on the next attempt
+                if (attempt >= MAX_RESERVE_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    private long firstValueFor(LocalDate day) {
+        // Continue after the highest number issued before this day had a sequence row. Skipped
+        // block numbers leave gaps, so counting the day's bills could land on an issued number.
+        // Suffixes grow past four digits, so the longest number sorts first.
+        String prefix = String.format("BILL-%s-", day.format(DAY_FORMAT));
+        String highest = jdbcTemplate.query(
+            "SELECT bill_number FROM bills WHERE bill_number LIKE ? " +
+            "ORDER BY LENGTH(bill_number) DESC, bill_number DESC LIMIT 1",
+            rs -> rs.next() ? rs.getString(1) : null, prefix + "%");
+        return highest != null ? Long.parseLong(highest.substring(prefix.length())) + 1 : 1;
+    }
+    
+    @PreDestroy
+    public void close() {
+        dataSource.close();
+    }
+}
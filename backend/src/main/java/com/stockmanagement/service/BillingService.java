@@ -2,68 +2,99 @@ package com.stockmanagement.service;
 
 import com.stockmanagement.dto.BillItemRequest;
 import com.stockmanagement.dto.BillRequest;
+import com.stockmanagement.dto.BillResponse;
+import com.stockmanagement.dto.CursorPage;
+import com.stockmanagement.dto.PageCursor;
 import com.stockmanagement.dto.StockUpdateRequest;
 import com.stockmanagement.entity.Bill;
 import com.stockmanagement.entity.BillItem;
+import com.stockmanagement.entity.Location;
 import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockTransaction;
 import com.stockmanagement.entity.User;
+import com.stockmanagement.metrics.ServiceMetrics;
+import com.stockmanagement.repository.BillItemRepository;
 import com.stockmanagement.repository.BillRepository;
-import com.stockmanagement.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class BillingService {
     private final BillRepository billRepository;
-    private final ProductRepository productRepository;
+    private final BillItemRepository billItemRepository;
     private final StockService stockService;
+    private final LocationService locationService;
+    private final BillNumberAllocator billNumberAllocator;
+    private final SalesRollupService salesRollupService;
+    private final ServiceMetrics serviceMetrics;
+    private final ArchiveStore archiveStore;
+    private final BillArchive billArchive;
     
     @Transactional
     public Bill createBill(BillRequest request, User user) {
+        long start = System.nanoTime();
+        try {
+            Bill saved = doCreateBill(request, user);
+            serviceMetrics.billCreated(saved.getItems().size());
+            return saved;
+        } finally {
+            serviceMetrics.recordCreateBill(start);
+        }
+    }
+    
+    private Bill doCreateBill(BillRequest request, User user) {
         Bill bill = new Bill();
-        bill.setBillNumber(generateBillNumber());
+        bill.setBillNumber(billNumberAllocator.nextBillNumber(bill.getBillDate().toLocalDate()));
         bill.setCustomerName(request.getCustomerName());
         bill.setCustomerPhone(request.getCustomerPhone());
         bill.setCustomerEmail(request.getCustomerEmail());
         bill.setPaymentMethod(request.getPaymentMethod());
         bill.setStatus("COMPLETED");
         bill.setUser(user);
+        Location location = locationService.resolve(request.getLocationId());
+        bill.setLocation(location);
         
-        // Add bill items
+        // Merge duplicate lines so each product is moved and billed once
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
         for (BillItemRequest itemRequest : request.getItems()) {
-            Product product = productRepository.findById(itemRequest.getProductId())
-                .orElseThrow(() -> new RuntimeException("Product not found: " + itemRequest.getProductId()));
-            
-            // Check stock availability
-            if (product.getCurrentStock() < itemRequest.getQuantity()) {
-                throw new RuntimeException("Insufficient stock for product: " + product.getName() + 
-                    ". Available: " + product.getCurrentStock());
-            }
+            quantities.merge(itemRequest.getProductId(), itemRequest.getQuantity(), Integer::sum);
+        }
+        
+        List<StockUpdateRequest> stockUpdates = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> entry : quantities.entrySet()) {
+            StockUpdateRequest stockUpdate = new StockUpdateRequest();
+            stockUpdate.setProductId(entry.getKey());
+            stockUpdate.setQuantity(entry.getValue());
+            stockUpdate.setTransactionType("OUT");
+            stockUpdate.setNotes("Bill #" + bill.getBillNumber());
+            stockUpdate.setLocationId(location.getId());
+            stockUpdates.add(stockUpdate);
+        }
+        
+        // Add bill items
+        for (StockTransaction transaction : stockService.updateStockBatch(stockUpdates, user)) {
+            Product product = transaction.getProduct();
             
             BillItem billItem = new BillItem();
             billItem.setBill(bill);
             billItem.setProduct(product);
-            billItem.setQuantity(itemRequest.getQuantity());
+            billItem.setQuantity(transaction.getQuantity());
             billItem.setUnitPrice(product.getSellingPrice());
             billItem.calculateLineTotal();
             
             bill.getItems().add(billItem);
-            
-            // Update stock
-            StockUpdateRequest stockUpdate = new StockUpdateRequest();
-            stockUpdate.setProductId(product.getId());
-            stockUpdate.setQuantity(itemRequest.getQuantity());
-            stockUpdate.setTransactionType("OUT");
-            stockUpdate.setNotes("Bill #" + bill.getBillNumber());
-            stockService.updateStock(stockUpdate, user);
         }
         
         // Calculate totals
@@ -71,29 +102,59 @@ public class BillingService {
         bill.setDiscount(request.getDiscount() != null ? BigDecimal.valueOf(request.getDiscount()) : BigDecimal.ZERO);
         bill.calculateTotals();
         
-        return billRepository.save(bill);
+        Bill saved = billRepository.save(bill);
+        salesRollupService.recordBill(saved);
+        return saved;
     }
     
-    public Optional<Bill> getBillById(Long id) {
-        return billRepository.findById(id);
+    @Transactional(readOnly = true)
+    public Optional<BillResponse> getBillById(Long id) {
+        return billRepository.findWithItemsById(id).map(BillResponse::from);
     }
     
-    public Optional<Bill> getBillByNumber(String billNumber) {
-        return billRepository.findByBillNumber(billNumber);
+    /**
+     * Numbers in an archived month are answered from the archive's mapped files without a
+     * query; others from the hot table. A month's hot rows outlive its lookup file by a refresh
+     * interval, so a number is always in one of them. Not transactional, so an archived bill
+     * never takes a connection.
+     */
+    public Optional<BillResponse> getBillByNumber(String billNumber) {
+        Optional<BillResponse> archived = billArchive.find(billNumber);
+        if (archived.isPresent()) {
+            return archived;
+        }
+        return billRepository.findWithItemsByBillNumber(billNumber).map(BillResponse::from);
     }
     
-    public List<Bill> getAllBills() {
-        return billRepository.findAllOrderByBillDateDesc();
+    /**
+     * One query for the page of bills and their cashiers and one for all of their items and
+     * products, regardless of page size.
+     */
+    @Transactional(readOnly = true)
+    public CursorPage<BillResponse> getBills(String cursor, Integer limit) {
+        PageCursor position = PageCursor.decode(cursor);
+        int pageSize = CursorPage.clampLimit(limit);
+        List<Bill> rows = billRepository.findPageBefore(position.getTimestamp(), position.getId(),
+            PageRequest.of(0, pageSize + 1));
+        CursorPage<Bill> page = CursorPage.of(rows, pageSize, bill -> new PageCursor(bill.getBillDate(), bill.getId()));
+        
+        Map<Long, List<BillItem>> itemsByBill = new HashMap<>();
+        if (!page.getItems().isEmpty()) {
+            List<Long> billIds = page.getItems().stream().map(Bill::getId).toList();
+            for (BillItem item : billItemRepository.findWithProductByBillIdIn(billIds)) {
+                itemsByBill.computeIfAbsent(item.getBill().getId(), id -> new ArrayList<>()).add(item);
+            }
+        }
+        List<BillResponse> bills = new ArrayList<>(page.getItems().size());
+        for (Bill bill : page.getItems()) {
+            bills.add(BillResponse.from(bill, itemsByBill.getOrDefault(bill.getId(), List.of())));
+        }
+        return new CursorPage<>(bills, page.getNextCursor());
     }
     
+    // Hot bills only: a range reaching into archived months is rejected, those are read through the export
     public List<Bill> getBillsByDateRange(LocalDateTime start, LocalDateTime end) {
+        archiveStore.requireHot(ArchiveStore.BILLS, start, "Bills");
         return billRepository.findByBillDateBetween(start, end);
     }
-    
-    private String generateBillNumber() {
-        LocalDateTime now = LocalDateTime.now();
-        String datePrefix = now.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        Long count = billRepository.countBillsSince(now.toLocalDate().atStartOfDay());
-        return String.format("BILL-%s-%04d", datePrefix, count + 1);
-    }
 }
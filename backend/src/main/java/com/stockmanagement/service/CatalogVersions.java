@@ -0,0 +1,179 @@
+package com.stockmanagement.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Monotonic version of the product catalog, bumped by every transaction that changes a
+ * product's fields or stock, with the version each product last changed at. It drives the
+ * catalog ETags and the changes-since delta.
+ *
+ * The version and the per-product versions live in the database, so every instance serves the
+ * same ETags and deltas. A transaction takes the next version just before it commits, under the
+ * lock of the single catalog_version row, so versions become visible in the order they were
+ * handed out: a reader that saw version V already sees every product change up to V.
+ *
+ * The counter starts from the time its row was created in microseconds, above any version the
+ * in-memory counter used to hand out; clients holding a version from before that do one full sync.
+ */
+@Component
+public class CatalogVersions {
+    private static final int COUNTER_ID = 1;
+    private static final int ID_BATCH_SIZE = 500;
+    
+    private static final String UPDATE_SQL = "UPDATE catalog_changes SET version = ?, deleted = ? WHERE product_id = ?";
+    private static final String INSERT_SQL = "INSERT INTO catalog_changes (version, deleted, product_id) VALUES (?, ?, ?)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private long baseVersion;
+    
+    // Taking the EntityManagerFactory also makes this run after the schema update created the tables
+    public CatalogVersions(DataSource dataSource, PlatformTransactionManager transactionManager,
+                           EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.entityManagerFactory = entityManagerFactory;
+    }
+    
+    @PostConstruct
+    void init() {
+        List<Long> base = jdbcTemplate.queryForList("SELECT base_version FROM catalog_version WHERE id = ?", Long.class,
+            COUNTER_ID);
+        if (base.isEmpty()) {
+            long now = System.currentTimeMillis() * 1000;
+            try {
+                jdbcTemplate.update("INSERT INTO catalog_version (id, version, base_version) VALUES (?, ?, ?)",
+                    COUNTER_ID, now, now);
+            } catch (DuplicateKeyException e) {
+                // Another instance created the row first
+            }
+            base = jdbcTemplate.queryForList("SELECT base_version FROM catalog_version WHERE id = ?", Long.class,
+                COUNTER_ID);
+        }
+        baseVersion = base.get(0);
+    }
+    
+    public long current() {
+        return jdbcTemplate.queryForObject("SELECT version FROM catalog_version WHERE id = ?", Long.class, COUNTER_ID);
+    }
+    
+    public static String etag(long version) {
+        return "\"" + version + "\"";
+    }
+    
+    // True when the deltas since this version are known; older or foreign versions need a full sync
+    public boolean canDiff(long since, long current) {
+        return since >= baseVersion && since <= current;
+    }
+    
+    public void changed(Long productId) {
+        record(List.of(productId), false);
+    }
+    
+    public void changed(Collection<Long> productIds) {
+        record(productIds, false);
+    }
+    
+    public void deleted(Long productId) {
+        record(List.of(productId), true);
+    }
+    
+    public List<Long> changedSince(long since) {
+        return idsAfter(since, false);
+    }
+    
+    public List<Long> deletedSince(long since) {
+        return idsAfter(since, true);
+    }
+    
+    // Collects the products of the current transaction and writes them once, when it commits
+    private void record(Collection<Long> productIds, boolean deleted) {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            transactionTemplate.executeWithoutResult(status -> record(productIds, deleted));
+            return;
+        }
+        Pending pending = (Pending) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            pending = new Pending();
+            TransactionSynchronizationManager.bindResource(this, pending);
+            TransactionSynchronizationManager.registerSynchronization(pending);
+        }
+        for (Long productId : productIds) {
+            pending.products.put(productId, deleted);
+        }
+    }
+    
+    private void write(Map<Long, Boolean> products) {
+        // Flush entity changes first, so every writer takes its product row locks before the
+        // counter lock and two writers never wait on each other in opposite order
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+        if (holder != null) {
+            holder.getEntityManager().flush();
+        }
+        jdbcTemplate.update("UPDATE catalog_version SET version = version + 1 WHERE id = ?", COUNTER_ID);
+        long version = current();
+        
+        // Writers are serialized by the counter lock, so rows found missing here can be inserted safely
+        List<Long> ids = new ArrayList<>(products.keySet());
+        Set<Long> existing = new HashSet<>();
+        for (int from = 0; from < ids.size(); from += ID_BATCH_SIZE) {
+            existing.addAll(namedJdbcTemplate.queryForList(
+                "SELECT product_id FROM catalog_changes WHERE product_id IN (:ids)",
+                Map.of("ids", ids.subList(from, Math.min(from + ID_BATCH_SIZE, ids.size()))), Long.class));
+        }
+        List<Object[]> updates = new ArrayList<>();
+        List<Object[]> inserts = new ArrayList<>();
+        for (Map.Entry<Long, Boolean> product : products.entrySet()) {
+            Object[] row = {version, product.getValue(), product.getKey()};
+            (existing.contains(product.getKey()) ? updates : inserts).add(row);
+        }
+        if (!updates.isEmpty()) {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+        }
+        if (!inserts.isEmpty()) {
+            jdbcTemplate.batchUpdate(INSERT_SQL, inserts);
+        }
+    }
+    
+    private List<Long> idsAfter(long since, boolean deleted) {
+        return jdbcTemplate.queryForList(
+            "SELECT product_id FROM catalog_changes WHERE version > ? AND deleted = ? ORDER BY product_id", Long.class,
+            since, deleted);
+    }
+    
+    private final class Pending implements TransactionSynchronization {
+        private final Map<Long, Boolean> products = new TreeMap<>(); // Product id -> deleted
+        
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            write(products);
+        }
+        
+        @Override
+        public void afterCompletion(int status) {
+            TransactionSynchronizationManager.unbindResourceIfPossible(CatalogVersions.this);
+        }
+    }
+}
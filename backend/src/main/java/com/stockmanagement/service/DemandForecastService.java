@@ -0,0 +1,423 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.ForecastRecomputeResult;
+import com.stockmanagement.dto.ReorderSuggestion;
+import com.stockmanagement.entity.DemandForecast;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.repository.DemandForecastRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reorder points and quantities from each product's sales velocity: exponentially weighted
+ * averages of the units sold per day by OUT movements. The averages are kept per product in
+ * demand_forecasts and folded forward a day at a time. A movement only adds its quantity to an
+ * in-memory tally once it commits; the flush folds the tallies into the rows, so checkouts never
+ * wait on a forecast row and nothing is recomputed from history. The recompute rebuilds every
+ * row from stock_transactions in parallel chunks of products, for backfills and after changing
+ * the smoothing factor.
+ *
+ * Suggestions assume a demand of mean * L over a lead time of L days, with a safety stock of
+ * z * stddev * sqrt(L), and order up to the reorder point plus the coverage days' demand.
+ */
+@Slf4j
+@Service
+public class DemandForecastService {
+    private static final int BATCH_SIZE = 500;
+    
+    // A year and a half of days without sales decays any average to nothing
+    private static final int MAX_EMPTY_DAYS = 550;
+    
+    private static final String SUGGESTIONS_SQL =
+        "SELECT p.id, p.sku, p.name, p.current_stock, p.min_stock_level, " +
+        "f.current_day, f.current_quantity, f.mean_daily, f.variance, f.days_observed " +
+        "FROM products p LEFT JOIN demand_forecasts f ON f.product_id = p.id ";
+    
+    private static final String PRODUCT_RANGE_SQL = "SELECT MIN(id), MAX(id) FROM products";
+    
+    private static final String EXISTING_SQL =
+        "SELECT product_id FROM demand_forecasts WHERE product_id BETWEEN ? AND ?";
+    
+    // Today's sales stay with the live tally; history supplies the closed days
+    private static final String RESET_SQL =
+        "UPDATE demand_forecasts SET current_quantity = CASE WHEN current_day = ? THEN current_quantity ELSE 0 END, " +
+        "current_day = ?, mean_daily = 0, variance = 0, days_observed = 0, updated_at = ? " +
+        "WHERE product_id BETWEEN ? AND ?";
+    
+    private static final String DAILY_SALES_SQL =
+        "SELECT product_id, CAST(transaction_date AS DATE), SUM(quantity) FROM stock_transactions " +
+        "WHERE transaction_type = 'OUT' AND product_id BETWEEN ? AND ? AND transaction_date >= ? AND transaction_date < ? " +
+        "GROUP BY product_id, CAST(transaction_date AS DATE) ORDER BY 1, 2";
+    
+    private static final String UPDATE_SQL =
+        "UPDATE demand_forecasts SET mean_daily = ?, variance = ?, days_observed = ?, updated_at = ? WHERE product_id = ?";
+    
+    private static final String INSERT_SQL =
+        "INSERT INTO demand_forecasts (product_id, current_day, current_quantity, mean_daily, variance, days_observed, updated_at) " +
+        "VALUES (?, ?, 0, ?, ?, ?, ?)";
+    
+    private final Map<Sale, Long> pending = new ConcurrentHashMap<>();
+    private final DemandForecastRepository forecastRepository;
+    private final ArchiveStore archiveStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService recomputeExecutor;
+    private final AtomicBoolean recomputeRunning = new AtomicBoolean();
+    private final double alpha;
+    private final double leadTimeDays;
+    private final double coverageDays;
+    private final double serviceLevelZ;
+    private final int chunkProducts;
+    
+    public DemandForecastService(DemandForecastRepository forecastRepository, ArchiveStore archiveStore,
+                                 DataSource dataSource, PlatformTransactionManager transactionManager,
+                                 @Value("${forecast.alpha:0.1}") double alpha,
+                                 @Value("${forecast.lead-time-days:7}") double leadTimeDays,
+                                 @Value("${forecast.coverage-days:14}") double coverageDays,
+                                 @Value("${forecast.service-level-z:1.65}") double serviceLevelZ,
+                                 @Value("${forecast.recompute.threads:4}") int threads,
+                                 @Value("${forecast.recompute.chunk-products:5000}") int chunkProducts) {
+        this.forecastRepository = forecastRepository;
+        this.archiveStore = archiveStore;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.recomputeExecutor = Executors.newFixedThreadPool(threads);
+        this.alpha = alpha;
+        this.leadTimeDays = leadTimeDays;
+        this.coverageDays = coverageDays;
+        this.serviceLevelZ = serviceLevelZ;
+        this.chunkProducts = chunkProducts;
+    }
+    
+    /**
+     * Counts the OUT movements towards their product's demand once the surrounding
+     * transaction commits.
+     */
+    public void recorded(List<StockTransaction> transactions) {
+        Map<Sale, Long> sales = new HashMap<>();
+        for (StockTransaction transaction : transactions) {
+            if ("OUT".equals(transaction.getTransactionType())) {
+                Sale sale = new Sale(transaction.getProduct().getId(), transaction.getTransactionDate().toLocalDate());
+                sales.merge(sale, transaction.getQuantity().longValue(), Long::sum);
+            }
+        }
+        if (!sales.isEmpty()) {
+            TransactionHooks.afterCommit(
+                () -> sales.forEach((sale, quantity) -> pending.merge(sale, quantity, Long::sum)));
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${forecast.flush-ms:5000}")
+    @PreDestroy
+    public synchronized void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Sorted by product and then day, so each row is folded forward in order
+        Map<Long, TreeMap<LocalDate, Long>> sales = new TreeMap<>();
+        for (Sale sale : List.copyOf(pending.keySet())) {
+            Long quantity = pending.remove(sale);
+            if (quantity != null) {
+                sales.computeIfAbsent(sale.productId(), id -> new TreeMap<>()).put(sale.day(), quantity);
+            }
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(sales));
+        } catch (RuntimeException e) {
+            // Kept for the next flush, e.g. after losing a race to insert a product's first row
+            sales.forEach((productId, days) -> days.forEach((day, quantity) ->
+                pending.merge(new Sale(productId, day), quantity, Long::sum)));
+            log.warn("Demand forecast flush failed, retrying on the next one", e);
+        }
+    }
+    
+    private void apply(Map<Long, TreeMap<LocalDate, Long>> sales) {
+        Map<Long, DemandForecast> rows = new HashMap<>();
+        for (DemandForecast row : forecastRepository.findForUpdate(sales.keySet())) {
+            rows.put(row.getProductId(), row);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        List<DemandForecast> changed = new ArrayList<>(sales.size());
+        sales.forEach((productId, days) -> {
+            DemandForecast row = rows.get(productId);
+            Averages averages = row != null ? Averages.of(row) : new Averages(days.firstKey());
+            days.forEach((day, quantity) -> averages.add(day, quantity, alpha));
+            if (row == null) {
+                row = new DemandForecast();
+                row.setProductId(productId);
+            }
+            averages.applyTo(row);
+            row.setUpdatedAt(now);
+            changed.add(row);
+        });
+        forecastRepository.saveAll(changed);
+    }
+    
+    /**
+     * Suggestions for the active products, or only for those at or below their reorder point.
+     * Reflects sales up to the last flush.
+     */
+    public List<ReorderSuggestion> getSuggestions(boolean reorderOnly) {
+        LocalDate today = LocalDate.now();
+        List<ReorderSuggestion> suggestions = new ArrayList<>();
+        jdbcTemplate.query(SUGGESTIONS_SQL + "WHERE p.active = true ORDER BY p.id", rs -> {
+            ReorderSuggestion suggestion = suggestion(rs, today);
+            if (!reorderOnly || suggestion.getNeedsReorder()) {
+                suggestions.add(suggestion);
+            }
+        });
+        return suggestions;
+    }
+    
+    public ReorderSuggestion getSuggestion(Long productId) {
+        LocalDate today = LocalDate.now();
+        List<ReorderSuggestion> suggestions = jdbcTemplate.query(SUGGESTIONS_SQL + "WHERE p.id = ?",
+            (rs, rowNum) -> suggestion(rs, today), productId);
+        if (suggestions.isEmpty()) {
+            throw new RuntimeException("Product not found");
+        }
+        return suggestions.get(0);
+    }
+    
+    private ReorderSuggestion suggestion(ResultSet rs, LocalDate today) throws SQLException {
+        Date currentDay = rs.getDate(6);
+        Averages averages = currentDay != null
+            ? new Averages(currentDay.toLocalDate(), rs.getLong(7), rs.getDouble(8), rs.getDouble(9), rs.getInt(10))
+            : new Averages(today);
+        // Closes the days that ended since the last sale, without writing them back
+        averages.advance(today, alpha);
+        
+        double velocity = averages.mean;
+        double stdDev = Math.sqrt(Math.max(averages.variance, 0));
+        int reorderPoint = (int) Math.ceil(velocity * leadTimeDays + serviceLevelZ * stdDev * Math.sqrt(leadTimeDays));
+        int orderUpTo = reorderPoint + (int) Math.ceil(velocity * coverageDays);
+        int stock = rs.getInt(4);
+        boolean needsReorder = velocity > 0 && stock <= reorderPoint;
+        return new ReorderSuggestion(rs.getLong(1), rs.getString(2), rs.getString(3), stock, rs.getInt(5),
+            round(velocity), round(stdDev), averages.days, reorderPoint, orderUpTo,
+            needsReorder ? Math.max(orderUpTo - stock, 0) : 0, needsReorder);
+    }
+    
+    /**
+     * Rebuilds every product's averages from the OUT movements of the last given days (or since
+     * the archive boundary, if later), in chunks of products that run in parallel, each in its
+     * own transaction. Today's sales are left to the live tallies.
+     */
+    public ForecastRecomputeResult recompute(int days) {
+        if (days < 1) {
+            throw new IllegalArgumentException("Recompute needs at least one day of history");
+        }
+        LocalDate today = LocalDate.now();
+        LocalDate from = today.minusDays(days);
+        LocalDateTime hotFrom = archiveStore.hotFrom(ArchiveStore.STOCK_TRANSACTIONS);
+        if (hotFrom != null && from.isBefore(hotFrom.toLocalDate())) {
+            from = hotFrom.toLocalDate();
+        }
+        if (!recomputeRunning.compareAndSet(false, true)) {
+            throw new IllegalStateException("A demand forecast recompute is already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            // Tallies of earlier days would otherwise be added again on top of the history
+            flush();
+            long[] range = jdbcTemplate.queryForObject(PRODUCT_RANGE_SQL,
+                (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)});
+            List<Future<ChunkResult>> chunks = new ArrayList<>();
+            if (range[1] > 0) {
+                LocalDate first = from;
+                for (long low = range[0]; low <= range[1]; low += chunkProducts) {
+                    long chunkLow = low;
+                    long chunkHigh = Math.min(low + chunkProducts - 1, range[1]);
+                    chunks.add(recomputeExecutor.submit(() -> rebuild(chunkLow, chunkHigh, first, today)));
+                }
+            }
+            
+            // Wait for every chunk before reporting, so a failed run never overlaps the next one
+            long salesDays = 0;
+            long written = 0;
+            RuntimeException failure = null;
+            for (Future<ChunkResult> chunk : chunks) {
+                try {
+                    ChunkResult result = chunk.get();
+                    salesDays += result.salesDays();
+                    written += result.written();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new RuntimeException("Demand forecast recompute failed: " + e.getCause().getMessage(), e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Demand forecast recompute interrupted", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new ForecastRecomputeResult(from, today.minusDays(1), chunks.size(), salesDays, written,
+                System.currentTimeMillis() - started);
+        } finally {
+            recomputeRunning.set(false);
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        recomputeExecutor.shutdownNow();
+    }
+    
+    private ChunkResult rebuild(long low, long high, LocalDate from, LocalDate today) {
+        return transactionTemplate.execute(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+            Set<Long> existing = new HashSet<>(jdbcTemplate.queryForList(EXISTING_SQL, Long.class, low, high));
+            jdbcTemplate.update(RESET_SQL, Date.valueOf(today), Date.valueOf(today), now, low, high);
+            
+            Map<Long, Averages> rebuilt = new TreeMap<>();
+            long[] salesDays = new long[1];
+            jdbcTemplate.query(DAILY_SALES_SQL, rs -> {
+                LocalDate day = rs.getDate(2).toLocalDate();
+                rebuilt.computeIfAbsent(rs.getLong(1), id -> new Averages(day)).add(day, rs.getLong(3), alpha);
+                salesDays[0]++;
+            }, low, high, Timestamp.valueOf(from.atStartOfDay()), Timestamp.valueOf(today.atStartOfDay()));
+            
+            List<Object[]> updates = new ArrayList<>();
+            List<Object[]> inserts = new ArrayList<>();
+            rebuilt.forEach((productId, averages) -> {
+                averages.advance(today, alpha);
+                if (existing.contains(productId)) {
+                    updates.add(new Object[] {averages.mean, averages.variance, averages.days, now, productId});
+                } else {
+                    inserts.add(new Object[] {productId, Date.valueOf(today), averages.mean, averages.variance,
+                        averages.days, now});
+                }
+            });
+            for (int i = 0; i < updates.size(); i += BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(UPDATE_SQL, updates.subList(i, Math.min(i + BATCH_SIZE, updates.size())));
+            }
+            for (int i = 0; i < inserts.size(); i += BATCH_SIZE) {
+                jdbcTemplate.batchUpdate(INSERT_SQL, inserts.subList(i, Math.min(i + BATCH_SIZE, inserts.size())));
+            }
+            return new ChunkResult(salesDays[0], rebuilt.size());
+        });
+    }
+    
+    private static double round(double value) {
+        return Math.round(value * 1000) / 1000.0;
+    }
+    
+    private record Sale(Long productId, LocalDate day) {
+    }
+    
+    private record ChunkResult(long salesDays, long written) {
+    }
+    
+    /**
+     * The averages of one product. Sales accumulate on the current day; when a later day's sale
+     * arrives, the current day is closed into the averages, followed by one zero-demand day for
+     * every day without sales in between. The first closed day seeds the mean, so a new product
+     * does not start from zero.
+     */
+    private static final class Averages {
+        private LocalDate currentDay;
+        private long currentQuantity;
+        private double mean;
+        private double variance;
+        private int days;
+        
+        Averages(LocalDate currentDay) {
+            this.currentDay = currentDay;
+        }
+        
+        Averages(LocalDate currentDay, long currentQuantity, double mean, double variance, int days) {
+            this.currentDay = currentDay;
+            this.currentQuantity = currentQuantity;
+            this.mean = mean;
+            this.variance = variance;
+            this.days = days;
+        }
+        
+        static Averages of(DemandForecast row) {
+            return new Averages(row.getCurrentDay(), row.getCurrentQuantity(), row.getMeanDaily(),
+                row.getVariance(), row.getDaysObserved());
+        }
+        
+        void applyTo(DemandForecast row) {
+            row.setCurrentDay(currentDay);
+            row.setCurrentQuantity((int) Math.min(currentQuantity, Integer.MAX_VALUE));
+            row.setMeanDaily(mean);
+            row.setVariance(variance);
+            row.setDaysObserved(days);
+        }
+        
+        void add(LocalDate day, long quantity, double alpha) {
+            if (day.isBefore(currentDay)) {
+                // A late tally for a closed day: the mean is linear in each day's demand, so add
+                // that day's weighted share; the variance is left as it was
+                if (days > 0) {
+                    long age = ChronoUnit.DAYS.between(day, currentDay) - 1;
+                    mean += alpha * Math.pow(1 - alpha, age) * quantity;
+                } else {
+                    currentQuantity += quantity;
+                }
+                return;
+            }
+            advance(day, alpha);
+            currentQuantity += quantity;
+        }
+        
+        // Closes every day before the given one
+        void advance(LocalDate day, double alpha) {
+            if (!day.isAfter(currentDay)) {
+                return;
+            }
+            fold(currentQuantity, alpha);
+            long empty = Math.min(ChronoUnit.DAYS.between(currentDay, day) - 1, MAX_EMPTY_DAYS);
+            for (long i = 0; i < empty; i++) {
+                fold(0, alpha);
+            }
+            currentDay = day;
+            currentQuantity = 0;
+        }
+        
+        // Exponentially weighted mean and variance (West's incremental form)
+        private void fold(double demand, double alpha) {
+            if (days == 0) {
+                mean = demand;
+                variance = 0;
+            } else {
+                double diff = demand - mean;
+                double increment = alpha * diff;
+                mean += increment;
+                variance = (1 - alpha) * (variance + diff * increment);
+            }
+            days++;
+        }
+    }
+}
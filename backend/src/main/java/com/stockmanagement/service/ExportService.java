@@ -0,0 +1,255 @@
+package com.stockmanagement.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams history straight from a forward-only JDBC cursor to the client, one row at a
+ * time. Rows never become entities, so memory stays flat however large the range is.
+ * Archived months are streamed from their segments ahead of the hot rows; a segment holds
+ * exactly the rows this export produced for its month.
+ */
+@Service
+public class ExportService {
+    private static final int GZIP_BUFFER_SIZE = 64 * 1024;
+    
+    private static final String STOCK_TRANSACTIONS_SQL =
+        "SELECT t.id, t.transaction_date, t.transaction_type, t.quantity, t.previous_stock, t.new_stock, " +
+        "p.id AS product_id, p.sku, p.name AS product_name, t.location_id, u.username, t.notes " +
+        "FROM stock_transactions t " +
+        "JOIN products p ON p.id = t.product_id " +
+        "LEFT JOIN users u ON u.id = t.user_id " +
+        "WHERE t.transaction_date BETWEEN ? AND ? " +
+        "ORDER BY t.transaction_date, t.id";
+    
+    // One row per bill line, repeating the bill header columns
+    private static final String BILLS_SQL =
+        "SELECT b.id AS bill_id, b.bill_number, b.bill_date, b.customer_name, b.customer_phone, b.customer_email, " +
+        "b.payment_method, b.status, b.subtotal, b.tax, b.discount, b.total, b.location_id, " +
+        "u.username, u.id AS user_id, u.full_name AS cashier_name, " +
+        "i.id AS item_id, p.id AS product_id, p.sku, p.name AS product_name, i.quantity, i.unit_price, i.line_total " +
+        "FROM bills b " +
+        "LEFT JOIN users u ON u.id = b.user_id " +
+        "LEFT JOIN bill_items i ON i.bill_id = b.id " +
+        "LEFT JOIN products p ON p.id = i.product_id " +
+        "WHERE b.bill_date BETWEEN ? AND ? " +
+        "ORDER BY b.bill_date, b.id, i.id";
+    
+    private static final Map<String, String> DATASET_SQL = Map.of(
+        ArchiveStore.STOCK_TRANSACTIONS, STOCK_TRANSACTIONS_SQL,
+        ArchiveStore.BILLS, BILLS_SQL);
+    
+    // The columns of the queries above, for the CSV header of an export with no rows
+    private static final Map<String, String[]> DATASET_COLUMNS = Map.of(
+        ArchiveStore.STOCK_TRANSACTIONS, new String[] {"id", "transaction_date", "transaction_type", "quantity",
+            "previous_stock", "new_stock", "product_id", "sku", "product_name", "location_id", "username", "notes"},
+        ArchiveStore.BILLS, new String[] {"bill_id", "bill_number", "bill_date", "customer_name", "customer_phone",
+            "customer_email", "payment_method", "status", "subtotal", "tax", "discount", "total", "location_id",
+            "username", "user_id", "cashier_name", "item_id", "product_id", "sku", "product_name", "quantity",
+            "unit_price", "line_total"});
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    private final ArchiveStore archiveStore;
+    
+    public ExportService(DataSource dataSource, ObjectMapper objectMapper, ArchiveStore archiveStore,
+                         @Value("${export.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(fetchSize);
+        this.objectMapper = objectMapper;
+        this.archiveStore = archiveStore;
+    }
+    
+    public void exportStockTransactions(LocalDateTime start, LocalDateTime end, ExportFormat format,
+                                        boolean gzip, OutputStream out) throws IOException {
+        export(ArchiveStore.STOCK_TRANSACTIONS, start, end, format, gzip, out);
+    }
+    
+    public void exportBills(LocalDateTime start, LocalDateTime end, ExportFormat format,
+                            boolean gzip, OutputStream out) throws IOException {
+        export(ArchiveStore.BILLS, start, end, format, gzip, out);
+    }
+    
+    /**
+     * Writes the hot rows of a dataset in [start, end] as NDJSON without consulting the archive,
+     * returning the number of rows. Used by the archiver to write segments.
+     */
+    long exportHot(String dataset, LocalDateTime start, LocalDateTime end, OutputStream out) throws IOException {
+        try (RowWriter writer = new NdjsonRowWriter(out)) {
+            return queryHot(dataset, start, end, writer);
+        }
+    }
+    
+    private void export(String dataset, LocalDateTime start, LocalDateTime end, ExportFormat format,
+                        boolean gzip, OutputStream response) throws IOException {
+        GZIPOutputStream compressed = gzip ? new GZIPOutputStream(response, GZIP_BUFFER_SIZE) : null;
+        OutputStream out = compressed != null ? compressed : response;
+        try (RowWriter writer = format == ExportFormat.CSV ? new CsvRowWriter(out, DATASET_COLUMNS.get(dataset))
+            : new NdjsonRowWriter(out)) {
+            LocalDateTime hotFrom = archiveStore.hotFrom(dataset);
+            if (hotFrom != null && start.isBefore(hotFrom)) {
+                archiveStore.read(dataset, start, end, writer::write);
+                start = hotFrom;
+            }
+            if (!start.isAfter(end)) {
+                queryHot(dataset, start, end, writer);
+            }
+        }
+        if (compressed != null) {
+            compressed.finish();
+        }
+    }
+    
+    private long queryHot(String dataset, LocalDateTime start, LocalDateTime end, RowWriter writer) throws IOException {
+        long[] rows = new long[1];
+        String[][] columns = new String[1][];
+        try {
+            jdbcTemplate.query(DATASET_SQL.get(dataset), rs -> {
+                if (columns[0] == null) {
+                    columns[0] = columnNames(rs);
+                }
+                Object[] values = new Object[columns[0].length];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = columnValue(rs, i + 1);
+                }
+                try {
+                    writer.write(columns[0], values);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                rows[0]++;
+            }, start, end);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        return rows[0];
+    }
+    
+    private static Object columnValue(ResultSet rs, int column) throws SQLException {
+        Object value = rs.getObject(column);
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime().toString();
+        }
+        if (value instanceof LocalDateTime dateTime) {
+            return dateTime.toString();
+        }
+        return value;
+    }
+    
+    private static String[] columnNames(ResultSet rs) throws SQLException {
+        ResultSetMetaData metaData = rs.getMetaData();
+        String[] names = new String[metaData.getColumnCount()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = metaData.getColumnLabel(i + 1).toLowerCase();
+        }
+        return names;
+    }
+    
+    private interface RowWriter extends AutoCloseable {
+        void write(String[] columns, Object[] values) throws IOException;
+        
+        @Override
+        void close() throws IOException;
+    }
+    
+    private static class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+        private final String[] emptyColumns;
+        private boolean headerWritten;
+        
+        CsvRowWriter(OutputStream out, String[] emptyColumns) {
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            this.emptyColumns = emptyColumns;
+        }
+        
+        @Override
+        public void write(String[] columns, Object[] values) throws IOException {
+            if (!headerWritten) {
+                writeHeader(columns);
+            }
+            for (int i = 0; i < columns.length; i++) {
+                Object value = values[i];
+                String text = value == null ? ""
+                    : value instanceof BigDecimal decimal ? decimal.toPlainString() : value.toString();
+                writeField(text, i == columns.length - 1);
+            }
+        }
+        
+        private void writeHeader(String[] columns) throws IOException {
+            for (int i = 0; i < columns.length; i++) {
+                writeField(columns[i], i == columns.length - 1);
+            }
+            headerWritten = true;
+        }
+        
+        private void writeField(String value, boolean last) throws IOException {
+            if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                writer.write('"');
+                writer.write(value.replace("\"", "\"\""));
+                writer.write('"');
+            } else {
+                writer.write(value);
+            }
+            writer.write(last ? "\r\n" : ",");
+        }
+        
+        // An export without rows still starts with the column line
+        @Override
+        public void close() throws IOException {
+            if (!headerWritten) {
+                writeHeader(emptyColumns);
+            }
+            writer.flush();
+        }
+    }
+    
+    private class NdjsonRowWriter implements RowWriter {
+        private final OutputStream out;
+        private final JsonGenerator generator;
+        
+        NdjsonRowWriter(OutputStream out) throws IOException {
+            this.out = out;
+            this.generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+            this.generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Records are separated by the newline written after each one
+            this.generator.setRootValueSeparator(null);
+        }
+        
+        @Override
+        public void write(String[] columns, Object[] values) throws IOException {
+            generator.writeStartObject();
+            for (int i = 0; i < columns.length; i++) {
+                generator.writeFieldName(columns[i]);
+                generator.writeObject(values[i]);
+            }
+            generator.writeEndObject();
+            generator.writeRaw('\n');
+        }
+        
+        @Override
+        public void close() throws IOException {
+            generator.flush();
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.stockmanagement.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManagerFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * Moves the id sequences of bills, bill items and stock transactions past the ids already in
+ * their tables. Those tables had IDENTITY columns before, so on a database created then the
+ * sequences start below MAX(id) and the first inserts would collide. Runs at startup, before
+ * requests are served; a sequence that is already ahead is left alone, so an instance started
+ * later never moves it back.
+ */
+@Component
+public class IdSequences {
+    private static final Logger log = LoggerFactory.getLogger(IdSequences.class);
+    
+    // The allocationSize of the entities' @SequenceGenerator
+    private static final int ALLOCATION_SIZE = 50;
+    
+    // {sequence, table}
+    private static final List<String[]> SEQUENCES = List.of(
+        new String[] {"bill_seq", "bills"},
+        new String[] {"bill_item_seq", "bill_items"},
+        new String[] {"stock_transaction_seq", "stock_transactions"});
+    
+    private final JdbcTemplate jdbcTemplate;
+    
+    // Taking the EntityManagerFactory makes this run after the schema update created the sequences
+    public IdSequences(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+    
+    @PostConstruct
+    void advance() {
+        String database = jdbcTemplate.execute(
+            (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        for (String[] sequence : SEQUENCES) {
+            long maxId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM " + sequence[1], Long.class);
+            if (maxId == 0) {
+                continue;
+            }
+            // A pooled optimizer hands out the block below each value it reads, so the next
+            // value must clear the highest id by a whole block
+            long next = maxId + ALLOCATION_SIZE + 1;
+            if (advance(database, sequence[0], next)) {
+                log.info("Advanced {} to {} past MAX(id) {} of {}", sequence[0], next, maxId, sequence[1]);
+            }
+        }
+    }
+    
+    private boolean advance(String database, String sequence, long next) {
+        if ("H2".equals(database)) {
+            List<Long> current = jdbcTemplate.queryForList(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = ?", Long.class,
+                sequence.toUpperCase());
+            if (current.isEmpty() || current.get(0) >= next) {
+                return false;
+            }
+            jdbcTemplate.execute("ALTER SEQUENCE " + sequence + " RESTART WITH " + next);
+            return true;
+        }
+        // MySQL has no sequences; Hibernate keeps each one as a single-row table
+        return jdbcTemplate.update("UPDATE " + sequence + " SET next_val = ? WHERE next_val < ?", next, next) > 0;
+    }
+}
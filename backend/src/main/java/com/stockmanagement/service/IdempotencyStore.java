@@ -0,0 +1,173 @@
+package com.stockmanagement.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.stockmanagement.dto.ApiResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Bounded, expiring record of the responses to requests sent with an Idempotency-Key header.
+ * The first request with a key runs and its response is kept; retries with the same key get
+ * that response back instead of running again, and a retry arriving while the first is still
+ * running waits for it. Keys are scoped per user and operation. A request that fails before
+ * any of its transactions commits changed nothing, so its key is released and the next retry
+ * runs again; once one has committed, whatever the request returned is kept like a success.
+ *
+ * Requests still running sit in a separate unbounded map, so the size bound on kept responses
+ * can never evict a key whose first request has not finished.
+ */
+@Component
+public class IdempotencyStore implements TransactionExecutionListener {
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+    
+    private static final int MAX_KEY_LENGTH = 255;
+    
+    // The entry of the keyed request running on this thread, told about its commits
+    private static final ThreadLocal<Entry> RUNNING = new ThreadLocal<>();
+    
+    private final Cache<String, Entry> responses;
+    private final ConcurrentMap<String, Entry> inFlight = new ConcurrentHashMap<>();
+    private final long waitSeconds;
+    
+    public IdempotencyStore(@Value("${idempotency.max-keys:100000}") long maxKeys,
+                            @Value("${idempotency.ttl-seconds:86400}") long ttlSeconds,
+                            @Value("${idempotency.wait-seconds:30}") long waitSeconds) {
+        this.responses = Caffeine.newBuilder()
+                .maximumSize(maxKeys)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .build();
+        this.waitSeconds = waitSeconds;
+    }
+    
+    /**
+     * Runs the action once per key; without a key the action simply runs. The request is
+     * compared with the one first sent under the key so a reused key cannot replay the
+     * response of a different request.
+     */
+    public <T> ResponseEntity<ApiResponse<T>> execute(String key, String scope, Object request,
+                                                      Supplier<ResponseEntity<ApiResponse<T>>> action) {
+        if (key == null) {
+            return action.get();
+        }
+        if (key.isBlank() || key.length() > MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(
+                HEADER + " must be between 1 and " + MAX_KEY_LENGTH + " characters"));
+        }
+        String cacheKey = scope + ':' + key;
+        while (true) {
+            Entry existing = responses.getIfPresent(cacheKey);
+            if (existing == null) {
+                Entry entry = new Entry(request);
+                existing = inFlight.putIfAbsent(cacheKey, entry);
+                if (existing == null) {
+                    // The previous holder may have finished between the two lookups
+                    if (responses.getIfPresent(cacheKey) != null) {
+                        inFlight.remove(cacheKey, entry);
+                        continue;
+                    }
+                    return run(cacheKey, entry, action);
+                }
+            }
+            if (!Objects.equals(existing.request, request)) {
+                return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(ApiResponse.error(
+                    HEADER + " was already used for a different request"));
+            }
+            ResponseEntity<?> original;
+            try {
+                original = existing.response.get(waitSeconds, TimeUnit.SECONDS);
+            } catch (ExecutionException e) {
+                // The first attempt failed and released the key; try to become the one that runs
+                continue;
+            } catch (TimeoutException e) {
+                return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(
+                    "A request with this " + HEADER + " is still being processed"));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the original request", e);
+            }
+            return replay(original);
+        }
+    }
+    
+    // Called by the transaction manager; read-only and nested transactions change nothing durable
+    @Override
+    public void afterCommit(TransactionExecution transaction, Throwable commitFailure) {
+        Entry entry = RUNNING.get();
+        if (entry != null && commitFailure == null && transaction.isNewTransaction()
+                && !transaction.isNested() && !transaction.isReadOnly()) {
+            entry.committed = true;
+        }
+    }
+    
+    private <T> ResponseEntity<ApiResponse<T>> run(String cacheKey, Entry entry,
+                                                   Supplier<ResponseEntity<ApiResponse<T>>> action) {
+        Entry outer = RUNNING.get();
+        RUNNING.set(entry);
+        ResponseEntity<ApiResponse<T>> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException | Error e) {
+            if (entry.committed) {
+                keep(cacheKey, entry, ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(ApiResponse.error(
+                    "The request was applied but its response could not be produced: " + e.getMessage())));
+            } else {
+                release(cacheKey, entry, e);
+            }
+            throw e;
+        } finally {
+            RUNNING.set(outer);
+        }
+        if (response.getStatusCode().is2xxSuccessful() || entry.committed) {
+            keep(cacheKey, entry, response);
+        } else {
+            release(cacheKey, entry, new IllegalStateException("Request failed"));
+        }
+        return response;
+    }
+    
+    // Kept before leaving the in-flight map, so a retry always finds the key in one of them
+    private void keep(String cacheKey, Entry entry, ResponseEntity<?> response) {
+        responses.put(cacheKey, entry);
+        inFlight.remove(cacheKey, entry);
+        entry.response.complete(response);
+    }
+    
+    private void release(String cacheKey, Entry entry, Throwable failure) {
+        inFlight.remove(cacheKey, entry);
+        entry.response.completeExceptionally(failure);
+    }
+    
+    @SuppressWarnings("unchecked")
+    private static <T> ResponseEntity<ApiResponse<T>> replay(ResponseEntity<?> original) {
+        return ResponseEntity.status(original.getStatusCode())
+                .headers(original.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body((ApiResponse<T>) original.getBody());
+    }
+    
+    private static final class Entry {
+        final Object request;
+        final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+        volatile boolean committed;
+        
+        Entry(Object request) {
+            this.request = request;
+        }
+    }
+}
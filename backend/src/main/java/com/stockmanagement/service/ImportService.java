@@ -0,0 +1,411 @@
+package com.stockmanagement.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmanagement.dto.ImportError;
+import com.stockmanagement.dto.ImportResult;
+import com.stockmanagement.dto.ImportRow;
+import com.stockmanagement.dto.StockUpdateRequest;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.ProductRepository;
+import jakarta.persistence.EntityManager;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bulk product and stock import from a streamed CSV or NDJSON body. Rows are read and
+ * applied chunk by chunk, each chunk in its own transaction: SKUs are resolved and locked
+ * with one query, products are upserted and the movements are written as one batch.
+ * Invalid rows are reported and skipped; a chunk that fails in the database is retried
+ * in halves until the failing rows are isolated, so only those are reported. Movements
+ * apply to the default location.
+ */
+@Service
+public class ImportService {
+    private static final int MAX_REPORTED_ERRORS = 1000;
+    
+    // CSV headers are matched case-insensitively, with or without underscores
+    private static final Map<String, String> CSV_COLUMNS = new HashMap<>();
+    
+    static {
+        for (String field : List.of("sku", "name", "description", "category", "purchasePrice", "sellingPrice",
+                "minStockLevel", "active", "transactionType", "quantity", "notes")) {
+            CSV_COLUMNS.put(field.toLowerCase(), field);
+        }
+    }
+    
+    private final ProductRepository productRepository;
+    private final StockService stockService;
+    private final ProductSearchIndex productSearchIndex;
+    private final LowStockRegistry lowStockRegistry;
+    private final CatalogVersions catalogVersions;
+    private final LocationService locationService;
+    private final StockTotals stockTotals;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final int chunkSize;
+    private final int defaultMinStockLevel;
+    
+    public ImportService(ProductRepository productRepository, StockService stockService,
+                         ProductSearchIndex productSearchIndex, LowStockRegistry lowStockRegistry,
+                         CatalogVersions catalogVersions, LocationService locationService, StockTotals stockTotals,
+                         ObjectMapper objectMapper, EntityManager entityManager,
+                         PlatformTransactionManager transactionManager,
+                         @Value("${import.chunk-size:500}") int chunkSize,
+                         @Value("${stock.alert.threshold:10}") int defaultMinStockLevel) {
+        this.productRepository = productRepository;
+        this.stockService = stockService;
+        this.productSearchIndex = productSearchIndex;
+        this.lowStockRegistry = lowStockRegistry;
+        this.catalogVersions = catalogVersions;
+        this.locationService = locationService;
+        this.stockTotals = stockTotals;
+        this.objectMapper = objectMapper;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.chunkSize = chunkSize;
+        this.defaultMinStockLevel = defaultMinStockLevel;
+    }
+    
+    public ImportResult importRows(InputStream in, ExportFormat format, User user) throws IOException {
+        ImportResult result = new ImportResult();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        RowSource source = format == ExportFormat.CSV ? new CsvRowSource(reader) : new NdjsonRowSource(reader);
+        
+        List<NumberedRow> chunk = new ArrayList<>(chunkSize);
+        NumberedRow next;
+        while ((next = source.next(result)) != null) {
+            chunk.add(next);
+            if (chunk.size() == chunkSize) {
+                applyChunk(chunk, user, result);
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            applyChunk(chunk, user, result);
+        }
+        return result;
+    }
+    
+    private void applyChunk(List<NumberedRow> rows, User user, ImportResult result) {
+        List<NumberedRow> valid = new ArrayList<>(rows.size());
+        for (NumberedRow row : rows) {
+            String error = validate(row.row());
+            if (error != null) {
+                fail(result, row, error);
+            } else {
+                valid.add(row);
+            }
+        }
+        if (!valid.isEmpty()) {
+            applyRows(valid, user, result);
+        }
+    }
+    
+    // A group that fails in the database is split in half and each half retried, down to
+    // single rows, so only the rows that actually fail are reported and the rest still apply
+    private void applyRows(List<NumberedRow> rows, User user, ImportResult result) {
+        ChunkOutcome outcome = new ChunkOutcome();
+        try {
+            transactionTemplate.executeWithoutResult(status -> apply(rows, user, outcome));
+        } catch (RuntimeException e) {
+            if (rows.size() == 1) {
+                fail(result, rows.get(0), e.getMessage());
+            } else {
+                int half = rows.size() / 2;
+                applyRows(rows.subList(0, half), user, result);
+                applyRows(rows.subList(half, rows.size()), user, result);
+            }
+            return;
+        } finally {
+            // Open-in-view keeps one persistence context for the whole request
+            entityManager.clear();
+        }
+        
+        for (Map.Entry<NumberedRow, String> failure : outcome.failed.entrySet()) {
+            fail(result, failure.getKey(), failure.getValue());
+        }
+        for (Product product : outcome.changedProducts) {
+            productSearchIndex.put(product);
+        }
+        result.setProductsCreated(result.getProductsCreated() + outcome.created);
+        result.setProductsUpdated(result.getProductsUpdated() + outcome.updated);
+        result.setMovementsApplied(result.getMovementsApplied() + outcome.movements);
+    }
+    
+    private void apply(List<NumberedRow> rows, User user, ChunkOutcome outcome) {
+        Set<String> skus = new LinkedHashSet<>();
+        for (NumberedRow row : rows) {
+            skus.add(row.row().getSku());
+        }
+        Map<String, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllBySkuForUpdate(skus)) {
+            products.put(product.getSku(), product);
+        }
+        
+        LocalDateTime now = LocalDateTime.now();
+        List<StockUpdateRequest> movements = new ArrayList<>();
+        for (NumberedRow numbered : rows) {
+            ImportRow row = numbered.row();
+            Product product = products.get(row.getSku());
+            if (row.hasProductFields()) {
+                if (product == null) {
+                    if (row.getName() == null || row.getCategory() == null
+                            || row.getPurchasePrice() == null || row.getSellingPrice() == null) {
+                        outcome.failed.put(numbered, "New product needs name, category, purchasePrice and sellingPrice");
+                        continue;
+                    }
+                    product = new Product();
+                    product.setSku(row.getSku());
+                    product.setCurrentStock(0);
+                    product.setMinStockLevel(defaultMinStockLevel);
+                    applyFields(product, row);
+                    product = productRepository.save(product);
+                    locationService.addProduct(product);
+                    products.put(product.getSku(), product);
+                    outcome.created++;
+                } else {
+                    applyFields(product, row);
+                    product.setUpdatedAt(now);
+                    stockTotals.changed(List.of(product.getId()));
+                    outcome.updated++;
+                }
+                outcome.changedProducts.add(product);
+                lowStockRegistry.update(product);
+                catalogVersions.changed(product.getId());
+            } else if (product == null) {
+                outcome.failed.put(numbered, "Unknown SKU: " + row.getSku());
+                continue;
+            }
+            
+            if (row.hasMovement()) {
+                StockUpdateRequest movement = new StockUpdateRequest();
+                movement.setProductId(product.getId());
+                movement.setQuantity(row.getQuantity());
+                movement.setTransactionType(row.getTransactionType().toUpperCase());
+                movement.setNotes(row.getNotes() != null ? row.getNotes() : "Import");
+                movements.add(movement);
+            }
+        }
+        stockService.updateStockBatch(movements, user);
+        outcome.movements = movements.size();
+    }
+    
+    private static void applyFields(Product product, ImportRow row) {
+        if (row.getName() != null) {
+            product.setName(row.getName());
+        }
+        if (row.getDescription() != null) {
+            product.setDescription(row.getDescription());
+        }
+        if (row.getCategory() != null) {
+            product.setCategory(row.getCategory());
+        }
+        if (row.getPurchasePrice() != null) {
+            product.setPurchasePrice(row.getPurchasePrice());
+        }
+        if (row.getSellingPrice() != null) {
+            product.setSellingPrice(row.getSellingPrice());
+        }
+        if (row.getMinStockLevel() != null) {
+            product.setMinStockLevel(row.getMinStockLevel());
+        }
+        if (row.getActive() != null) {
+            product.setActive(row.getActive());
+        }
+    }
+    
+    // Checks that need no database, so a bad row never rolls back its chunk
+    private static String validate(ImportRow row) {
+        if (row.getSku() == null || row.getSku().isBlank()) {
+            return "sku is required";
+        }
+        if (!row.hasProductFields() && !row.hasMovement()) {
+            return "Row has nothing to import";
+        }
+        if ((row.getPurchasePrice() != null && row.getPurchasePrice().signum() < 0)
+                || (row.getSellingPrice() != null && row.getSellingPrice().signum() < 0)) {
+            return "Prices must not be negative";
+        }
+        if (row.hasMovement()) {
+            if (row.getTransactionType() == null || row.getQuantity() == null) {
+                return "transactionType and quantity must be given together";
+            }
+            String type = row.getTransactionType().toUpperCase();
+            if (type.equals("IN")) {
+                if (row.getQuantity() <= 0) {
+                    return "IN quantity must be positive";
+                }
+            } else if (type.equals("ADJUSTMENT")) {
+                if (row.getQuantity() < 0) {
+                    return "ADJUSTMENT quantity must not be negative";
+                }
+            } else {
+                return "Invalid transaction type for import: " + row.getTransactionType();
+            }
+        }
+        return null;
+    }
+    
+    private static void fail(ImportResult result, NumberedRow row, String message) {
+        result.setRowsFailed(result.getRowsFailed() + 1);
+        if (result.getErrors().size() < MAX_REPORTED_ERRORS) {
+            result.getErrors().add(new ImportError(row.number(), row.row() != null ? row.row().getSku() : null, message));
+        } else {
+            result.setErrorsTruncated(true);
+        }
+    }
+    
+    private record NumberedRow(long number, ImportRow row) {
+    }
+    
+    private static class ChunkOutcome {
+        private final Map<NumberedRow, String> failed = new LinkedHashMap<>();
+        private final Set<Product> changedProducts = new LinkedHashSet<>();
+        private long created;
+        private long updated;
+        private long movements;
+    }
+    
+    private interface RowSource {
+        // Next parseable row, or null at the end of the input; unparseable rows are reported and skipped
+        NumberedRow next(ImportResult result) throws IOException;
+    }
+    
+    private class NdjsonRowSource implements RowSource {
+        private final BufferedReader reader;
+        private long number;
+        
+        NdjsonRowSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public NumberedRow next(ImportResult result) throws IOException {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                number++;
+                result.setRowsRead(result.getRowsRead() + 1);
+                try {
+                    return new NumberedRow(number, objectMapper.readValue(line, ImportRow.class));
+                } catch (JsonProcessingException e) {
+                    fail(result, new NumberedRow(number, null), "Invalid JSON: " + e.getOriginalMessage());
+                }
+            }
+            return null;
+        }
+    }
+    
+    private class CsvRowSource implements RowSource {
+        private final BufferedReader reader;
+        private String[] columns;
+        private long number;
+        
+        CsvRowSource(BufferedReader reader) {
+            this.reader = reader;
+        }
+        
+        @Override
+        public NumberedRow next(ImportResult result) throws IOException {
+            if (columns == null && !readHeader()) {
+                return null;
+            }
+            List<String> record;
+            while ((record = readRecord()) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) {
+                    continue;
+                }
+                number++;
+                result.setRowsRead(result.getRowsRead() + 1);
+                Map<String, String> values = new HashMap<>();
+                for (int i = 0; i < Math.min(columns.length, record.size()); i++) {
+                    String value = record.get(i).trim();
+                    if (columns[i] != null && !value.isEmpty()) {
+                        values.put(columns[i], value);
+                    }
+                }
+                try {
+                    return new NumberedRow(number, objectMapper.convertValue(values, ImportRow.class));
+                } catch (IllegalArgumentException e) {
+                    ImportRow partial = new ImportRow();
+                    partial.setSku(values.get("sku"));
+                    fail(result, new NumberedRow(number, partial), "Invalid value: " + e.getMessage().lines().findFirst().orElse(""));
+                }
+            }
+            return null;
+        }
+        
+        private boolean readHeader() throws IOException {
+            List<String> header = readRecord();
+            if (header == null) {
+                return false;
+            }
+            columns = new String[header.size()];
+            for (int i = 0; i < columns.length; i++) {
+                String name = header.get(i).replace("\uFEFF", "").replace("_", "").trim().toLowerCase();
+                columns[i] = CSV_COLUMNS.get(name);
+            }
+            return true;
+        }
+        
+        // RFC 4180 record: quoted fields may contain commas, doubled quotes and line breaks
+        private List<String> readRecord() throws IOException {
+            int c = reader.read();
+            if (c == -1) {
+                return null;
+            }
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            while (c != -1) {
+                if (quoted) {
+                    if (c == '"') {
+                        reader.mark(1);
+                        int following = reader.read();
+                        if (following == '"') {
+                            field.append('"');
+                        } else {
+                            quoted = false;
+                            reader.reset();
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"') {
+                    quoted = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n') {
+                    break;
+                } else if (c != '\r') {
+                    field.append((char) c);
+                }
+                c = reader.read();
+            }
+            fields.add(field.toString());
+            return fields;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.entity.User;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects login times in memory and writes them in one JDBC batch per flush, so a wave of
+ * logins costs no extra statements on the login path and repeated logins by the same user
+ * collapse into one update. A failed batch goes back into the pending map for the next flush,
+ * unless a newer login arrived meanwhile. A crash loses at most one flush interval of lastLogin
+ * values.
+ */
+@Slf4j
+@Component
+public class LastLoginRecorder {
+    private static final String UPDATE_SQL = "UPDATE users SET last_login = ? WHERE id = ?";
+    
+    private final Map<Long, LocalDateTime> pending = new ConcurrentHashMap<>();
+    private final JdbcTemplate jdbcTemplate;
+    private final Cache secondLevelCache;
+    
+    public LastLoginRecorder(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.secondLevelCache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+    
+    public void record(Long userId) {
+        pending.put(userId, LocalDateTime.now());
+    }
+    
+    @Scheduled(fixedDelayString = "${auth.last-login.flush-ms:5000}")
+    @PreDestroy
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<Object[]> batch = new ArrayList<>();
+        for (Long userId : List.copyOf(pending.keySet())) {
+            LocalDateTime lastLogin = pending.remove(userId);
+            if (lastLogin != null) {
+                batch.add(new Object[] {Timestamp.valueOf(lastLogin), userId});
+            }
+        }
+        try {
+            jdbcTemplate.batchUpdate(UPDATE_SQL, batch);
+        } catch (RuntimeException e) {
+            // Kept for the next flush; a login recorded since then is newer and wins
+            for (Object[] row : batch) {
+                LocalDateTime lastLogin = ((Timestamp) row[0]).toLocalDateTime();
+                pending.merge((Long) row[1], lastLogin, (newer, failed) -> newer.isAfter(failed) ? newer : failed);
+            }
+            log.warn("Last login flush failed, retrying on the next one", e);
+            return;
+        }
+        // The update bypasses Hibernate, so drop just the cached users it made stale
+        for (Object[] row : batch) {
+            secondLevelCache.evictEntityData(User.class, row[1]);
+        }
+    }
+}
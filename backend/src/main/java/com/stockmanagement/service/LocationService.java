@@ -0,0 +1,137 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.entity.Location;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.repository.LocationRepository;
+import com.stockmanagement.repository.LocationStockRepository;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Stores and warehouses, and the location_stock rows that hold each product's stock at each
+ * of them. Movements that name no location go to the default location, which is created at
+ * startup, so a single-store setup works without configuring anything.
+ */
+@Service
+public class LocationService {
+    private static final String INSERT_SQL =
+        "INSERT INTO location_stock (product_id, location_id, quantity, updated_at) VALUES (?, ?, ?, ?)";
+    
+    private static final String ADD_LOCATION_SQL =
+        "INSERT INTO location_stock (product_id, location_id, quantity, updated_at) SELECT id, ?, 0, ? FROM products";
+    
+    // Stock from before locations existed moves to the default location
+    private static final String SEED_DEFAULT_SQL =
+        "INSERT INTO location_stock (product_id, location_id, quantity, updated_at) " +
+        "SELECT p.id, ?, p.current_stock, ? FROM products p " +
+        "WHERE NOT EXISTS (SELECT 1 FROM location_stock s WHERE s.product_id = p.id)";
+    
+    private static final String FILL_MISSING_SQL =
+        "INSERT INTO location_stock (product_id, location_id, quantity, updated_at) " +
+        "SELECT p.id, l.id, 0, ? FROM products p CROSS JOIN locations l " +
+        "WHERE NOT EXISTS (SELECT 1 FROM location_stock s WHERE s.product_id = p.id AND s.location_id = l.id)";
+    
+    private final LocationRepository locationRepository;
+    private final LocationStockRepository locationStockRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final String defaultCode;
+    private final String defaultName;
+    private volatile Long defaultLocationId;
+    
+    public LocationService(LocationRepository locationRepository, LocationStockRepository locationStockRepository,
+                           DataSource dataSource,
+                           @Value("${stock.location.default-code:MAIN}") String defaultCode,
+                           @Value("${stock.location.default-name:Main Store}") String defaultName) {
+        this.locationRepository = locationRepository;
+        this.locationStockRepository = locationStockRepository;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.defaultCode = defaultCode;
+        this.defaultName = defaultName;
+    }
+    
+    @PostConstruct
+    void init() {
+        initializeStock();
+    }
+    
+    /**
+     * Creates the default location if needed and gives every product a row at every location.
+     * Safe to run repeatedly; products added without going through this service get their rows.
+     */
+    public void initializeStock() {
+        Location location = locationRepository.findByCode(defaultCode).orElse(null);
+        if (location == null) {
+            try {
+                location = locationRepository.save(new Location(null, defaultCode, defaultName, "STORE", true,
+                    LocalDateTime.now()));
+            } catch (DataIntegrityViolationException e) {
+                // Created by another instance starting at the same time
+                location = locationRepository.findByCode(defaultCode).orElseThrow();
+            }
+        }
+        defaultLocationId = location.getId();
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        jdbcTemplate.update(SEED_DEFAULT_SQL, defaultLocationId, now);
+        jdbcTemplate.update(FILL_MISSING_SQL, now);
+    }
+    
+    public Long getDefaultLocationId() {
+        return defaultLocationId;
+    }
+    
+    /**
+     * The location a movement applies to: the given one, or the default when none is given.
+     */
+    public Location resolve(Long locationId) {
+        Location location = locationRepository.findById(locationId != null ? locationId : defaultLocationId)
+            .orElseThrow(() -> new RuntimeException("Location not found: " + locationId));
+        if (!Boolean.TRUE.equals(location.getActive())) {
+            throw new RuntimeException("Location is inactive: " + location.getCode());
+        }
+        return location;
+    }
+    
+    public List<Location> getLocations() {
+        return locationRepository.findAll();
+    }
+    
+    @Transactional
+    public Location createLocation(Location location) {
+        if (location.getCode() == null || location.getCode().isBlank() || location.getName() == null) {
+            throw new RuntimeException("Location code and name are required");
+        }
+        if (locationRepository.existsByCode(location.getCode())) {
+            throw new RuntimeException("Location code already exists: " + location.getCode());
+        }
+        location.setId(null);
+        Location saved = locationRepository.save(location);
+        jdbcTemplate.update(ADD_LOCATION_SQL, saved.getId(), Timestamp.valueOf(LocalDateTime.now()));
+        return saved;
+    }
+    
+    // Gives a new product its rows, with its initial stock at the default location
+    public void addProduct(Product product) {
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+        List<Object[]> rows = new ArrayList<>();
+        for (Location location : locationRepository.findAll()) {
+            int quantity = location.getId().equals(defaultLocationId) && product.getCurrentStock() != null
+                ? product.getCurrentStock() : 0;
+            rows.add(new Object[] {product.getId(), location.getId(), quantity, now});
+        }
+        jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+    }
+    
+    public void removeProduct(Long productId) {
+        locationStockRepository.deleteByProductId(productId);
+    }
+}
@@ -0,0 +1,76 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.LoginRequest;
+import com.stockmanagement.dto.LoginResponse;
+import com.stockmanagement.security.AppUserDetails;
+import com.stockmanagement.security.JwtUtil;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Logins run on their own small pool, which bounds how many BCrypt checks burn CPU at once;
+ * a burst of logins queues here instead of occupying request threads that checkout needs.
+ * The user is loaded once, by the authentication itself, and the response is built from the
+ * authenticated principal.
+ */
+@Service
+public class LoginService {
+    
+    private final AuthenticationManager authenticationManager;
+    private final JwtUtil jwtUtil;
+    private final LastLoginRecorder lastLoginRecorder;
+    private final ThreadPoolExecutor executor;
+    
+    public LoginService(AuthenticationManager authenticationManager, JwtUtil jwtUtil,
+                        LastLoginRecorder lastLoginRecorder,
+                        @Value("${auth.login.threads:2}") int threads,
+                        @Value("${auth.login.queue-size:500}") int queueSize) {
+        this.authenticationManager = authenticationManager;
+        this.jwtUtil = jwtUtil;
+        this.lastLoginRecorder = lastLoginRecorder;
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueSize), runnable -> {
+                Thread thread = new Thread(runnable, "login-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+    }
+    
+    /**
+     * Completes with the login response, or exceptionally with the AuthenticationException of
+     * a failed login or a RejectedExecutionException when the login queue is full.
+     */
+    public CompletableFuture<LoginResponse> login(LoginRequest request) {
+        try {
+            return CompletableFuture.supplyAsync(() -> authenticate(request), executor);
+        } catch (RejectedExecutionException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+    
+    private LoginResponse authenticate(LoginRequest request) {
+        Authentication authentication = authenticationManager.authenticate(
+            new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword()));
+        AppUserDetails user = (AppUserDetails) authentication.getPrincipal();
+        String jwt = jwtUtil.generateToken(user);
+        lastLoginRecorder.record(user.getId());
+        return new LoginResponse(jwt, user.getUsername(), user.getFullName(), user.getRole());
+    }
+}
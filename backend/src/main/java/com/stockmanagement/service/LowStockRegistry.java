@@ -0,0 +1,147 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.LowStockEvent;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Products that are active and at or below their minStockLevel, kept current by the
+ * services that change stock or thresholds. Changes are applied once their transaction
+ * commits, and every threshold crossing is pushed to Server-Sent Events subscribers.
+ * A periodic reconcile against the database picks up changes made outside the app.
+ */
+@Component
+@RequiredArgsConstructor
+public class LowStockRegistry {
+    private final ProductRepository productRepository;
+    
+    private final Map<Long, Product> lowStock = new ConcurrentHashMap<>();
+    private final List<SseEmitter> subscribers = new CopyOnWriteArrayList<>();
+    // Pushes happen off the request thread so a slow subscriber cannot stall a checkout
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor();
+    private volatile boolean ready;
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    public List<Product> getLowStockProducts() {
+        List<Product> products = new ArrayList<>(lowStock.values());
+        products.sort(Comparator.comparing(Product::getCurrentStock).thenComparing(Product::getName));
+        return products;
+    }
+    
+    public void update(Product product) {
+        Product snapshot = copyOf(product);
+        TransactionHooks.afterCommit(() -> apply(snapshot));
+    }
+    
+    public void remove(Long productId) {
+        TransactionHooks.afterCommit(() -> {
+            Product previous = lowStock.remove(productId);
+            if (previous != null) {
+                publish("RESTOCKED", previous);
+            }
+        });
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${stock.low-stock.reconcile-ms:300000}", initialDelayString = "${stock.low-stock.reconcile-ms:300000}")
+    public void reconcile() {
+        Map<Long, Product> current = new HashMap<>();
+        for (Product product : productRepository.findLowStockProducts()) {
+            current.put(product.getId(), product);
+        }
+        for (Long productId : new ArrayList<>(lowStock.keySet())) {
+            if (!current.containsKey(productId)) {
+                remove(productId);
+            }
+        }
+        for (Product product : current.values()) {
+            update(product);
+        }
+        ready = true;
+    }
+    
+    public SseEmitter subscribe() {
+        SseEmitter emitter = new SseEmitter(0L);
+        emitter.onCompletion(() -> subscribers.remove(emitter));
+        emitter.onTimeout(() -> subscribers.remove(emitter));
+        emitter.onError(e -> subscribers.remove(emitter));
+        subscribers.add(emitter);
+        return emitter;
+    }
+    
+    // Keeps idle connections open through proxies and weeds out clients that went away
+    @Scheduled(fixedDelay = 30000)
+    public void heartbeat() {
+        for (SseEmitter emitter : subscribers) {
+            publisher.execute(() -> send(emitter, SseEmitter.event().comment("keepalive")));
+        }
+    }
+    
+    @PreDestroy
+    public void shutdown() {
+        publisher.shutdownNow();
+        for (SseEmitter emitter : subscribers) {
+            emitter.complete();
+        }
+    }
+    
+    private void apply(Product snapshot) {
+        boolean low = Boolean.TRUE.equals(snapshot.getActive()) && snapshot.isLowStock();
+        Product previous = low ? lowStock.put(snapshot.getId(), snapshot) : lowStock.remove(snapshot.getId());
+        if (low && previous == null) {
+            publish("LOW", snapshot);
+        } else if (!low && previous != null) {
+            publish("RESTOCKED", snapshot);
+        }
+    }
+    
+    private void publish(String type, Product product) {
+        if (subscribers.isEmpty()) {
+            return;
+        }
+        LowStockEvent event = new LowStockEvent(type, product.getId(), product.getSku(), product.getName(),
+            product.getCurrentStock(), product.getMinStockLevel(), LocalDateTime.now());
+        publisher.execute(() -> {
+            for (SseEmitter emitter : subscribers) {
+                send(emitter, SseEmitter.event().name("low-stock").data(event));
+            }
+        });
+    }
+    
+    private void send(SseEmitter emitter, SseEmitter.SseEventBuilder event) {
+        try {
+            emitter.send(event);
+        } catch (IOException | IllegalStateException e) {
+            subscribers.remove(emitter);
+            emitter.completeWithError(e);
+        }
+    }
+    
+    private static Product copyOf(Product product) {
+        return new Product(product.getId(), product.getName(), product.getDescription(), product.getSku(),
+            product.getCategory(), product.getPurchasePrice(), product.getSellingPrice(), product.getCurrentStock(),
+            product.getMinStockLevel(), product.getActive(), product.getCreatedAt(), product.getUpdatedAt());
+    }
+}
@@ -0,0 +1,398 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.entity.Product;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory search index over product name, SKU and category.
+ *
+ * Keywords of three or more characters are matched as substrings: candidates come from
+ * intersecting the sorted posting lists of the keyword's trigrams and are then verified
+ * against the text. Shorter keywords match the start of any word. Only ids are held
+ * per product, so callers load the matching rows themselves and always see current
+ * stock and prices. Changes made inside a transaction apply once it commits, so a rolled
+ * back create or delete never shows up in searches.
+ *
+ * Products changed on other instances are picked up by polling the catalog version and
+ * re-indexing the products changed or deleted since the last poll.
+ */
+@Component
+public class ProductSearchIndex {
+    public static final int DEFAULT_LIMIT = 20;
+    public static final int MAX_LIMIT = 100;
+    
+    // Marks word-prefix grams so they can never collide with a trigram of the text
+    private static final char PREFIX_MARK = '\u0000';
+    private static final int[] NO_DOCS = new int[0];
+    private static final int ID_BATCH_SIZE = 500;
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+    private final CatalogVersions catalogVersions;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    
+    // Products are addressed internally by dense int doc numbers to keep postings compact
+    private final Map<Long, Integer> docsByProductId = new HashMap<>();
+    private final Deque<Integer> freeDocs = new ArrayDeque<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private IndexedProduct[] docs = new IndexedProduct[1024];
+    private int docCount;
+    private volatile boolean ready;
+    // Catalog version the index has caught up with, and the one before it. Changes since the
+    // earlier one are applied once more, in case a local commit's update landed after the last
+    // resync had already read a newer row.
+    private long syncedVersion;
+    private long previousVersion;
+    
+    public ProductSearchIndex(DataSource dataSource, CatalogVersions catalogVersions) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setFetchSize(1000);
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.catalogVersions = catalogVersions;
+    }
+    
+    public boolean isReady() {
+        return ready;
+    }
+    
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void rebuild() {
+        // Read before the scan, so changes committed during it are applied again by the next resync
+        long version = catalogVersions.current();
+        lock.writeLock().lock();
+        try {
+            ready = false;
+            docsByProductId.clear();
+            freeDocs.clear();
+            postings.clear();
+            docs = new IndexedProduct[1024];
+            docCount = 0;
+            jdbcTemplate.query("SELECT id, name, sku, category FROM products ORDER BY id",
+                rs -> {
+                    add(new IndexedProduct(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+                });
+            syncedVersion = version;
+            previousVersion = version;
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    
+    @Scheduled(fixedDelayString = "${search.resync-ms:5000}", initialDelayString = "${search.resync-ms:5000}")
+    public synchronized void resync() {
+        if (!ready) {
+            return;
+        }
+        long version = catalogVersions.current();
+        if (version == syncedVersion && previousVersion == syncedVersion) {
+            return;
+        }
+        if (!catalogVersions.canDiff(previousVersion, version)) {
+            rebuild();
+            return;
+        }
+        List<Long> changedIds = catalogVersions.changedSince(previousVersion);
+        List<Long> deletedIds = catalogVersions.deletedSince(previousVersion);
+        List<IndexedProduct> changed = new ArrayList<>(changedIds.size());
+        for (int from = 0; from < changedIds.size(); from += ID_BATCH_SIZE) {
+            namedJdbcTemplate.query("SELECT id, name, sku, category FROM products WHERE id IN (:ids)",
+                Map.of("ids", changedIds.subList(from, Math.min(from + ID_BATCH_SIZE, changedIds.size()))),
+                rs -> {
+                    changed.add(new IndexedProduct(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getString(4)));
+                });
+        }
+        lock.writeLock().lock();
+        try {
+            for (Long productId : deletedIds) {
+                removeInternal(productId);
+            }
+            for (IndexedProduct product : changed) {
+                removeInternal(product.id);
+                add(product);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        previousVersion = syncedVersion;
+        syncedVersion = version;
+    }
+    
+    public void put(Product product) {
+        IndexedProduct indexed = new IndexedProduct(product.getId(), product.getName(), product.getSku(),
+            product.getCategory());
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                removeInternal(indexed.id);
+                add(indexed);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+    
+    public void remove(Long productId) {
+        TransactionHooks.afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                removeInternal(productId);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+    
+    /**
+     * Returns the ids of the best matches, best first.
+     */
+    public List<Long> search(String keyword, int limit) {
+        String query = normalize(keyword);
+        if (query.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Set<String> grams = query.length() >= 3 ? trigrams(query) : Set.of(PREFIX_MARK + query);
+        
+        lock.readLock().lock();
+        try {
+            PriorityQueue<ScoredDoc> best = new PriorityQueue<>(ScoredDoc.WORST_FIRST);
+            for (int doc : candidates(grams)) {
+                IndexedProduct product = docs[doc];
+                int score = product.score(query);
+                if (score == 0) {
+                    continue;
+                }
+                best.add(new ScoredDoc(product, score));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            List<ScoredDoc> ranked = new ArrayList<>(best);
+            ranked.sort(ScoredDoc.WORST_FIRST.reversed());
+            List<Long> ids = new ArrayList<>(ranked.size());
+            for (ScoredDoc scored : ranked) {
+                ids.add(scored.product.id);
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    
+    private int[] candidates(Set<String> grams) {
+        List<Postings> lists = new ArrayList<>(grams.size());
+        for (String gram : grams) {
+            Postings list = postings.get(gram);
+            if (list == null) {
+                return NO_DOCS;
+            }
+            lists.add(list);
+        }
+        lists.sort(Comparator.comparingInt(list -> list.size));
+        int[] result = Arrays.copyOf(lists.get(0).docs, lists.get(0).size);
+        for (int i = 1; i < lists.size() && result.length > 0; i++) {
+            result = lists.get(i).intersect(result);
+        }
+        return result;
+    }
+    
+    private void add(IndexedProduct product) {
+        int doc;
+        if (!freeDocs.isEmpty()) {
+            doc = freeDocs.pop();
+        } else {
+            if (docCount == docs.length) {
+                docs = Arrays.copyOf(docs, docs.length * 2);
+            }
+            doc = docCount++;
+        }
+        docs[doc] = product;
+        docsByProductId.put(product.id, doc);
+        for (String gram : product.grams()) {
+            postings.computeIfAbsent(gram, g -> new Postings()).add(doc);
+        }
+    }
+    
+    private void removeInternal(Long productId) {
+        Integer doc = docsByProductId.remove(productId);
+        if (doc == null) {
+            return;
+        }
+        for (String gram : docs[doc].grams()) {
+            Postings list = postings.get(gram);
+            if (list != null && list.remove(doc) == 0) {
+                postings.remove(gram);
+            }
+        }
+        docs[doc] = null;
+        freeDocs.push(doc);
+    }
+    
+    private static String normalize(String text) {
+        return text == null ? "" : text.trim().toLowerCase(Locale.ROOT);
+    }
+    
+    private static Set<String> trigrams(String text) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            grams.add(text.substring(i, i + 3));
+        }
+        return grams;
+    }
+    
+    private static boolean isWordStart(String text, int index) {
+        return index == 0 || !Character.isLetterOrDigit(text.charAt(index - 1));
+    }
+    
+    private static final class IndexedProduct {
+        private final long id;
+        private final String name;
+        private final String sku;
+        private final String category;
+        
+        IndexedProduct(long id, String name, String sku, String category) {
+            this.id = id;
+            this.name = normalize(name);
+            this.sku = normalize(sku);
+            this.category = normalize(category);
+        }
+        
+        Set<String> grams() {
+            Set<String> grams = new HashSet<>();
+            for (String field : new String[] {name, sku, category}) {
+                grams.addAll(trigrams(field));
+                for (int i = 0; i < field.length(); i++) {
+                    if (Character.isLetterOrDigit(field.charAt(i)) && isWordStart(field, i)) {
+                        grams.add(PREFIX_MARK + field.substring(i, i + 1));
+                        if (i + 1 < field.length()) {
+                            grams.add(PREFIX_MARK + field.substring(i, i + 2));
+                        }
+                    }
+                }
+            }
+            return grams;
+        }
+        
+        // 0 means the candidate does not actually match (a trigram false positive)
+        int score(String query) {
+            if (sku.equals(query)) {
+                return 100;
+            }
+            if (sku.startsWith(query)) {
+                return 80;
+            }
+            if (name.startsWith(query)) {
+                return 60;
+            }
+            int nameMatch = matchScore(name, query, 50, 40);
+            if (nameMatch > 0) {
+                return nameMatch;
+            }
+            int skuMatch = matchScore(sku, query, 30, 30);
+            if (skuMatch > 0) {
+                return skuMatch;
+            }
+            return matchScore(category, query, 10, 10);
+        }
+        
+        private static int matchScore(String field, String query, int wordStartScore, int substringScore) {
+            int score = 0;
+            for (int i = field.indexOf(query); i >= 0; i = field.indexOf(query, i + 1)) {
+                if (isWordStart(field, i)) {
+                    return wordStartScore;
+                }
+                score = substringScore;
+            }
+            // Short queries only match word starts
+            return query.length() >= 3 ? score : 0;
+        }
+    }
+    
+    private static final class ScoredDoc {
+        // Lowest score, then longest name, sorts first so the heap evicts it
+        static final Comparator<ScoredDoc> WORST_FIRST = Comparator
+            .comparingInt((ScoredDoc scored) -> scored.score)
+            .thenComparing((ScoredDoc scored) -> scored.product.name.length(), Comparator.reverseOrder())
+            .thenComparing((ScoredDoc scored) -> scored.product.id, Comparator.reverseOrder());
+        
+        private final IndexedProduct product;
+        private final int score;
+        
+        ScoredDoc(IndexedProduct product, int score) {
+            this.product = product;
+            this.score = score;
+        }
+    }
+    
+    /**
+     * Sorted, growable list of doc numbers.
+     */
+    private static final class Postings {
+        private int[] docs = new int[4];
+        private int size;
+        
+        void add(int doc) {
+            int position = Arrays.binarySearch(docs, 0, size, doc);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+            }
+            System.arraycopy(docs, position, docs, position + 1, size - position);
+            docs[position] = doc;
+            size++;
+        }
+        
+        int remove(int doc) {
+            int position = Arrays.binarySearch(docs, 0, size, doc);
+            if (position >= 0) {
+                System.arraycopy(docs, position + 1, docs, position, size - position - 1);
+                size--;
+            }
+            return size;
+        }
+        
+        int[] intersect(int[] sorted) {
+            int[] result = new int[Math.min(sorted.length, size)];
+            int count = 0;
+            int i = 0;
+            int j = 0;
+            while (i < sorted.length && j < size) {
+                if (sorted[i] < docs[j]) {
+                    i++;
+                } else if (sorted[i] > docs[j]) {
+                    j++;
+                } else {
+                    result[count++] = sorted[i];
+                    i++;
+                    j++;
+                }
+            }
+            return Arrays.copyOf(result, count);
+        }
+    }
+}
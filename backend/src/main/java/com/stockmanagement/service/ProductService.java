@@ -1,23 +1,50 @@
 package com.stockmanagement.service;
 
+import com.stockmanagement.dto.CatalogChanges;
+import com.stockmanagement.dto.ProductStock;
 import com.stockmanagement.entity.Product;
+import com.stockmanagement.repository.LocationStockRepository;
 import com.stockmanagement.repository.ProductRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
     private final ProductRepository productRepository;
+    private final ProductSearchIndex productSearchIndex;
+    private final LowStockRegistry lowStockRegistry;
+    private final CatalogVersions catalogVersions;
+    private final LocationService locationService;
+    private final LocationStockRepository locationStockRepository;
+    private final StockTotals stockTotals;
     
+    @Value("${stock.alert.threshold:10}")
+    private Integer defaultMinStockLevel;
+    
+    @Transactional
     public Product createProduct(Product product) {
-        return productRepository.save(product);
+        if (product.getMinStockLevel() == null) {
+            product.setMinStockLevel(defaultMinStockLevel);
+        }
+        Product saved = productRepository.save(product);
+        locationService.addProduct(saved);
+        productSearchIndex.put(saved);
+        lowStockRegistry.update(saved);
+        catalogVersions.changed(saved.getId());
+        return saved;
     }
     
+    @Transactional
     public Product updateProduct(Long id, Product productDetails) {
         Optional<Product> productOpt = productRepository.findById(id);
         if (productOpt.isPresent()) {
@@ -28,10 +55,17 @@ public class ProductService {
             product.setCategory(productDetails.getCategory());
             product.setPurchasePrice(productDetails.getPurchasePrice());
             product.setSellingPrice(productDetails.getSellingPrice());
-            product.setMinStockLevel(productDetails.getMinStockLevel());
+            product.setMinStockLevel(productDetails.getMinStockLevel() != null
+                ? productDetails.getMinStockLevel() : defaultMinStockLevel);
             product.setActive(productDetails.getActive());
             product.setUpdatedAt(LocalDateTime.now());
-            return productRepository.save(product);
+            Product saved = productRepository.save(product);
+            productSearchIndex.put(saved);
+            lowStockRegistry.update(saved);
+            catalogVersions.changed(saved.getId());
+            // The save cached the total as loaded; recompute it in case a flush ran meanwhile
+            stockTotals.changed(List.of(saved.getId()));
+            return saved;
         }
         throw new RuntimeException("Product not found with id: " + id);
     }
@@ -48,27 +82,64 @@ public class ProductService {
         return productRepository.findByActiveTrue();
     }
     
+    public List<ProductStock> getProductsAtLocation(Long locationId, boolean activeOnly) {
+        return locationStockRepository.findProductsAtLocation(locationService.resolve(locationId).getId(), activeOnly);
+    }
+    
+    public List<ProductStock> getLowStockProductsAtLocation(Long locationId) {
+        return locationStockRepository.findLowStockAtLocation(locationService.resolve(locationId).getId());
+    }
+    
     public List<Product> getLowStockProducts() {
-        return productRepository.findLowStockProducts();
+        if (!lowStockRegistry.isReady()) {
+            return productRepository.findLowStockProducts();
+        }
+        return lowStockRegistry.getLowStockProducts();
     }
     
-    public List<Product> searchProducts(String keyword) {
-        return productRepository.searchProducts(keyword);
+    public List<Product> searchProducts(String keyword, Integer limit) {
+        int maxResults = limit == null ? ProductSearchIndex.DEFAULT_LIMIT
+            : Math.max(1, Math.min(limit, ProductSearchIndex.MAX_LIMIT));
+        if (!productSearchIndex.isReady()) {
+            // Index still loading at startup
+            List<Product> products = productRepository.searchProducts(keyword);
+            return products.size() > maxResults ? products.subList(0, maxResults) : products;
+        }
+        List<Long> ids = productSearchIndex.search(keyword, maxResults);
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(ids)) {
+            products.put(product.getId(), product);
+        }
+        List<Product> ranked = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            Product product = products.get(id);
+            if (product != null) {
+                ranked.add(product);
+            }
+        }
+        return ranked;
     }
     
+    @Transactional
     public void deleteProduct(Long id) {
+        locationService.removeProduct(id);
         productRepository.deleteById(id);
+        productSearchIndex.remove(id);
+        lowStockRegistry.remove(id);
+        catalogVersions.deleted(id);
     }
     
-    public void updateStock(Long productId, Integer quantity) {
-        Optional<Product> productOpt = productRepository.findById(productId);
-        if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            product.setCurrentStock(quantity);
-            product.setUpdatedAt(LocalDateTime.now());
-            productRepository.save(product);
-        } else {
-            throw new RuntimeException("Product not found with id: " + productId);
+    /**
+     * Products changed after the given catalog version. The version is read before the
+     * products, so anything committed meanwhile is sent again on the next poll rather than lost.
+     */
+    public CatalogChanges getChangesSince(long since) {
+        long version = catalogVersions.current();
+        if (!catalogVersions.canDiff(since, version)) {
+            return new CatalogChanges(version, true, productRepository.findAll(), List.of());
         }
+        List<Long> changedIds = catalogVersions.changedSince(since);
+        List<Product> products = changedIds.isEmpty() ? List.of() : productRepository.findAllById(changedIds);
+        return new CatalogChanges(version, false, products, catalogVersions.deletedSince(since));
     }
 }
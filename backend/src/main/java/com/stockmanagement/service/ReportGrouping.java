@@ -0,0 +1,27 @@
+package com.stockmanagement.service;
+
+public enum ReportGrouping {
+    DAY("day"),
+    PAYMENT_METHOD("payment-method"),
+    CATEGORY("category"),
+    PRODUCT("product");
+    
+    private final String param;
+    
+    ReportGrouping(String param) {
+        this.param = param;
+    }
+    
+    public String getParam() {
+        return param;
+    }
+    
+    public static ReportGrouping fromParam(String value) {
+        for (ReportGrouping grouping : values()) {
+            if (grouping.param.equalsIgnoreCase(value)) {
+                return grouping;
+            }
+        }
+        throw new IllegalArgumentException("Unsupported report grouping: " + value);
+    }
+}
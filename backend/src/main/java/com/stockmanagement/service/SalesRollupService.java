@@ -0,0 +1,346 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.BackfillResult;
+import com.stockmanagement.dto.SalesReport;
+import com.stockmanagement.dto.SalesReportRow;
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.entity.BillItem;
+import com.stockmanagement.entity.DailySalesRollup;
+import com.stockmanagement.entity.DailySalesRollupId;
+import com.stockmanagement.repository.DailySalesRollupRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCallback;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.BatchUpdateException;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sales per day, product and payment method. Each bill adds to its rows in the transaction
+ * that creates it, so reports read O(days x products) rollup rows rather than every bill
+ * line. Past days can be rebuilt from bills and bill_items by the backfill.
+ */
+@Service
+public class SalesRollupService {
+    private static final int INSERT_BATCH_SIZE = 500;
+    
+    private static final String DELETE_SQL =
+        "DELETE FROM daily_sales_rollups WHERE sales_day BETWEEN ? AND ?";
+    
+    // Lines in bill and item order, the same order createBill allocates the bill total in
+    private static final String BILL_LINES_SQL =
+        "SELECT b.id, b.bill_date, b.payment_method, b.total, i.product_id, i.quantity, i.line_total " +
+        "FROM bills b JOIN bill_items i ON i.bill_id = b.id " +
+        "WHERE b.status = 'COMPLETED' AND b.bill_date >= ? AND b.bill_date < ? " +
+        "ORDER BY b.id, i.id";
+    
+    private static final String INSERT_SQL =
+        "INSERT INTO daily_sales_rollups (sales_day, product_id, payment_method, quantity, gross_amount, net_amount) " +
+        "VALUES (?, ?, ?, ?, ?, ?)";
+    
+    // Adds a bill line to its row in one statement, creating the row when it is the first sale
+    private static final String MYSQL_UPSERT_SQL = INSERT_SQL + " ON DUPLICATE KEY UPDATE " +
+        "quantity = quantity + VALUES(quantity), gross_amount = gross_amount + VALUES(gross_amount), " +
+        "net_amount = net_amount + VALUES(net_amount)";
+    
+    private static final String MERGE_UPSERT_SQL =
+        "MERGE INTO daily_sales_rollups r USING (VALUES (CAST(? AS DATE), CAST(? AS BIGINT), CAST(? AS VARCHAR(255)), " +
+        "CAST(? AS BIGINT), CAST(? AS DECIMAL(14, 2)), CAST(? AS DECIMAL(14, 2)))) " +
+        "AS s (sales_day, product_id, payment_method, quantity, gross_amount, net_amount) " +
+        "ON r.sales_day = s.sales_day AND r.product_id = s.product_id AND r.payment_method = s.payment_method " +
+        "WHEN MATCHED THEN UPDATE SET quantity = r.quantity + s.quantity, gross_amount = r.gross_amount + s.gross_amount, " +
+        "net_amount = r.net_amount + s.net_amount " +
+        "WHEN NOT MATCHED THEN INSERT (sales_day, product_id, payment_method, quantity, gross_amount, net_amount) " +
+        "VALUES (s.sales_day, s.product_id, s.payment_method, s.quantity, s.gross_amount, s.net_amount)";
+    
+    private static final int MAX_UPSERT_ATTEMPTS = 3;
+    
+    private final DailySalesRollupRepository rollupRepository;
+    private final ArchiveStore archiveStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ExecutorService backfillExecutor;
+    private final int chunkDays;
+    private final AtomicBoolean backfillRunning = new AtomicBoolean();
+    private final String upsertSql;
+    
+    public SalesRollupService(DailySalesRollupRepository rollupRepository, ArchiveStore archiveStore,
+                              DataSource dataSource,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${reports.backfill.threads:4}") int threads,
+                              @Value("${reports.backfill.chunk-days:7}") int chunkDays) {
+        this.rollupRepository = rollupRepository;
+        this.archiveStore = archiveStore;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.backfillExecutor = Executors.newFixedThreadPool(threads);
+        this.chunkDays = chunkDays;
+        String database = jdbcTemplate.execute(
+            (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+        this.upsertSql = "MySQL".equals(database) ? MYSQL_UPSERT_SQL : MERGE_UPSERT_SQL;
+    }
+    
+    /**
+     * Adds a new bill to its rollup rows in the bill's transaction, with one JDBC batch of
+     * upserts for all its lines. Bills of the same day, product and payment method can run
+     * concurrently, so a row is never read and then written: MySQL adds with INSERT ... ON
+     * DUPLICATE KEY UPDATE, and other databases with MERGE. A MERGE that loses the race to
+     * create a row fails with a duplicate key on its own; the rest of the batch still runs, and
+     * only the failed lines are upserted again, one at a time, which then finds the row. Lines
+     * go in product order, so two bills lock shared rows in the same order.
+     */
+    public void recordBill(Bill bill) {
+        LocalDate day = bill.getBillDate().toLocalDate();
+        List<DailySalesRollup> lines = new ArrayList<>(bill.getItems().size());
+        for (BillItem item : bill.getItems()) {
+            lines.add(line(day, item.getProduct().getId(), bill.getPaymentMethod(),
+                item.getQuantity(), item.getLineTotal()));
+        }
+        allocateTotal(lines, bill.getTotal());
+        
+        lines.sort(Comparator.comparing(line -> line.getId().getProductId()));
+        int[] counts = jdbcTemplate.execute(upsertSql, (PreparedStatementCallback<int[]>) statement -> {
+            for (DailySalesRollup line : lines) {
+                Object[] args = upsertArgs(line);
+                for (int i = 0; i < args.length; i++) {
+                    statement.setObject(i + 1, args[i]);
+                }
+                statement.addBatch();
+            }
+            try {
+                return statement.executeBatch();
+            } catch (BatchUpdateException e) {
+                // The failed lines are retried below; one that fails for another reason fails again there
+                return e.getUpdateCounts();
+            }
+        });
+        // A driver that stops at the first failure reports fewer counts than lines
+        for (int i = 0; i < lines.size(); i++) {
+            if (i >= counts.length || counts[i] == Statement.EXECUTE_FAILED) {
+                upsert(lines.get(i));
+            }
+        }
+    }
+    
+    private void upsert(DailySalesRollup line) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                jdbcTemplate.update(upsertSql, upsertArgs(line));
+                return;
+            } catch (DuplicateKeyException e) {
+                if (attempt >= MAX_UPSERT_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+    }
+    
+    private static Object[] upsertArgs(DailySalesRollup line) {
+        DailySalesRollupId id = line.getId();
+        return new Object[] {Date.valueOf(id.getSalesDay()), id.getProductId(), id.getPaymentMethod(),
+            line.getQuantity(), line.getGrossAmount(), line.getNetAmount()};
+    }
+    
+    @Transactional(readOnly = true)
+    public SalesReport getSalesReport(LocalDate from, LocalDate to, ReportGrouping grouping) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        List<SalesReportRow> rows = switch (grouping) {
+            case DAY -> rollupRepository.sumByDay(from, to);
+            case PAYMENT_METHOD -> rollupRepository.sumByPaymentMethod(from, to);
+            case CATEGORY -> rollupRepository.sumByCategory(from, to);
+            case PRODUCT -> rollupRepository.sumByProduct(from, to);
+        };
+        
+        long quantity = 0;
+        BigDecimal gross = BigDecimal.ZERO;
+        BigDecimal net = BigDecimal.ZERO;
+        for (SalesReportRow row : rows) {
+            quantity += row.getQuantity();
+            gross = gross.add(row.getGrossAmount());
+            net = net.add(row.getNetAmount());
+        }
+        return new SalesReport(from, to, grouping.getParam(), rows, quantity, gross, net);
+    }
+    
+    /**
+     * Rebuilds the rollups of [from, to] from bills, in chunks of days that run in parallel,
+     * each in its own transaction. Today is left alone because createBill is still adding
+     * to it; the range is clamped to yesterday. Archived months have no bills left to rebuild
+     * from, so their rollups are kept as they are.
+     */
+    public BackfillResult backfill(LocalDate from, LocalDate to) {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate last = to == null || to.isAfter(yesterday) ? yesterday : to;
+        if (from.isAfter(last)) {
+            throw new IllegalArgumentException("Backfill only rebuilds days before today");
+        }
+        archiveStore.requireHot(ArchiveStore.BILLS, from.atStartOfDay(), "Sales");
+        if (!backfillRunning.compareAndSet(false, true)) {
+            throw new IllegalStateException("A sales rollup backfill is already running");
+        }
+        try {
+            long started = System.currentTimeMillis();
+            List<Future<ChunkResult>> chunks = new ArrayList<>();
+            for (LocalDate start = from; !start.isAfter(last); start = start.plusDays(chunkDays)) {
+                LocalDate chunkFirst = start;
+                LocalDate chunkLast = start.plusDays(chunkDays - 1L).isAfter(last) ? last : start.plusDays(chunkDays - 1L);
+                chunks.add(backfillExecutor.submit(() -> rebuild(chunkFirst, chunkLast)));
+            }
+            
+            // Wait for every chunk before reporting, so a failed run never overlaps the next one
+            long bills = 0;
+            long rollups = 0;
+            RuntimeException failure = null;
+            for (Future<ChunkResult> chunk : chunks) {
+                try {
+                    ChunkResult result = chunk.get();
+                    bills += result.bills();
+                    rollups += result.rollups();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = new RuntimeException("Sales rollup backfill failed: " + e.getCause().getMessage(), e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Sales rollup backfill interrupted", e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return new BackfillResult(from, last, chunks.size(), bills, rollups, System.currentTimeMillis() - started);
+        } finally {
+            backfillRunning.set(false);
+        }
+    }
+    
+    @PreDestroy
+    public void close() {
+        backfillExecutor.shutdownNow();
+    }
+    
+    private ChunkResult rebuild(LocalDate first, LocalDate last) {
+        return transactionTemplate.execute(status -> {
+            jdbcTemplate.update(DELETE_SQL, Date.valueOf(first), Date.valueOf(last));
+            
+            BillLineCollector collector = new BillLineCollector();
+            jdbcTemplate.query(BILL_LINES_SQL, collector, first.atStartOfDay(), last.plusDays(1).atStartOfDay());
+            Map<DailySalesRollupId, DailySalesRollup> rollups = collector.finish();
+            
+            jdbcTemplate.batchUpdate(INSERT_SQL, rollups.values(), INSERT_BATCH_SIZE, (ps, rollup) -> {
+                ps.setDate(1, Date.valueOf(rollup.getId().getSalesDay()));
+                ps.setLong(2, rollup.getId().getProductId());
+                ps.setString(3, rollup.getId().getPaymentMethod());
+                ps.setLong(4, rollup.getQuantity());
+                ps.setBigDecimal(5, rollup.getGrossAmount());
+                ps.setBigDecimal(6, rollup.getNetAmount());
+            });
+            return new ChunkResult(collector.bills, rollups.size());
+        });
+    }
+    
+    /**
+     * Splits the bill total (after tax and discount) across its lines in proportion to the
+     * line totals. The last line takes the rounding remainder, so the net amounts of a bill
+     * always add up to exactly its total.
+     */
+    private static void allocateTotal(List<DailySalesRollup> lines, BigDecimal total) {
+        BigDecimal subtotal = BigDecimal.ZERO;
+        for (DailySalesRollup line : lines) {
+            subtotal = subtotal.add(line.getGrossAmount());
+        }
+        BigDecimal allocated = BigDecimal.ZERO;
+        for (int i = 0; i < lines.size(); i++) {
+            DailySalesRollup line = lines.get(i);
+            BigDecimal share;
+            if (i == lines.size() - 1) {
+                share = total.subtract(allocated);
+            } else if (subtotal.signum() == 0) {
+                share = BigDecimal.ZERO;
+            } else {
+                share = line.getGrossAmount().multiply(total).divide(subtotal, 2, RoundingMode.HALF_UP);
+            }
+            line.setNetAmount(share);
+            allocated = allocated.add(share);
+        }
+    }
+    
+    private static DailySalesRollup line(LocalDate day, Long productId, String paymentMethod,
+                                         Integer quantity, BigDecimal lineTotal) {
+        return new DailySalesRollup(new DailySalesRollupId(day, productId, paymentMethod),
+            quantity.longValue(), lineTotal, null);
+    }
+    
+    // Folds lines into rollups one bill at a time, as the total has to be split per bill
+    private static class BillLineCollector implements RowCallbackHandler {
+        private final Map<DailySalesRollupId, DailySalesRollup> rollups = new LinkedHashMap<>();
+        private final List<DailySalesRollup> lines = new ArrayList<>();
+        private long currentBill = -1;
+        private BigDecimal currentTotal;
+        private long bills;
+        
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            long billId = rs.getLong(1);
+            if (billId != currentBill) {
+                addBill();
+                currentBill = billId;
+                currentTotal = rs.getBigDecimal(4);
+                bills++;
+            }
+            lines.add(line(rs.getTimestamp(2).toLocalDateTime().toLocalDate(), rs.getLong(5), rs.getString(3),
+                rs.getInt(6), rs.getBigDecimal(7)));
+        }
+        
+        Map<DailySalesRollupId, DailySalesRollup> finish() {
+            addBill();
+            return rollups;
+        }
+        
+        private void addBill() {
+            if (lines.isEmpty()) {
+                return;
+            }
+            allocateTotal(lines, currentTotal);
+            for (DailySalesRollup line : lines) {
+                rollups.merge(line.getId(), line, (existing, added) -> {
+                    existing.setQuantity(existing.getQuantity() + added.getQuantity());
+                    existing.setGrossAmount(existing.getGrossAmount().add(added.getGrossAmount()));
+                    existing.setNetAmount(existing.getNetAmount().add(added.getNetAmount()));
+                    return existing;
+                });
+            }
+            lines.clear();
+        }
+    }
+    
+    private record ChunkResult(long bills, long rollups) {
+    }
+}
@@ -0,0 +1,249 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.StockHistory;
+import com.stockmanagement.dto.StockPosition;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockSnapshot;
+import com.stockmanagement.repository.ProductRepository;
+import com.stockmanagement.repository.StockSnapshotRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.IntSupplier;
+
+/**
+ * Stock levels as of any point in time, treating stock_transactions as the event log. A
+ * product's level is its stock summed over all locations, and every movement records the
+ * change it made (newStock - previousStock at its location), so a level is found by starting
+ * from the nearest snapshot and adding up only the changes between the snapshot and the
+ * requested time. Transfers between locations cancel out. The snapshotter writes a
+ * catalog-wide snapshot every interval and thins out older ones to the first of each day, so
+ * the replay window is at most one interval for recent times and one day for older ones. Times
+ * before the archive boundary are rejected, since their changes are no longer in
+ * stock_transactions.
+ */
+@Service
+public class StockHistoryService {
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 23, 59);
+    
+    // Live levels come from the location rows; products.current_stock trails them by a flush
+    private static final String LIVE_TOTALS =
+        "(SELECT product_id, SUM(quantity) AS total FROM location_stock GROUP BY product_id)";
+    
+    // Level at the snapshot time = live level minus the changes made since then, so a
+    // snapshot only reads the settle window of the event log
+    private static final String SNAPSHOT_SQL =
+        "INSERT INTO stock_snapshots (product_id, snapshot_at, stock_level) " +
+        "SELECT p.id, ?, COALESCE(s.total, 0) - COALESCE(d.delta, 0) FROM products p " +
+        "LEFT JOIN " + LIVE_TOTALS + " s ON s.product_id = p.id " +
+        "LEFT JOIN (SELECT product_id, SUM(new_stock - previous_stock) AS delta FROM stock_transactions " +
+        "WHERE transaction_date > ? GROUP BY product_id) d ON d.product_id = p.id " +
+        "WHERE p.created_at <= ?";
+    
+    private static final String PRODUCTS_SQL =
+        "SELECT p.id, p.sku, p.name, COALESCE(s.total, 0) FROM products p " +
+        "LEFT JOIN " + LIVE_TOTALS + " s ON s.product_id = p.id WHERE p.created_at <= ? ORDER BY p.id";
+    
+    private static final String LIVE_LEVEL_SQL =
+        "SELECT COALESCE(SUM(quantity), 0) FROM location_stock WHERE product_id = ?";
+    
+    private static final String SNAPSHOT_ROWS_SQL =
+        "SELECT product_id, stock_level FROM stock_snapshots WHERE snapshot_at = ?";
+    
+    private static final String DELTAS_SQL =
+        "SELECT product_id, SUM(new_stock - previous_stock), COUNT(*) FROM stock_transactions " +
+        "WHERE transaction_date > ? AND transaction_date <= ? GROUP BY product_id";
+    
+    private static final String PRODUCT_DELTA_SQL =
+        "SELECT COALESCE(SUM(new_stock - previous_stock), 0), COUNT(*) FROM stock_transactions " +
+        "WHERE product_id = ? AND transaction_date > ? AND transaction_date <= ?";
+    
+    private final StockSnapshotRepository snapshotRepository;
+    private final ProductRepository productRepository;
+    private final ArchiveStore archiveStore;
+    private final JdbcTemplate jdbcTemplate;
+    private final long settleMillis;
+    private final int fullResolutionDays;
+    
+    public StockHistoryService(StockSnapshotRepository snapshotRepository, ProductRepository productRepository,
+                               ArchiveStore archiveStore, DataSource dataSource,
+                               @Value("${stock.snapshot.settle-ms:60000}") long settleMillis,
+                               @Value("${stock.snapshot.full-resolution-days:7}") int fullResolutionDays) {
+        this.snapshotRepository = snapshotRepository;
+        this.productRepository = productRepository;
+        this.archiveStore = archiveStore;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.settleMillis = settleMillis;
+        this.fullResolutionDays = fullResolutionDays;
+    }
+    
+    /**
+     * A product's level at the given time: its latest snapshot plus the changes since, or
+     * without an earlier snapshot, its next snapshot minus the changes up to it.
+     */
+    @Transactional(readOnly = true)
+    public StockHistory getProductStockAt(Long productId, LocalDateTime at) {
+        archiveStore.requireHot(ArchiveStore.STOCK_TRANSACTIONS, at, "Stock history");
+        Product product = productRepository.findById(productId)
+            .orElseThrow(() -> new RuntimeException("Product not found"));
+        if (product.getCreatedAt().isAfter(at)) {
+            throw new IllegalArgumentException("Product " + product.getSku() + " did not exist at " + at);
+        }
+        
+        StockSnapshot snapshot = first(snapshotRepository.findLatestForProduct(productId, at, PageRequest.of(0, 1)));
+        Anchor anchor;
+        if (snapshot != null) {
+            LocalDateTime snapshotAt = snapshot.getId().getSnapshotAt();
+            long[] delta = productDelta(productId, snapshotAt, at);
+            anchor = new Anchor(snapshot.getStockLevel() + (int) delta[0], delta[1], snapshotAt);
+        } else {
+            anchor = rollBack(productId, at, () -> liveLevel(productId));
+        }
+        return new StockHistory(at, anchor.snapshotAt(), anchor.replayed(),
+            List.of(new StockPosition(product.getId(), product.getSku(), product.getName(), anchor.level())));
+    }
+    
+    /**
+     * Every product's level at the given time. With a snapshot at or before that time, the
+     * changes after it are added; for times older than every snapshot, the changes up to the
+     * next snapshot (or up to now) are rolled back from it instead.
+     */
+    @Transactional(readOnly = true)
+    public StockHistory getCatalogStockAt(LocalDateTime at) {
+        archiveStore.requireHot(ArchiveStore.STOCK_TRANSACTIONS, at, "Stock history");
+        List<StockPosition> positions = jdbcTemplate.query(PRODUCTS_SQL,
+            (rs, rowNum) -> new StockPosition(rs.getLong(1), rs.getString(2), rs.getString(3), rs.getInt(4)),
+            Timestamp.valueOf(at));
+        
+        Map<Long, Integer> levels = new HashMap<>();
+        long[] replayed = new long[1];
+        LocalDateTime snapshotAt = snapshotRepository.findLatestSnapshotTime(at);
+        if (snapshotAt != null) {
+            jdbcTemplate.query(SNAPSHOT_ROWS_SQL, rs -> {
+                levels.put(rs.getLong(1), rs.getInt(2));
+            }, Timestamp.valueOf(snapshotAt));
+            jdbcTemplate.query(DELTAS_SQL, rs -> {
+                int delta = rs.getInt(2);
+                levels.computeIfPresent(rs.getLong(1), (id, level) -> level + delta);
+                replayed[0] += rs.getLong(3);
+            }, Timestamp.valueOf(snapshotAt), Timestamp.valueOf(at));
+        } else {
+            snapshotAt = snapshotRepository.findNextSnapshotTime(at);
+            LocalDateTime until;
+            if (snapshotAt != null) {
+                until = snapshotAt;
+                jdbcTemplate.query(SNAPSHOT_ROWS_SQL, rs -> {
+                    levels.put(rs.getLong(1), rs.getInt(2));
+                }, Timestamp.valueOf(snapshotAt));
+            } else {
+                until = LATEST;
+                for (StockPosition position : positions) {
+                    levels.put(position.getProductId(), position.getStockLevel());
+                }
+            }
+            jdbcTemplate.query(DELTAS_SQL, rs -> {
+                int delta = rs.getInt(2);
+                levels.computeIfPresent(rs.getLong(1), (id, level) -> level - delta);
+                replayed[0] += rs.getLong(3);
+            }, Timestamp.valueOf(at), Timestamp.valueOf(until));
+        }
+        
+        for (StockPosition position : positions) {
+            Integer level = levels.get(position.getProductId());
+            if (level == null) {
+                // Created after the snapshot, so rolled back from its own next snapshot instead
+                Anchor anchor = rollBack(position.getProductId(), at, position::getStockLevel);
+                level = anchor.level();
+                replayed[0] += anchor.replayed();
+            }
+            position.setStockLevel(level);
+        }
+        return new StockHistory(at, snapshotAt, replayed[0], positions);
+    }
+    
+    /**
+     * Writes a snapshot of every product as of now minus the settle time, which leaves room for
+     * movements still in flight to commit, and thins out older snapshots. In
+     * journal mode movement rows land shortly after their commit, so keep the settle time well
+     * above stock.journal.flush-interval-ms.
+     */
+    @Scheduled(fixedDelayString = "${stock.snapshot.interval-ms:3600000}", initialDelayString = "${stock.snapshot.interval-ms:3600000}")
+    @Transactional
+    public int takeSnapshot() {
+        LocalDateTime snapshotAt = LocalDateTime.now().minus(settleMillis, ChronoUnit.MILLIS).truncatedTo(ChronoUnit.SECONDS);
+        LocalDateTime latest = snapshotRepository.findLatestSnapshotTime(snapshotAt);
+        if (snapshotAt.equals(latest)) {
+            return 0;
+        }
+        Timestamp at = Timestamp.valueOf(snapshotAt);
+        int written = jdbcTemplate.update(SNAPSHOT_SQL, at, at, at);
+        thin(snapshotAt);
+        return written;
+    }
+    
+    /**
+     * Keeps every snapshot of the last full-resolution days and the first snapshot of each day
+     * before that. Snapshots before the archive boundary go entirely: the changes between them
+     * and any readable time are archived, so replaying from them would be wrong.
+     */
+    void thin(LocalDateTime now) {
+        LocalDateTime hotFrom = archiveStore.hotFrom(ArchiveStore.STOCK_TRANSACTIONS);
+        if (hotFrom != null) {
+            snapshotRepository.deleteOlderThan(hotFrom);
+        }
+        LocalDate day = null;
+        for (LocalDateTime time : snapshotRepository.findSnapshotTimesBefore(now.minusDays(fullResolutionDays))) {
+            if (time.toLocalDate().equals(day)) {
+                snapshotRepository.deleteAt(time);
+            } else {
+                day = time.toLocalDate();
+            }
+        }
+    }
+    
+    /**
+     * A product's level at a time before its first snapshot: its next snapshot after that time
+     * minus the changes up to it, so only the gap to that snapshot is replayed. Only a product
+     * with no later snapshot either is rolled back from its live level.
+     */
+    private Anchor rollBack(Long productId, LocalDateTime at, IntSupplier liveLevel) {
+        StockSnapshot next = first(snapshotRepository.findNextForProduct(productId, at, PageRequest.of(0, 1)));
+        if (next != null) {
+            LocalDateTime snapshotAt = next.getId().getSnapshotAt();
+            long[] delta = productDelta(productId, at, snapshotAt);
+            return new Anchor(next.getStockLevel() - (int) delta[0], delta[1], snapshotAt);
+        }
+        long[] delta = productDelta(productId, at, LATEST);
+        return new Anchor(liveLevel.getAsInt() - (int) delta[0], delta[1], null);
+    }
+    
+    private int liveLevel(Long productId) {
+        return jdbcTemplate.queryForObject(LIVE_LEVEL_SQL, Integer.class, productId);
+    }
+    
+    // Sum of a product's changes within (after, upTo] and the number of movements
+    private long[] productDelta(Long productId, LocalDateTime after, LocalDateTime upTo) {
+        return jdbcTemplate.queryForObject(PRODUCT_DELTA_SQL, (rs, rowNum) -> new long[] {rs.getLong(1), rs.getLong(2)},
+            productId, Timestamp.valueOf(after), Timestamp.valueOf(upTo));
+    }
+    
+    private static <T> T first(List<T> rows) {
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+    
+    // A level, the movements replayed to reach it and the snapshot it started from
+    private record Anchor(int level, long replayed, LocalDateTime snapshotAt) {
+    }
+}
@@ -0,0 +1,112 @@
+package com.stockmanagement.service;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Single-row stock movements that hand back the row's new level from the movement's own
+ * statement, so IN and OUT cost one round trip. H2 selects the level from the UPDATE's FINAL
+ * TABLE. MySQL has no UPDATE ... RETURNING, so the new level is passed through
+ * LAST_INSERT_ID(expr) and comes back as the statement's generated key; this also sets the
+ * connection's LAST_INSERT_ID(), which nothing here reads. Other databases update and then
+ * read the row.
+ *
+ * Like the repository's bulk updates, the statements bypass the persistence context: pending
+ * entity changes are flushed first and the context is cleared afterwards.
+ */
+@Component
+public class StockLevels {
+    private static final String WHERE =
+        " WHERE product_id = ? AND location_id = ? AND quantity >= ?";
+    
+    private static final String UPDATE_SQL =
+        "UPDATE location_stock SET quantity = quantity + ?, updated_at = ?" + WHERE;
+    
+    private static final String MYSQL_UPDATE_SQL =
+        "UPDATE location_stock SET quantity = LAST_INSERT_ID(quantity + ?), updated_at = ?" + WHERE;
+    
+    private static final String H2_UPDATE_SQL = "SELECT quantity FROM FINAL TABLE (" + UPDATE_SQL + ")";
+    
+    private static final String QUANTITY_SQL =
+        "SELECT quantity FROM location_stock WHERE product_id = ? AND location_id = ?";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManagerFactory entityManagerFactory;
+    private final String database;
+    
+    public StockLevels(DataSource dataSource, EntityManagerFactory entityManagerFactory) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.entityManagerFactory = entityManagerFactory;
+        this.database = jdbcTemplate.execute(
+            (ConnectionCallback<String>) connection -> connection.getMetaData().getDatabaseProductName());
+    }
+    
+    /**
+     * Adds delta to the stock of a product at a location and returns the new level, or null
+     * when there is no such row or the level would drop below zero. The UPDATE's row lock
+     * serializes movements on the same product and location only.
+     */
+    public Integer add(Long productId, Long locationId, int delta, LocalDateTime now) {
+        flushPersistenceContext();
+        Object[] args = {delta, Timestamp.valueOf(now), productId, locationId, Math.max(0, -delta)};
+        try {
+            if ("H2".equals(database)) {
+                List<Integer> levels = jdbcTemplate.queryForList(H2_UPDATE_SQL, Integer.class, args);
+                return levels.isEmpty() ? null : levels.get(0);
+            }
+            if ("MySQL".equals(database)) {
+                return addReturningKey(args);
+            }
+            if (jdbcTemplate.update(UPDATE_SQL, args) == 0) {
+                return null;
+            }
+            return jdbcTemplate.queryForObject(QUANTITY_SQL, Integer.class, productId, locationId);
+        } finally {
+            clearPersistenceContext();
+        }
+    }
+    
+    private Integer addReturningKey(Object[] args) {
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        int updated = jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(MYSQL_UPDATE_SQL, Statement.RETURN_GENERATED_KEYS);
+            for (int i = 0; i < args.length; i++) {
+                statement.setObject(i + 1, args[i]);
+            }
+            return statement;
+        }, keyHolder);
+        if (updated == 0) {
+            return null;
+        }
+        // The driver reports no key when LAST_INSERT_ID is zero, which is a level of zero here
+        Number level = keyHolder.getKeyList().isEmpty() ? null : keyHolder.getKey();
+        return level == null ? 0 : level.intValue();
+    }
+    
+    private void flushPersistenceContext() {
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+        if (holder != null) {
+            holder.getEntityManager().flush();
+        }
+    }
+    
+    private void clearPersistenceContext() {
+        EntityManagerHolder holder = (EntityManagerHolder) TransactionSynchronizationManager.getResource(entityManagerFactory);
+        if (holder != null) {
+            holder.getEntityManager().clear();
+        }
+    }
+}
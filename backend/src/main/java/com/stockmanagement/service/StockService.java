@@ -1,76 +1,360 @@
 package com.stockmanagement.service;
 
+import com.stockmanagement.entity.Location;
+import com.stockmanagement.entity.LocationStock;
+import com.stockmanagement.entity.LocationStockId;
 import com.stockmanagement.entity.Product;
 import com.stockmanagement.entity.StockTransaction;
 import com.stockmanagement.entity.User;
+import com.stockmanagement.metrics.ServiceMetrics;
+import com.stockmanagement.repository.LocationStockRepository;
 import com.stockmanagement.repository.ProductRepository;
 import com.stockmanagement.repository.StockTransactionRepository;
+import com.stockmanagement.dto.CursorPage;
+import com.stockmanagement.dto.PageCursor;
+import com.stockmanagement.dto.ProductStock;
+import com.stockmanagement.dto.StockTransferRequest;
 import com.stockmanagement.dto.StockUpdateRequest;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
 
 @Service
 @RequiredArgsConstructor
 public class StockService {
+    // Lower bound for open-ended date filters; still within MySQL's DATETIME range
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1000, 1, 1, 0, 0);
+    // Lock order for multi-row movements, the same as findAtLocationForUpdate's
+    private static final Comparator<LocationStockId> ROW_ORDER =
+        Comparator.comparing(LocationStockId::getLocationId).thenComparing(LocationStockId::getProductId);
+    
     private final StockTransactionRepository stockTransactionRepository;
     private final ProductRepository productRepository;
-    private final ProductService productService;
+    private final LocationStockRepository locationStockRepository;
+    private final StockLevels stockLevels;
+    private final LocationService locationService;
+    private final StockTotals stockTotals;
+    private final StockTransactionJournal stockTransactionJournal;
+    private final ServiceMetrics serviceMetrics;
+    private final ArchiveStore archiveStore;
+    private final DemandForecastService demandForecastService;
     
     @Transactional
     public StockTransaction updateStock(StockUpdateRequest request, User user) {
-        Product product = productRepository.findById(request.getProductId())
-            .orElseThrow(() -> new RuntimeException("Product not found"));
+        long start = System.nanoTime();
+        try {
+            return doUpdateStock(request, user);
+        } finally {
+            serviceMetrics.recordUpdateStock(start);
+        }
+    }
+    
+    private StockTransaction doUpdateStock(StockUpdateRequest request, User user) {
+        String transactionType = request.getTransactionType().toUpperCase();
+        Long productId = request.getProductId();
+        Integer quantity = request.getQuantity();
+        Location location = locationService.resolve(request.getLocationId());
+        Long locationId = location.getId();
+        LocalDateTime now = LocalDateTime.now();
         
-        Integer previousStock = product.getCurrentStock();
+        Integer previousStock;
         Integer newStock;
         
-        switch (request.getTransactionType().toUpperCase()) {
+        switch (transactionType) {
             case "IN":
-                newStock = previousStock + request.getQuantity();
+                newStock = stockLevels.add(productId, locationId, quantity, now);
+                if (newStock == null) {
+                    throw new RuntimeException("Product not found");
+                }
+                previousStock = newStock - quantity;
                 break;
             case "OUT":
-                if (previousStock < request.getQuantity()) {
-                    throw new RuntimeException("Insufficient stock. Available: " + previousStock);
+                newStock = stockLevels.add(productId, locationId, -quantity, now);
+                if (newStock == null) {
+                    Product current = loadProduct(productId);
+                    serviceMetrics.insufficientStock();
+                    // A rejected update reports no level, so the one for the message is read here
+                    throw new RuntimeException("Insufficient stock for product: " + current.getName() + " at " +
+                        location.getCode() + ". Available: " + locationStockRepository.findQuantity(productId, locationId));
                 }
-                newStock = previousStock - request.getQuantity();
+                previousStock = newStock + quantity;
                 break;
             case "ADJUSTMENT":
-                newStock = request.getQuantity();
+                LocationStock stock = locationStockRepository.findForUpdate(productId, locationId);
+                if (stock == null) {
+                    throw new RuntimeException("Product not found");
+                }
+                previousStock = stock.getQuantity();
+                newStock = quantity;
+                stock.setQuantity(quantity);
+                stock.setUpdatedAt(now);
                 break;
             default:
                 throw new RuntimeException("Invalid transaction type");
         }
         
-        // Update product stock
-        productService.updateStock(product.getId(), newStock);
+        Product product = loadProduct(productId);
+        stockTotals.changed(List.of(productId));
+        StockTransaction transaction = newTransaction(product, location, transactionType, quantity, previousStock,
+            newStock, request.getNotes(), user, now);
+        return record(List.of(transaction)).get(0);
+    }
+    
+    /**
+     * Applies several movements in one pass. Movements on the same product and location are
+     * folded into one conditional UPDATE, like the single-movement path: its WHERE clause
+     * rejects the sequence if any intermediate level, in request order, would drop below zero.
+     * Rows touched by an ADJUSTMENT are instead locked and changed in memory. Rows are updated
+     * in (location, product) order so concurrent batches cannot deadlock, and the transaction
+     * rows are persisted together as a JDBC batch.
+     */
+    @Transactional
+    public List<StockTransaction> updateStockBatch(List<StockUpdateRequest> requests, User user) {
+        if (requests.isEmpty()) {
+            return new ArrayList<>();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Map<Long, Location> locations = new HashMap<>();
+        Map<LocationStockId, List<StockUpdateRequest>> movementsByRow = new TreeMap<>(ROW_ORDER);
+        for (StockUpdateRequest request : requests) {
+            Location location = resolveLocation(locations, request.getLocationId());
+            movementsByRow.computeIfAbsent(new LocationStockId(request.getProductId(), location.getId()),
+                id -> new ArrayList<>()).add(request);
+        }
+        
+        // Level of each row before its first movement
+        Map<LocationStockId, Integer> startLevels = new HashMap<>();
+        Map<Long, Set<Long>> deltaRowsByLocation = new TreeMap<>();
+        Map<LocationStockId, Integer> deltas = new HashMap<>();
+        for (Map.Entry<LocationStockId, List<StockUpdateRequest>> entry : movementsByRow.entrySet()) {
+            LocationStockId id = entry.getKey();
+            List<StockUpdateRequest> movements = entry.getValue();
+            if (movements.stream().anyMatch(movement -> "ADJUSTMENT".equalsIgnoreCase(movement.getTransactionType()))) {
+                LocationStock stock = locationStockRepository.findForUpdate(id.getProductId(), id.getLocationId());
+                if (stock == null) {
+                    throw new RuntimeException("Product not found: " + id.getProductId());
+                }
+                startLevels.put(id, stock.getQuantity());
+                Product product = loadProduct(id.getProductId());
+                Integer level = stock.getQuantity();
+                for (StockUpdateRequest movement : movements) {
+                    level = calculateNewStock(product, locations.get(id.getLocationId()), level,
+                        movement.getTransactionType().toUpperCase(), movement.getQuantity());
+                }
+                stock.setQuantity(level);
+                stock.setUpdatedAt(now);
+                continue;
+            }
+            int delta = 0;
+            int lowest = 0;
+            for (StockUpdateRequest movement : movements) {
+                delta += signedQuantity(movement);
+                lowest = Math.min(lowest, delta);
+            }
+            if (locationStockRepository.applyStockDelta(id.getProductId(), id.getLocationId(), delta, -lowest, now) == 0) {
+                Integer available = locationStockRepository.findQuantity(id.getProductId(), id.getLocationId());
+                if (available == null) {
+                    throw new RuntimeException("Product not found: " + id.getProductId());
+                }
+                serviceMetrics.insufficientStock();
+                throw new RuntimeException("Insufficient stock for product: " + loadProduct(id.getProductId()).getName() +
+                    " at " + locations.get(id.getLocationId()).getCode() + ". Available: " + available);
+            }
+            deltas.put(id, delta);
+            deltaRowsByLocation.computeIfAbsent(id.getLocationId(), locationId -> new TreeSet<>()).add(id.getProductId());
+        }
+        // The UPDATEs hold the row locks, so these reads see exactly this batch's result
+        for (Map.Entry<Long, Set<Long>> entry : deltaRowsByLocation.entrySet()) {
+            for (LocationStock stock : locationStockRepository.findAtLocation(entry.getKey(), entry.getValue())) {
+                startLevels.put(stock.getId(), stock.getQuantity() - deltas.get(stock.getId()));
+            }
+        }
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : productRepository.findAllById(
+                movementsByRow.keySet().stream().map(LocationStockId::getProductId).toList())) {
+            products.put(product.getId(), product);
+        }
+        
+        Map<LocationStockId, Integer> levels = new HashMap<>(startLevels);
+        List<StockTransaction> transactions = new ArrayList<>(requests.size());
+        for (StockUpdateRequest request : requests) {
+            Product product = products.get(request.getProductId());
+            Location location = resolveLocation(locations, request.getLocationId());
+            LocationStockId id = new LocationStockId(request.getProductId(), location.getId());
+            String transactionType = request.getTransactionType().toUpperCase();
+            Integer previousStock = levels.get(id);
+            Integer newStock = "ADJUSTMENT".equals(transactionType)
+                ? request.getQuantity()
+                : previousStock + signedQuantity(request);
+            levels.put(id, newStock);
+            transactions.add(newTransaction(product, location, transactionType, request.getQuantity(), previousStock,
+                newStock, request.getNotes(), user, now));
+        }
+        stockTotals.changed(products.keySet());
+        return record(transactions);
+    }
+    
+    /**
+     * Moves stock between two locations as a TRANSFER_OUT and a TRANSFER_IN movement. The product's
+     * total does not change, so only the two location rows are touched.
+     */
+    @Transactional
+    public List<StockTransaction> transferStock(StockTransferRequest request, User user) {
+        if (request.getFromLocationId() == null || request.getToLocationId() == null) {
+            throw new RuntimeException("fromLocationId and toLocationId are required");
+        }
+        if (request.getFromLocationId().equals(request.getToLocationId())) {
+            throw new RuntimeException("Cannot transfer stock to the same location");
+        }
+        if (request.getQuantity() == null || request.getQuantity() <= 0) {
+            throw new RuntimeException("Transfer quantity must be positive");
+        }
+        Location from = locationService.resolve(request.getFromLocationId());
+        Location to = locationService.resolve(request.getToLocationId());
+        Product product = loadProduct(request.getProductId());
+        Integer quantity = request.getQuantity();
+        LocalDateTime now = LocalDateTime.now();
+        
+        Map<Long, LocationStock> stockRows = new HashMap<>();
+        for (LocationStock stock : locationStockRepository.findForProductForUpdate(product.getId(),
+                List.of(from.getId(), to.getId()))) {
+            stockRows.put(stock.getId().getLocationId(), stock);
+        }
+        LocationStock source = stockRows.get(from.getId());
+        LocationStock target = stockRows.get(to.getId());
+        if (source == null || target == null) {
+            throw new RuntimeException("Product not found: " + product.getId());
+        }
+        int sourceStock = source.getQuantity();
+        int targetStock = target.getQuantity();
+        source.setQuantity(calculateNewStock(product, from, sourceStock, "OUT", quantity));
+        source.setUpdatedAt(now);
+        target.setQuantity(targetStock + quantity);
+        target.setUpdatedAt(now);
         
-        // Create transaction record
+        String notes = request.getNotes() != null ? request.getNotes() : "Transfer " + from.getCode() + " -> " + to.getCode();
+        return record(List.of(
+            newTransaction(product, from, "TRANSFER_OUT", quantity, sourceStock, source.getQuantity(), notes, user, now),
+            newTransaction(product, to, "TRANSFER_IN", quantity, targetStock, target.getQuantity(), notes, user, now)));
+    }
+    
+    public List<ProductStock> getStockByLocation(Long productId) {
+        return locationStockRepository.findByProduct(productId);
+    }
+    
+    public CursorPage<StockTransaction> getTransactions(String cursor, Integer limit) {
+        PageCursor position = PageCursor.decode(cursor);
+        int pageSize = CursorPage.clampLimit(limit);
+        List<StockTransaction> rows = stockTransactionRepository.findPageBefore(position.getTimestamp(),
+            position.getId(), PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(rows, pageSize, StockService::positionOf);
+    }
+    
+    /**
+     * Pages one product's movements newest first within [from, to); both bounds are optional.
+     */
+    public CursorPage<StockTransaction> getProductTransactions(Long productId, LocalDateTime from, LocalDateTime to,
+                                                               String cursor, Integer limit) {
+        // No id is below Long.MIN_VALUE, so rows at exactly `to` are left out
+        PageCursor position = cursor == null && to != null
+            ? new PageCursor(to, Long.MIN_VALUE)
+            : PageCursor.decode(cursor);
+        int pageSize = CursorPage.clampLimit(limit);
+        List<StockTransaction> rows = stockTransactionRepository.findProductPageBefore(productId,
+            from != null ? from : EARLIEST, position.getTimestamp(), position.getId(),
+            PageRequest.of(0, pageSize + 1));
+        return CursorPage.of(rows, pageSize, StockService::positionOf);
+    }
+    
+    // Hot transactions only: a range reaching into archived months is rejected, those are read through the export
+    public List<StockTransaction> getTransactionsByDateRange(LocalDateTime start, LocalDateTime end) {
+        archiveStore.requireHot(ArchiveStore.STOCK_TRANSACTIONS, start, "Stock transactions");
+        return stockTransactionRepository.findByTransactionDateBetween(start, end);
+    }
+    
+    private static PageCursor positionOf(StockTransaction transaction) {
+        return new PageCursor(transaction.getTransactionDate(), transaction.getId());
+    }
+    
+    private static int signedQuantity(StockUpdateRequest request) {
+        switch (request.getTransactionType().toUpperCase()) {
+            case "IN":
+                return request.getQuantity();
+            case "OUT":
+                return -request.getQuantity();
+            default:
+                throw new RuntimeException("Invalid transaction type");
+        }
+    }
+    
+    private Integer calculateNewStock(Product product, Location location, Integer currentStock,
+                                      String transactionType, Integer quantity) {
+        switch (transactionType) {
+            case "IN":
+                return currentStock + quantity;
+            case "OUT":
+                if (currentStock < quantity) {
+                    serviceMetrics.insufficientStock();
+                    throw new RuntimeException("Insufficient stock for product: " + product.getName() + " at " +
+                        location.getCode() + ". Available: " + currentStock);
+                }
+                return currentStock - quantity;
+            case "ADJUSTMENT":
+                return quantity;
+            default:
+                throw new RuntimeException("Invalid transaction type");
+        }
+    }
+    
+    private StockTransaction newTransaction(Product product, Location location, String transactionType,
+                                            Integer quantity, Integer previousStock, Integer newStock, String notes,
+                                            User user, LocalDateTime now) {
         StockTransaction transaction = new StockTransaction();
         transaction.setProduct(product);
-        transaction.setTransactionType(request.getTransactionType().toUpperCase());
-        transaction.setQuantity(request.getQuantity());
+        transaction.setLocation(location);
+        transaction.setTransactionType(transactionType);
+        transaction.setQuantity(quantity);
         transaction.setPreviousStock(previousStock);
         transaction.setNewStock(newStock);
-        transaction.setNotes(request.getNotes());
+        transaction.setNotes(notes);
         transaction.setUser(user);
-        transaction.setTransactionDate(LocalDateTime.now());
-        
-        return stockTransactionRepository.save(transaction);
+        transaction.setTransactionDate(now);
+        return transaction;
     }
     
-    public List<StockTransaction> getProductTransactions(Long productId) {
-        return stockTransactionRepository.findByProductIdOrderByTransactionDateDesc(productId);
+    // In journal mode the audit rows are inserted after commit by the journal's flusher and
+    // are returned without ids; a full journal hands them back to be inserted here
+    private List<StockTransaction> record(List<StockTransaction> transactions) {
+        demandForecastService.recorded(transactions);
+        if (stockTransactionJournal.isEnabled() && stockTransactionJournal.append(transactions)) {
+            return transactions;
+        }
+        return stockTransactionRepository.saveAll(transactions);
     }
     
-    public List<StockTransaction> getAllTransactions() {
-        return stockTransactionRepository.findAll();
+    private Location resolveLocation(Map<Long, Location> locations, Long locationId) {
+        Long key = locationId != null ? locationId : locationService.getDefaultLocationId();
+        Location location = locations.get(key);
+        if (location == null) {
+            location = locationService.resolve(key);
+            locations.put(key, location);
+        }
+        return location;
     }
     
-    public List<StockTransaction> getTransactionsByDateRange(LocalDateTime start, LocalDateTime end) {
-        return stockTransactionRepository.findByTransactionDateBetween(start, end);
+    private Product loadProduct(Long productId) {
+        return productRepository.findById(productId)
+            .orElseThrow(() -> new RuntimeException("Product not found"));
     }
 }
@@ -0,0 +1,128 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.repository.LocationStockRepository;
+import com.stockmanagement.repository.ProductRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps products.current_stock equal to the product's stock summed over all locations, off the
+ * checkout path. Movements only update their location's row and mark the product here once they
+ * commit; each flush recomputes the marked totals from location_stock in batched updates, so
+ * checkouts at different locations never queue on the product row. Because totals are
+ * recomputed rather than adjusted, a lost flush is repaired by the next reconcile.
+ *
+ * Totals are written through the Product entities rather than plain JDBC, so Hibernate
+ * soft-locks their second-level cache entries for the write: a concurrent read that loaded
+ * the old total cannot put it back into the cache after the flush.
+ *
+ * Product-level consumers (catalog listing, low-stock registry, catalog versions) see a movement
+ * once its flush runs.
+ */
+@Component
+public class StockTotals {
+    private static final int BATCH_SIZE = 500;
+    
+    private static final String DRIFTED_SQL =
+        "SELECT p.id FROM products p LEFT JOIN " +
+        "(SELECT product_id, SUM(quantity) AS total FROM location_stock GROUP BY product_id) s " +
+        "ON s.product_id = p.id WHERE p.current_stock <> COALESCE(s.total, 0)";
+    
+    private final Set<Long> dirty = ConcurrentHashMap.newKeySet();
+    private final ProductRepository productRepository;
+    private final LocationStockRepository locationStockRepository;
+    private final LowStockRegistry lowStockRegistry;
+    private final CatalogVersions catalogVersions;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    
+    public StockTotals(ProductRepository productRepository, LocationStockRepository locationStockRepository,
+                       LowStockRegistry lowStockRegistry, CatalogVersions catalogVersions, DataSource dataSource,
+                       PlatformTransactionManager transactionManager) {
+        this.productRepository = productRepository;
+        this.locationStockRepository = locationStockRepository;
+        this.lowStockRegistry = lowStockRegistry;
+        this.catalogVersions = catalogVersions;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+    
+    public void changed(Collection<Long> productIds) {
+        List<Long> ids = new ArrayList<>(productIds);
+        TransactionHooks.afterCommit(() -> dirty.addAll(ids));
+    }
+    
+    @Scheduled(fixedDelayString = "${stock.totals.flush-ms:1000}")
+    @PreDestroy
+    public synchronized void flush() {
+        if (dirty.isEmpty()) {
+            return;
+        }
+        // Sorted, so concurrent flushes from several instances lock product rows in the same order
+        Set<Long> ids = new TreeSet<>();
+        for (Long productId : List.copyOf(dirty)) {
+            if (dirty.remove(productId)) {
+                ids.add(productId);
+            }
+        }
+        List<Long> batch = new ArrayList<>(BATCH_SIZE);
+        for (Long productId : ids) {
+            batch.add(productId);
+            if (batch.size() == BATCH_SIZE) {
+                apply(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            apply(batch);
+        }
+    }
+    
+    /**
+     * Marks every product whose total no longer matches its locations, e.g. after a crash lost
+     * the marks of committed movements, and flushes them.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${stock.totals.reconcile-ms:300000}", initialDelayString = "${stock.totals.reconcile-ms:300000}")
+    public void reconcile() {
+        dirty.addAll(jdbcTemplate.queryForList(DRIFTED_SQL, Long.class));
+        flush();
+    }
+    
+    // The product rows are locked before the totals are summed, so of two concurrent flushes
+    // the later one always writes the later sums
+    private void apply(List<Long> productIds) {
+        List<Product> products = transactionTemplate.execute(status -> {
+            List<Product> locked = productRepository.findAllByIdForUpdate(productIds);
+            Map<Long, Integer> totals = new HashMap<>();
+            for (Object[] row : locationStockRepository.sumByProduct(productIds)) {
+                totals.put((Long) row[0], ((Number) row[1]).intValue());
+            }
+            for (Product product : locked) {
+                product.setCurrentStock(totals.getOrDefault(product.getId(), 0));
+            }
+            catalogVersions.changed(productIds);
+            return locked;
+        });
+        for (Product product : products) {
+            lowStockRegistry.update(product);
+        }
+    }
+}
@@ -0,0 +1,538 @@
+package com.stockmanagement.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmanagement.entity.Location;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockJournalCheckpoint;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.StockJournalCheckpointRepository;
+import com.stockmanagement.repository.StockTransactionRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManager;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Write-behind store for stock transaction audit rows, used when stock.journal.enabled is
+ * set. Location stock still changes synchronously; the audit rows of a movement are appended
+ * and synced to a local segment file just before its transaction commits, so a journal that
+ * cannot be written rolls the movement back. A background thread inserts the rows of
+ * committed movements in batches, in sequence order, and each batch advances a checkpoint
+ * row in the same transaction, so records past the checkpoint are replayed exactly once at
+ * the next startup.
+ *
+ * A movement that rolls back after its append gets a void entry that keeps its rows out of
+ * the replay. A crash between the append and the commit leaves no void entry, so the journal
+ * errs towards an extra audit row, never a missing one. When more rows than the capacity
+ * are waiting, movements fall back to inserting their rows in their own transaction.
+ */
+@Slf4j
+@Component
+public class StockTransactionJournal {
+    private static final String SEGMENT_PREFIX = "stock-journal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String REJECTED_FILE = "stock-journal-rejected.log";
+    private static final long RETRY_DELAY_MS = 1000;
+    
+    private final StockTransactionRepository stockTransactionRepository;
+    private final StockJournalCheckpointRepository checkpointRepository;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final boolean enabled;
+    private final Path directory;
+    private final String journalName;
+    private final int batchSize;
+    private final long flushIntervalMillis;
+    private final long segmentBytes;
+    private final boolean fsync;
+    private final int capacity;
+    private final BlockingQueue<Append> appends = new LinkedBlockingQueue<>();
+    private final AtomicInteger backlog = new AtomicInteger(); // Rows accepted and not yet flushed or voided
+    
+    // Sequence assignment, the file append and the enqueue happen under one lock, so the
+    // queue is always in sequence order and the checkpoint never skips a record
+    private final Object appendLock = new Object();
+    private FileChannel segment;
+    private long segmentSize;
+    private long lastSequence;
+    
+    private Thread flusher;
+    private volatile boolean running;
+    
+    public StockTransactionJournal(StockTransactionRepository stockTransactionRepository,
+                                   StockJournalCheckpointRepository checkpointRepository,
+                                   EntityManager entityManager, PlatformTransactionManager transactionManager,
+                                   ObjectMapper objectMapper,
+                                   @Value("${stock.journal.enabled:false}") boolean enabled,
+                                   @Value("${stock.journal.directory:./data/stock-journal}") String directory,
+                                   @Value("${stock.journal.name:default}") String journalName,
+                                   @Value("${stock.journal.capacity:10000}") int capacity,
+                                   @Value("${stock.journal.batch-size:500}") int batchSize,
+                                   @Value("${stock.journal.flush-interval-ms:200}") long flushIntervalMillis,
+                                   @Value("${stock.journal.segment-bytes:16777216}") long segmentBytes,
+                                   @Value("${stock.journal.fsync:true}") boolean fsync) {
+        this.stockTransactionRepository = stockTransactionRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.directory = Paths.get(directory);
+        this.journalName = journalName;
+        this.batchSize = batchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.segmentBytes = segmentBytes;
+        this.fsync = fsync;
+        this.capacity = capacity;
+    }
+    
+    public boolean isEnabled() {
+        return enabled;
+    }
+    
+    /**
+     * Journals the rows as the surrounding transaction commits. Returns false, journaling
+     * nothing, when the backlog is full; the caller then inserts the rows itself.
+     */
+    public boolean append(List<StockTransaction> transactions) {
+        if (transactions.isEmpty()) {
+            return true;
+        }
+        if (backlog.addAndGet(transactions.size()) > capacity) {
+            backlog.addAndGet(-transactions.size());
+            return false;
+        }
+        List<JournalRecord> records = new ArrayList<>(transactions.size());
+        for (StockTransaction transaction : transactions) {
+            records.add(JournalRecord.of(transaction));
+        }
+        Append append = new Append(records);
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            try {
+                write(append);
+            } catch (RuntimeException e) {
+                backlog.addAndGet(-records.size());
+                throw e;
+            }
+            append.resolve(true);
+            return true;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                // Throws on a failed append, which rolls the movement back
+                write(append);
+            }
+            
+            @Override
+            public void afterCompletion(int status) {
+                boolean committed = status == STATUS_COMMITTED;
+                if (!committed) {
+                    backlog.addAndGet(-records.size());
+                    if (append.written) {
+                        voidRecords(records);
+                    }
+                }
+                append.resolve(committed);
+            }
+        });
+        return true;
+    }
+    
+    /**
+     * Replays whatever an earlier run journaled but did not flush, then starts the flusher.
+     * Recovery runs even with the journal disabled, so switching the mode off loses nothing.
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        if (!enabled && !Files.isDirectory(directory)) {
+            return;
+        }
+        Files.createDirectories(directory);
+        long checkpoint = checkpoint();
+        lastSequence = checkpoint;
+        
+        // Void entries follow the records they cancel, so they are collected in a first pass
+        List<Path> segments = segments();
+        Set<Long> voided = new HashSet<>();
+        for (Path file : segments) {
+            for (JournalRecord record : read(file)) {
+                lastSequence = Math.max(lastSequence, record.getSequence());
+                if (record.isVoided()) {
+                    voided.add(record.getSequence());
+                }
+            }
+        }
+        List<JournalRecord> pending = new ArrayList<>(batchSize);
+        for (Path file : segments) {
+            for (JournalRecord record : read(file)) {
+                if (!record.isVoided() && record.getSequence() > checkpoint && !voided.contains(record.getSequence())) {
+                    pending.add(record);
+                    if (pending.size() == batchSize) {
+                        replay(pending);
+                    }
+                }
+            }
+        }
+        replay(pending);
+        for (Path file : segments) {
+            Files.deleteIfExists(file);
+        }
+        
+        if (enabled) {
+            running = true;
+            flusher = new Thread(this::flushLoop, "stock-journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        }
+    }
+    
+    @PreDestroy
+    public void close() throws IOException, InterruptedException {
+        running = false;
+        if (flusher != null) {
+            flusher.join(TimeUnit.SECONDS.toMillis(30));
+            flusher.interrupt();
+        }
+        synchronized (appendLock) {
+            if (segment != null) {
+                segment.close();
+                segment = null;
+            }
+        }
+    }
+    
+    private void write(Append append) {
+        synchronized (appendLock) {
+            List<JournalRecord> records = append.records;
+            long first = lastSequence + 1;
+            for (int i = 0; i < records.size(); i++) {
+                records.get(i).setSequence(first + i);
+            }
+            // Burnt even when the append fails, so a retry never reuses a partly written sequence
+            lastSequence += records.size();
+            try {
+                appendToSegment(records, first);
+            } catch (IOException e) {
+                throw new UncheckedIOException("Stock journal append failed, movement rolled back", e);
+            }
+            append.written = true;
+            appends.add(append);
+        }
+    }
+    
+    // Written for a movement that rolled back after its append, so replay skips its rows
+    private void voidRecords(List<JournalRecord> records) {
+        List<JournalRecord> voids = new ArrayList<>(records.size());
+        for (JournalRecord record : records) {
+            JournalRecord entry = new JournalRecord();
+            entry.setSequence(record.getSequence());
+            entry.setVoided(true);
+            voids.add(entry);
+        }
+        synchronized (appendLock) {
+            try {
+                appendToSegment(voids, lastSequence + 1);
+            } catch (IOException e) {
+                log.error("Could not void stock journal records {}-{} of a rolled back movement; a restart will replay them",
+                    records.get(0).getSequence(), records.get(records.size() - 1).getSequence(), e);
+            }
+        }
+    }
+    
+    private void appendToSegment(List<JournalRecord> records, long nextSequence) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (JournalRecord record : records) {
+            bytes.write(objectMapper.writeValueAsBytes(record));
+            bytes.write('\n');
+        }
+        if (segment == null || (segmentSize > 0 && segmentSize + bytes.size() > segmentBytes)) {
+            openSegment(nextSequence);
+        }
+        try {
+            ByteBuffer data = ByteBuffer.wrap(bytes.toByteArray());
+            while (data.hasRemaining()) {
+                segment.write(data);
+            }
+            if (fsync) {
+                segment.force(false);
+            }
+        } catch (IOException e) {
+            // Cut off any partial entry and start the next append in a fresh segment
+            try {
+                segment.truncate(segmentSize);
+                segment.close();
+            } catch (IOException suppressed) {
+                e.addSuppressed(suppressed);
+            }
+            segment = null;
+            throw e;
+        }
+        segmentSize += bytes.size();
+    }
+    
+    private void openSegment(long firstSequence) throws IOException {
+        if (segment != null) {
+            segment.close();
+        }
+        Path file = directory.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, firstSequence, SEGMENT_SUFFIX));
+        segment = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        segmentSize = segment.size();
+    }
+    
+    // Takes appends in sequence order, waiting for each one's transaction to finish, and
+    // flushes the committed ones; the checkpoint then covers rolled back appends as well
+    private void flushLoop() {
+        List<JournalRecord> batch = new ArrayList<>(batchSize);
+        while (running || !appends.isEmpty()) {
+            try {
+                Append next = appends.poll(flushIntervalMillis, TimeUnit.MILLISECONDS);
+                if (next == null) {
+                    continue;
+                }
+                long upTo = 0;
+                while (next != null) {
+                    while (!next.outcome.await(flushIntervalMillis, TimeUnit.MILLISECONDS)) {
+                        if (!running) {
+                            // Still in the segment files for the next startup
+                            return;
+                        }
+                    }
+                    if (next.committed) {
+                        batch.addAll(next.records);
+                    }
+                    upTo = next.lastSequence();
+                    Append following = appends.peek();
+                    next = batch.size() < batchSize && following != null && following.outcome.getCount() == 0
+                        ? appends.poll() : null;
+                }
+                int flushed = batch.size();
+                while (!flush(batch, upTo)) {
+                    if (!running) {
+                        return;
+                    }
+                    Thread.sleep(RETRY_DELAY_MS);
+                }
+                backlog.addAndGet(-flushed);
+                deleteFlushedSegments(upTo);
+            } catch (InterruptedException e) {
+                return;
+            } catch (IOException e) {
+                log.warn("Could not delete flushed stock journal segments", e);
+            }
+        }
+    }
+    
+    // Records handled here are removed from the batch, so a retry never inserts them twice
+    private boolean flush(List<JournalRecord> batch, long upTo) {
+        try {
+            insert(batch, upTo);
+            batch.clear();
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // A record the database refuses, e.g. for a product deleted before its audit row
+            // was flushed; set it aside so it cannot hold up the rest of the journal
+            for (Iterator<JournalRecord> records = batch.iterator(); records.hasNext(); ) {
+                JournalRecord record = records.next();
+                try {
+                    insert(List.of(record), record.getSequence());
+                } catch (DataIntegrityViolationException rejected) {
+                    if (!reject(record, rejected)) {
+                        return false;
+                    }
+                } catch (RuntimeException failed) {
+                    log.warn("Stock journal flush failed, retrying: {}", failed.getMessage());
+                    return false;
+                }
+                records.remove();
+            }
+            return flush(batch, upTo);
+        } catch (RuntimeException e) {
+            log.warn("Stock journal flush failed, retrying: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    private void insert(List<JournalRecord> records, long upTo) {
+        transactionTemplate.executeWithoutResult(status -> {
+            List<StockTransaction> transactions = new ArrayList<>(records.size());
+            for (JournalRecord record : records) {
+                transactions.add(record.toTransaction(entityManager));
+            }
+            stockTransactionRepository.saveAllAndFlush(transactions);
+            saveCheckpoint(upTo);
+        });
+    }
+    
+    private boolean reject(JournalRecord record, RuntimeException cause) {
+        try {
+            Files.write(directory.resolve(REJECTED_FILE), (objectMapper.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            transactionTemplate.executeWithoutResult(status -> saveCheckpoint(record.getSequence()));
+            log.error("Stock journal record {} rejected by the database and moved to {}: {}",
+                record.getSequence(), REJECTED_FILE, cause.getMessage());
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not set aside stock journal record {}, retrying", record.getSequence(), e);
+            return false;
+        }
+    }
+    
+    private void replay(List<JournalRecord> pending) {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Startup stops here rather than letting later checkpoints skip these records
+        if (!flush(pending, pending.get(pending.size() - 1).getSequence())) {
+            throw new IllegalStateException("Could not replay the stock journal in " + directory);
+        }
+    }
+    
+    private List<JournalRecord> read(Path file) throws IOException {
+        List<JournalRecord> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    records.add(objectMapper.readValue(line, JournalRecord.class));
+                } catch (JsonProcessingException e) {
+                    // Torn tail of a write interrupted by a crash
+                    log.warn("Skipping unreadable stock journal entry in {}", file.getFileName());
+                    break;
+                }
+            }
+        }
+        return records;
+    }
+    
+    private long checkpoint() {
+        return transactionTemplate.execute(status -> checkpointRepository.findById(journalName)
+            .map(StockJournalCheckpoint::getLastSequence)
+            .orElse(0L));
+    }
+    
+    private void saveCheckpoint(long sequence) {
+        checkpointRepository.save(new StockJournalCheckpoint(journalName, sequence));
+    }
+    
+    // A segment is flushed once the segment after it starts at or below the next unflushed sequence
+    private void deleteFlushedSegments(long flushedUpTo) throws IOException {
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size() - 1; i++) {
+            if (firstSequence(segments.get(i + 1)) - 1 <= flushedUpTo) {
+                Files.deleteIfExists(segments.get(i));
+            }
+        }
+    }
+    
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files
+                .filter(file -> {
+                    String name = file.getFileName().toString();
+                    return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                })
+                .sorted()
+                .toList();
+        }
+    }
+    
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+    
+    // The rows of one movement, in the order they were appended; resolved when its transaction ends
+    private static final class Append {
+        final List<JournalRecord> records;
+        final CountDownLatch outcome = new CountDownLatch(1);
+        volatile boolean written;
+        volatile boolean committed;
+        
+        Append(List<JournalRecord> records) {
+            this.records = records;
+        }
+        
+        void resolve(boolean committed) {
+            this.committed = committed;
+            outcome.countDown();
+        }
+        
+        long lastSequence() {
+            return records.get(records.size() - 1).getSequence();
+        }
+    }
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    static class JournalRecord {
+        private long sequence;
+        private Long productId;
+        private Long locationId;
+        private String transactionType;
+        private Integer quantity;
+        private Integer previousStock;
+        private Integer newStock;
+        private String notes;
+        private Long userId;
+        private LocalDateTime transactionDate;
+        private boolean voided; // Cancels the record with the same sequence
+        
+        static JournalRecord of(StockTransaction transaction) {
+            return new JournalRecord(0, transaction.getProduct().getId(),
+                transaction.getLocation() != null ? transaction.getLocation().getId() : null,
+                transaction.getTransactionType(),
+                transaction.getQuantity(), transaction.getPreviousStock(), transaction.getNewStock(),
+                transaction.getNotes(), transaction.getUser() != null ? transaction.getUser().getId() : null,
+                transaction.getTransactionDate(), false);
+        }
+        
+        StockTransaction toTransaction(EntityManager entityManager) {
+            return new StockTransaction(null, entityManager.getReference(Product.class, productId),
+                locationId != null ? entityManager.getReference(Location.class, locationId) : null, transactionType,
+                quantity, previousStock, newStock, notes,
+                userId != null ? entityManager.getReference(User.class, userId) : null, transactionDate);
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.stockmanagement.service;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Defers in-memory side effects of a write until its transaction commits, so a rollback never
+ * leaves caches, indexes or registries ahead of the database.
+ */
+public final class TransactionHooks {
+    
+    private TransactionHooks() {
+    }
+    
+    // Runs the action after the surrounding transaction commits, or right away outside one
+    public static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
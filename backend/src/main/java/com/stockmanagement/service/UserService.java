@@ -2,11 +2,14 @@ package com.stockmanagement.service;
 
 import com.stockmanagement.entity.User;
 import com.stockmanagement.repository.UserRepository;
+import com.stockmanagement.security.JwtUtil;
+import com.stockmanagement.security.TokenRevocations;
+import io.jsonwebtoken.Claims;
 import lombok.RequiredArgsConstructor;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -15,12 +18,54 @@ import java.util.Optional;
 public class UserService {
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final TokenRevocations tokenRevocations;
+    private final JwtUtil jwtUtil;
     
     public User createUser(User user) {
         user.setPassword(passwordEncoder.encode(user.getPassword()));
+        user.setTokenVersion(0);
         return userRepository.save(user);
     }
     
+    // Deactivating revokes every token the user holds; reactivating does not bring them back
+    @Transactional
+    public User setActive(Long id, boolean active) {
+        User user = userRepository.findById(id)
+            .orElseThrow(() -> new RuntimeException("User not found"));
+        if (user.getActive() != active) {
+            user.setActive(active);
+            if (!active) {
+                user.setTokenVersion(user.getTokenVersion() + 1);
+            }
+            tokenRevocations.userChanged(user);
+        }
+        return userRepository.save(user);
+    }
+    
+    // Revokes every token issued before the change, including the one used to make it
+    @Transactional
+    public void changePassword(String username, String currentPassword, String newPassword) {
+        User user = userRepository.findByUsername(username)
+            .orElseThrow(() -> new RuntimeException("User not found"));
+        if (!passwordEncoder.matches(currentPassword, user.getPassword())) {
+            throw new RuntimeException("Current password is incorrect");
+        }
+        if (newPassword == null || newPassword.isBlank()) {
+            throw new RuntimeException("New password must not be empty");
+        }
+        user.setPassword(passwordEncoder.encode(newPassword));
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        userRepository.save(user);
+        tokenRevocations.userChanged(user);
+    }
+    
+    public void logout(String token) {
+        Claims claims = jwtUtil.parseToken(token);
+        if (claims.getId() != null) {
+            tokenRevocations.revokeToken(claims.getId(), claims.getExpiration());
+        }
+    }
+    
     public Optional<User> findByUsername(String username) {
         return userRepository.findByUsername(username);
     }
@@ -29,15 +74,6 @@ public class UserService {
         return userRepository.findAll();
     }
     
-    public void updateLastLogin(String username) {
-        Optional<User> userOpt = userRepository.findByUsername(username);
-        if (userOpt.isPresent()) {
-            User user = userOpt.get();
-            user.setLastLogin(LocalDateTime.now());
-            userRepository.save(user);
-        }
-    }
-    
     public boolean existsByUsername(String username) {
         return userRepository.existsByUsername(username);
     }
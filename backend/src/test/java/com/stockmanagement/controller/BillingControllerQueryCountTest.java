@@ -0,0 +1,154 @@
+package com.stockmanagement.controller;
+
+import com.stockmanagement.dto.BillItemRequest;
+import com.stockmanagement.dto.BillRequest;
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.security.CustomUserDetailsService;
+import com.stockmanagement.security.JwtUtil;
+import com.stockmanagement.service.BillingService;
+import com.stockmanagement.service.ProductService;
+import com.stockmanagement.service.UserService;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultMatcher;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Pins the number of statements Hibernate prepares for the bill read endpoints, so a lazy
+ * association touched during serialization (an N+1) fails here instead of in production.
+ * The counts must not depend on how many bills or lines a response holds.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class BillingControllerQueryCountTest {
+    private static final int BILLS = 30;
+    private static final int LINES = 4;
+    // Later than any other test's bills, so this test's bills make up the first page
+    private static final LocalDateTime FIRST_BILL = LocalDateTime.of(2040, 1, 1, 10, 0);
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private BillingService billingService;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    private Statistics statistics;
+    private String token;
+    private Bill lastBill;
+    
+    @BeforeAll
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        assertThat(statistics.isStatisticsEnabled()).isTrue();
+        
+        User user = new User();
+        user.setUsername("query-count-cashier");
+        user.setPassword("secret");
+        user.setFullName("Query Count Cashier");
+        user.setEmail("query-count@stockmanagement.com");
+        user.setRole("USER");
+        User cashier = userService.createUser(user);
+        token = jwtUtil.generateToken(userDetailsService.loadUserByUsername(cashier.getUsername()));
+        
+        List<Product> products = new ArrayList<>();
+        for (int i = 0; i < LINES; i++) {
+            Product product = new Product();
+            product.setName("Query Count Product " + i);
+            product.setSku("QC-" + i);
+            product.setCategory("Test");
+            product.setPurchasePrice(new BigDecimal("1.00"));
+            product.setSellingPrice(new BigDecimal("2.50"));
+            product.setCurrentStock(10_000);
+            product.setMinStockLevel(0);
+            products.add(productService.createProduct(product));
+        }
+        for (int i = 0; i < BILLS; i++) {
+            List<BillItemRequest> items = new ArrayList<>();
+            for (Product product : products) {
+                items.add(new BillItemRequest(product.getId(), 1 + i % 3));
+            }
+            BillRequest request = new BillRequest();
+            request.setCustomerName("Customer " + i);
+            request.setPaymentMethod("CASH");
+            request.setItems(items);
+            lastBill = billingService.createBill(request, cashier);
+            new JdbcTemplate(dataSource).update("UPDATE bills SET bill_date = ? WHERE id = ?", FIRST_BILL.plusMinutes(i),
+                lastBill.getId());
+        }
+    }
+    
+    @Test
+    void billPageUsesTwoStatementsWhateverItsSize() throws Exception {
+        for (int limit : new int[] {1, 10, BILLS}) {
+            long statements = statementsFor(get("/api/bills").param("limit", String.valueOf(limit)),
+                jsonPath("$.data.items", hasSize(limit)),
+                jsonPath("$.data.items[0].items", hasSize(LINES)),
+                jsonPath("$.data.items[0].cashier.fullName").value("Query Count Cashier"));
+            // The page of bills with their cashiers, then all of the page's items with their products
+            assertThat(statements).as("statements for a page of %d bills", limit).isEqualTo(2);
+        }
+    }
+    
+    @Test
+    void billDetailUsesOneStatement() throws Exception {
+        long statements = statementsFor(get("/api/bills/" + lastBill.getId()),
+            jsonPath("$.data.billNumber").value(lastBill.getBillNumber()),
+            jsonPath("$.data.items", hasSize(LINES)),
+            jsonPath("$.data.items[0].product.sku").exists());
+        // The bill with its cashier, items and products in one fetch-joined query
+        assertThat(statements).isEqualTo(1);
+    }
+    
+    private long statementsFor(MockHttpServletRequestBuilder request, ResultMatcher... expectations) throws Exception {
+        statistics.clear();
+        mockMvc.perform(request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+            .andExpect(status().isOk())
+            .andExpectAll(expectations);
+        return statistics.getPrepareStatementCount();
+    }
+}
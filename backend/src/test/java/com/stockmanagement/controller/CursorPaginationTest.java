@@ -0,0 +1,284 @@
+package com.stockmanagement.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmanagement.dto.BillItemRequest;
+import com.stockmanagement.dto.BillRequest;
+import com.stockmanagement.dto.PageCursor;
+import com.stockmanagement.dto.StockUpdateRequest;
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.security.CustomUserDetailsService;
+import com.stockmanagement.security.JwtUtil;
+import com.stockmanagement.service.BillingService;
+import com.stockmanagement.service.ProductService;
+import com.stockmanagement.service.StockService;
+import com.stockmanagement.service.UserService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Keyset paging of bills and stock movements. Rows sharing a timestamp across a page break are
+ * the case to get right: walking page by page must return every row exactly once, newest first
+ * and by id within a timestamp. The rows are dated in 2001, away from everything other tests create.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class CursorPaginationTest {
+    private static final LocalDateTime EARLY = LocalDateTime.of(2001, 6, 15, 9, 0);
+    private static final LocalDateTime MIDDLE = LocalDateTime.of(2001, 6, 15, 10, 30);
+    private static final LocalDateTime LATE = LocalDateTime.of(2001, 6, 15, 12, 0);
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private BillingService billingService;
+    
+    @Autowired
+    private StockService stockService;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    private String token;
+    private Product product;
+    private final List<Long> billIds = new ArrayList<>();
+    // Oldest first: three at EARLY, four at MIDDLE, two at LATE
+    private final List<Long> movementIds = new ArrayList<>();
+    
+    @BeforeAll
+    void setUp() {
+        User user = new User();
+        user.setUsername("cursor-cashier");
+        user.setPassword("secret");
+        user.setFullName("Cursor Cashier");
+        user.setEmail("cursor-cashier@stockmanagement.com");
+        user.setRole("USER");
+        User cashier = userService.createUser(user);
+        token = jwtUtil.generateToken(userDetailsService.loadUserByUsername(cashier.getUsername()));
+        
+        product = createProduct("CURSOR-1", 100);
+        Product other = createProduct("CURSOR-2", 0);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        
+        for (int i = 0; i < 7; i++) {
+            BillRequest request = new BillRequest();
+            request.setCustomerName("Cursor Customer " + i);
+            request.setPaymentMethod("CASH");
+            request.setItems(List.of(new BillItemRequest(product.getId(), 1)));
+            Bill bill = billingService.createBill(request, cashier);
+            jdbcTemplate.update("UPDATE bills SET bill_date = ? WHERE id = ?", MIDDLE, bill.getId());
+            billIds.add(bill.getId());
+        }
+        
+        // The product's earlier movements (the bills' OUT rows) move back to 2000, below these nine
+        jdbcTemplate.update("UPDATE stock_transactions SET transaction_date = ? WHERE product_id = ?",
+            LocalDateTime.of(2000, 1, 1, 0, 0), product.getId());
+        for (int i = 0; i < 9; i++) {
+            StockTransaction movement = stockService.updateStock(
+                new StockUpdateRequest(product.getId(), 1, "IN", null, null), cashier);
+            LocalDateTime date = i < 3 ? EARLY : i < 7 ? MIDDLE : LATE;
+            jdbcTemplate.update("UPDATE stock_transactions SET transaction_date = ? WHERE id = ?", date, movement.getId());
+            movementIds.add(movement.getId());
+            // Same timestamps on another product, which the product endpoint must leave out
+            StockTransaction foreign = stockService.updateStock(
+                new StockUpdateRequest(other.getId(), 1, "IN", null, null), cashier);
+            jdbcTemplate.update("UPDATE stock_transactions SET transaction_date = ? WHERE id = ?", date, foreign.getId());
+        }
+    }
+    
+    @Test
+    void cursorTokensRoundTripAndBadOnesAreRejected() throws Exception {
+        PageCursor cursor = new PageCursor(MIDDLE, 42L);
+        assertThat(PageCursor.decode(cursor.encode())).isEqualTo(cursor);
+        assertThat(cursor.encode()).doesNotContain("=", "+", "/");
+        assertThat(PageCursor.decode(null)).isSameAs(PageCursor.START);
+        assertThat(PageCursor.decode("")).isSameAs(PageCursor.START);
+        
+        for (String bad : new String[] {"%%%", encode("no separator"), encode("2001-06-15T10:30|abc"),
+                encode("yesterday|1")}) {
+            assertThatThrownBy(() -> PageCursor.decode(bad)).isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("Invalid cursor");
+        }
+        for (String path : new String[] {"/api/bills", "/api/stock/transactions",
+                "/api/stock/transactions/product/" + product.getId()}) {
+            mockMvc.perform(authorized(get(path).param("cursor", encode("no separator"))))
+                .andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.message").value("Invalid cursor"));
+        }
+    }
+    
+    @Test
+    void firstPageStartsFromTheNewestRow() throws Exception {
+        JsonNode page = page(get("/api/stock/transactions/product/" + product.getId()).param("limit", "2"));
+        assertThat(ids(page)).containsExactly(movementIds.get(8), movementIds.get(7));
+        assertThat(page.get("nextCursor").isNull()).isFalse();
+        
+        // Nine IN rows and the bills' seven OUT rows fit on one page, which has no next cursor
+        JsonNode all = page(get("/api/stock/transactions/product/" + product.getId()).param("limit", "200"));
+        assertThat(ids(all)).hasSize(16);
+        assertThat(all.get("nextCursor").isNull()).isTrue();
+    }
+    
+    @Test
+    void billPagesSkipAndRepeatNothingAcrossEqualTimestamps() throws Exception {
+        // Start just above the 2001 bills and stop once a page goes below them
+        List<JsonNode> rows = walk("/api/bills", 3, new PageCursor(MIDDLE.plusSeconds(1), Long.MAX_VALUE),
+            row -> LocalDateTime.parse(row.get("billDate").asText()));
+        
+        List<Long> atMiddle = rows.stream()
+            .filter(row -> LocalDateTime.parse(row.get("billDate").asText()).equals(MIDDLE))
+            .map(row -> row.get("id").asLong())
+            .toList();
+        assertThat(atMiddle).containsExactlyElementsOf(descending(billIds));
+    }
+    
+    @Test
+    void movementPagesSkipAndRepeatNothingAcrossEqualTimestamps() throws Exception {
+        for (int limit = 1; limit <= 5; limit++) {
+            List<JsonNode> rows = walk("/api/stock/transactions", limit,
+                new PageCursor(LATE.plusSeconds(1), Long.MAX_VALUE),
+                row -> LocalDateTime.parse(row.get("transactionDate").asText()));
+            List<Long> ours = rows.stream()
+                .map(row -> row.get("id").asLong())
+                .filter(movementIds::contains)
+                .toList();
+            assertThat(ours).as("page size %d", limit).containsExactlyElementsOf(descending(movementIds));
+            
+            List<Long> productRows = new ArrayList<>();
+            String cursor = null;
+            do {
+                MockHttpServletRequestBuilder request = get("/api/stock/transactions/product/" + product.getId())
+                    .param("from", EARLY.toString())
+                    .param("to", LATE.plusSeconds(1).toString())
+                    .param("limit", String.valueOf(limit));
+                JsonNode page = page(cursor == null ? request : request.param("cursor", cursor));
+                productRows.addAll(ids(page));
+                cursor = page.get("nextCursor").isNull() ? null : page.get("nextCursor").asText();
+            } while (cursor != null);
+            assertThat(productRows).as("page size %d", limit).containsExactlyElementsOf(descending(movementIds));
+        }
+    }
+    
+    @Test
+    void productMovementsHonourTheDateRange() throws Exception {
+        String path = "/api/stock/transactions/product/" + product.getId();
+        
+        // [from, to): the MIDDLE rows only, over two pages
+        JsonNode first = page(get(path).param("from", MIDDLE.toString()).param("to", LATE.toString())
+            .param("limit", "3"));
+        assertThat(ids(first)).containsExactly(movementIds.get(6), movementIds.get(5), movementIds.get(4));
+        JsonNode second = page(get(path).param("from", MIDDLE.toString()).param("to", LATE.toString())
+            .param("limit", "3").param("cursor", first.get("nextCursor").asText()));
+        assertThat(ids(second)).containsExactly(movementIds.get(3));
+        assertThat(second.get("nextCursor").isNull()).isTrue();
+        
+        // The upper bound is exclusive, the lower one inclusive
+        assertThat(ids(page(get(path).param("to", MIDDLE.toString()).param("from", EARLY.toString()))))
+            .containsExactlyElementsOf(descending(movementIds.subList(0, 3)));
+        assertThat(ids(page(get(path).param("from", LATE.toString()).param("to", LATE.plusDays(1).toString()))))
+            .containsExactlyElementsOf(descending(movementIds.subList(7, 9)));
+    }
+    
+    // Follows nextCursor from the given position until a page reaches rows older than the 2001 ones
+    private List<JsonNode> walk(String path, int limit, PageCursor from, Function<JsonNode, LocalDateTime> date)
+            throws Exception {
+        List<JsonNode> rows = new ArrayList<>();
+        String cursor = from.encode();
+        while (cursor != null) {
+            JsonNode page = page(get(path).param("limit", String.valueOf(limit)).param("cursor", cursor));
+            page.get("items").forEach(rows::add);
+            JsonNode last = rows.isEmpty() ? null : rows.get(rows.size() - 1);
+            cursor = page.get("nextCursor").isNull() || (last != null && date.apply(last).isBefore(EARLY))
+                ? null
+                : page.get("nextCursor").asText();
+        }
+        List<String> keys = rows.stream().map(row -> row.get("id").asText()).toList();
+        assertThat(keys).doesNotHaveDuplicates();
+        assertThat(rows).isSortedAccordingTo(Comparator.comparing(date).thenComparing(row -> row.get("id").asLong())
+            .reversed());
+        return rows;
+    }
+    
+    private JsonNode page(MockHttpServletRequestBuilder request) throws Exception {
+        String body = mockMvc.perform(authorized(request))
+            .andExpect(status().isOk())
+            .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("data");
+    }
+    
+    private MockHttpServletRequestBuilder authorized(MockHttpServletRequestBuilder request) {
+        return request.header(HttpHeaders.AUTHORIZATION, "Bearer " + token);
+    }
+    
+    private static List<Long> ids(JsonNode page) {
+        List<Long> ids = new ArrayList<>();
+        page.get("items").forEach(row -> ids.add(row.get("id").asLong()));
+        return ids;
+    }
+    
+    private static List<Long> descending(List<Long> ids) {
+        return ids.stream().sorted(Comparator.reverseOrder()).toList();
+    }
+    
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private Product createProduct(String sku, int stock) {
+        Product product = new Product();
+        product.setName("Cursor Product " + sku);
+        product.setSku(sku);
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("1.00"));
+        product.setSellingPrice(new BigDecimal("2.00"));
+        product.setCurrentStock(stock);
+        product.setMinStockLevel(0);
+        return productService.createProduct(product);
+    }
+}
@@ -0,0 +1,75 @@
+package com.stockmanagement.controller;
+
+import com.stockmanagement.entity.User;
+import com.stockmanagement.security.CustomUserDetailsService;
+import com.stockmanagement.security.JwtUtil;
+import com.stockmanagement.service.UserService;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Streaming exports run with export.timeout-ms as their async timeout rather than an
+ * application-wide one.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestPropertySource(properties = "export.timeout-ms=123000")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class ExportTimeoutTest {
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
+    private String token;
+    
+    @BeforeAll
+    void setUp() {
+        User user = new User();
+        user.setUsername("export-timeout-user");
+        user.setPassword("secret");
+        user.setFullName("Export Timeout User");
+        user.setEmail("export-timeout@stockmanagement.com");
+        user.setRole("USER");
+        User created = userService.createUser(user);
+        token = jwtUtil.generateToken(userDetailsService.loadUserByUsername(created.getUsername()));
+    }
+    
+    @Test
+    void exportsUseTheExportTimeout() throws Exception {
+        for (String path : new String[] {"/api/bills/export", "/api/stock/transactions/export"}) {
+            MvcResult result = mockMvc.perform(get(path)
+                    .param("start", "2030-01-01T00:00:00")
+                    .param("end", "2030-01-02T00:00:00")
+                    .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+            assertThat(result.getRequest().getAsyncContext().getTimeout()).as(path).isEqualTo(123_000L);
+            mockMvc.perform(asyncDispatch(result)).andExpect(status().isOk());
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package com.stockmanagement.security;
+
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.RevokedTokenRepository;
+import com.stockmanagement.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.util.Date;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Token versions merge so that the higher one wins whatever order changes and refreshes arrive
+ * in, and single revoked token ids are found through the Bloom filters until their tokens have
+ * expired. Each test runs its own instance, standing in for another node.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class TokenRevocationsTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    private static final long HOUR = 3_600_000L;
+    
+    @Autowired
+    private RevokedTokenRepository revokedTokenRepository;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Test
+    void higherTokenVersionWinsWhateverTheOrder() {
+        TokenRevocations revocations = revocations(HOUR);
+        User user = createUser();
+        
+        revocations.userChanged(state(user, 3, true));
+        // A slower transaction's older change arrives afterwards
+        revocations.userChanged(state(user, 2, true));
+        assertThat(revocations.isRevoked(user.getId(), 2, null)).isTrue();
+        assertThat(revocations.isRevoked(user.getId(), 3, null)).isFalse();
+        
+        // A refresh that read the row before the change committed sees version 0 and changes nothing
+        revocations.refresh();
+        assertThat(revocations.isRevoked(user.getId(), 2, null)).isTrue();
+        assertThat(revocations.isRevoked(user.getId(), 3, null)).isFalse();
+    }
+    
+    @Test
+    void deactivationRevokesEveryVersionUntilReactivated() {
+        TokenRevocations revocations = revocations(HOUR);
+        User user = createUser();
+        
+        revocations.userChanged(state(user, 1, false));
+        assertThat(revocations.isRevoked(user.getId(), 1, null)).isTrue();
+        assertThat(revocations.isRevoked(user.getId(), 100, null)).isTrue();
+        
+        // Same version, so the incoming reactivation wins the tie
+        revocations.userChanged(state(user, 1, true));
+        assertThat(revocations.isRevoked(user.getId(), 1, null)).isFalse();
+        assertThat(revocations.isRevoked(user.getId(), 0, null)).isTrue();
+    }
+    
+    @Test
+    void refreshPicksUpVersionsBumpedElsewhere() {
+        TokenRevocations revocations = revocations(HOUR);
+        User user = createUser();
+        assertThat(revocations.isRevoked(user.getId(), 0, null)).isFalse();
+        
+        new JdbcTemplate(dataSource).update("UPDATE users SET token_version = 2 WHERE id = ?", user.getId());
+        revocations.refresh();
+        
+        assertThat(revocations.isRevoked(user.getId(), 1, null)).isTrue();
+        assertThat(revocations.isRevoked(user.getId(), 2, null)).isFalse();
+        // A stale local event with a lower version does not roll the refresh back
+        revocations.userChanged(state(user, 1, true));
+        assertThat(revocations.isRevoked(user.getId(), 1, null)).isTrue();
+    }
+    
+    @Test
+    void revokedTokenIdsAreFoundLocallyAndOnOtherInstances() {
+        TokenRevocations revocations = revocations(HOUR);
+        String tokenId = "jti-" + SEQUENCE.incrementAndGet();
+        
+        revocations.revokeToken(tokenId, new Date(System.currentTimeMillis() + HOUR));
+        
+        assertThat(revocations.isRevoked(1L, 0, tokenId)).isTrue();
+        assertThat(revocations.isRevoked(1L, 0, tokenId + "-other")).isFalse();
+        TokenRevocations other = revocations(HOUR);
+        assertThat(other.isRevoked(1L, 0, tokenId)).isTrue();
+    }
+    
+    @Test
+    void revokedTokenIdsOutliveOneRotationButNotTwo() throws Exception {
+        long lifetime = 200;
+        TokenRevocations revocations = revocations(lifetime);
+        String tokenId = "jti-" + SEQUENCE.incrementAndGet();
+        // Its token has expired by the first rotation, which deletes the row
+        revocations.revokeToken(tokenId, new Date(System.currentTimeMillis() + lifetime / 2));
+        
+        Thread.sleep(lifetime + 50);
+        revocations.refresh();
+        assertThat(revocations.isRevoked(1L, 0, tokenId)).isTrue();
+        
+        Thread.sleep(lifetime + 50);
+        revocations.refresh();
+        assertThat(revocations.isRevoked(1L, 0, tokenId)).isFalse();
+    }
+    
+    private TokenRevocations revocations(long tokenLifetimeMillis) {
+        TokenRevocations revocations = new TokenRevocations(revokedTokenRepository, dataSource, tokenLifetimeMillis,
+            1000, 0.001);
+        revocations.load();
+        return revocations;
+    }
+    
+    private User createUser() {
+        User user = new User();
+        user.setUsername("revocations-" + SEQUENCE.incrementAndGet());
+        user.setPassword("secret");
+        user.setFullName("Revocations User");
+        user.setEmail(user.getUsername() + "@stockmanagement.com");
+        user.setRole("USER");
+        return userService.createUser(user);
+    }
+    
+    // The user as a committed change leaves it, without touching the database
+    private static User state(User user, int tokenVersion, boolean active) {
+        User changed = new User();
+        changed.setId(user.getId());
+        changed.setTokenVersion(tokenVersion);
+        changed.setActive(active);
+        return changed;
+    }
+}
@@ -0,0 +1,94 @@
+package com.stockmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmanagement.entity.ArchiveSegment;
+import com.stockmanagement.repository.ArchiveSegmentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * A missing archive directory is created, and only stops startup once archived segments should
+ * be readable from it.
+ */
+class ArchiveStoreTest {
+    @TempDir
+    Path temp;
+    
+    @Test
+    void createsAMissingDirectoryWhenNothingIsArchived() {
+        ArchiveSegmentRepository repository = mock(ArchiveSegmentRepository.class);
+        Path directory = temp.resolve("data/archive");
+        
+        ArchiveStore store = new ArchiveStore(repository, new ObjectMapper(), directory.toString());
+        store.checkSegments();
+        
+        assertThat(directory).isDirectory();
+    }
+    
+    @Test
+    void failsWhenAnArchivedSegmentIsNotInTheDirectory() throws Exception {
+        ArchiveSegmentRepository repository = mock(ArchiveSegmentRepository.class);
+        ArchiveSegment segment = new ArchiveSegment(1L, ArchiveStore.BILLS, LocalDate.of(2020, 1, 1),
+            LocalDate.of(2020, 2, 1), "bills/2020-01.ndjson.gz", "ARCHIVED", 10L, 100L, LocalDateTime.now(),
+            LocalDateTime.now(), LocalDateTime.now());
+        when(repository.findByDatasetAndStatusNotOrderByPeriodStart(anyString(), eq("WRITING"))).thenReturn(List.of());
+        when(repository.findByDatasetAndStatusNotOrderByPeriodStart(ArchiveStore.BILLS, "WRITING"))
+            .thenReturn(List.of(segment));
+        
+        ArchiveStore store = new ArchiveStore(repository, new ObjectMapper(), temp.toString());
+        assertThatThrownBy(store::checkSegments).isInstanceOf(IllegalStateException.class)
+            .hasMessageContaining("bills/2020-01.ndjson.gz");
+        
+        Files.createDirectories(temp.resolve("bills"));
+        Files.createFile(temp.resolve("bills/2020-01.ndjson.gz"));
+        store.checkSegments();
+    }
+    
+    @Test
+    void readsArchivedAmountsWithTheirScale() throws Exception {
+        ArchiveSegmentRepository repository = mock(ArchiveSegmentRepository.class);
+        ArchiveSegment segment = new ArchiveSegment(1L, ArchiveStore.BILLS, LocalDate.of(2020, 1, 1),
+            LocalDate.of(2020, 2, 1), "bills/2020-01.ndjson.gz", "ARCHIVED", 1L, 100L, LocalDateTime.now(),
+            LocalDateTime.now(), LocalDateTime.now());
+        when(repository.findByDatasetAndStatusNotOrderByPeriodStart(anyString(), eq("WRITING"))).thenReturn(List.of());
+        Files.createDirectories(temp.resolve("bills"));
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp.resolve(segment.getPath())))) {
+            out.write("{\"id\":1,\"total_amount\":10.50}\n".getBytes(StandardCharsets.UTF_8));
+        }
+        
+        ArchiveStore store = new ArchiveStore(repository, new ObjectMapper(), temp.toString());
+        List<Object> amounts = new ArrayList<>();
+        store.readSegment(segment, (columns, values) -> amounts.add(values[1]));
+        
+        assertThat(amounts).containsExactly(new BigDecimal("10.50"));
+    }
+    
+    @Test
+    void rejectsRangesReachingIntoArchivedMonths() {
+        ArchiveSegmentRepository repository = mock(ArchiveSegmentRepository.class);
+        when(repository.findHotFrom(ArchiveStore.BILLS)).thenReturn(LocalDate.of(2020, 2, 1));
+        
+        ArchiveStore store = new ArchiveStore(repository, new ObjectMapper(), temp.toString());
+        store.requireHot(ArchiveStore.BILLS, LocalDateTime.of(2020, 2, 1, 0, 0), "Bills");
+        assertThatThrownBy(() -> store.requireHot(ArchiveStore.BILLS, LocalDateTime.of(2020, 1, 31, 23, 0), "Bills"))
+            .isInstanceOf(IllegalArgumentException.class).hasMessage("Bills before 2020-02-01 is archived");
+    }
+}
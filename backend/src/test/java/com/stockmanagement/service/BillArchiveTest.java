@@ -0,0 +1,115 @@
+package com.stockmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmanagement.dto.BillResponse;
+import com.stockmanagement.entity.ArchiveSegment;
+import com.stockmanagement.repository.ArchiveSegmentRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Archived bills are found by number in the mapped lookup files, months archived since the
+ * last refresh only after the next one, and a miss never goes back to the database.
+ */
+class BillArchiveTest {
+    @TempDir
+    Path temp;
+    
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    
+    @Test
+    void findsArchivedBillsInTheMappedLookupFiles() throws Exception {
+        ArchiveSegmentRepository repository = mock(ArchiveSegmentRepository.class);
+        ArchiveSegment january = segment(1L, LocalDate.of(2020, 1, 1), List.of(
+            bill(1, "BILL-20200105-0001", "2020-01-05T10:00:00", 2),
+            bill(2, "BILL-20200105-0002", "2020-01-05T11:00:00", 1),
+            bill(3, "BILL-20200120-0001", "2020-01-20T09:30:00", 3)));
+        when(repository.findByDatasetAndStatusNotOrderByPeriodStart(ArchiveStore.BILLS, "WRITING"))
+            .thenReturn(List.of(january));
+        BillArchive archive = new BillArchive(new ArchiveStore(repository, objectMapper, temp.toString()), objectMapper);
+        
+        assertThat(archive.refresh()).isTrue();
+        
+        BillResponse bill = archive.find("BILL-20200105-0002").orElseThrow();
+        assertThat(bill.getId()).isEqualTo(2L);
+        assertThat(bill.getBillDate()).isEqualTo(LocalDateTime.of(2020, 1, 5, 11, 0));
+        assertThat(bill.getTotal()).isEqualTo(new BigDecimal("10.50"));
+        assertThat(bill.getItems()).hasSize(1);
+        assertThat(archive.find("BILL-20200120-0001").orElseThrow().getItems()).hasSize(3);
+        // Inside the month's range but never issued, and outside every archived month
+        assertThat(archive.find("BILL-20200110-0001")).isEmpty();
+        assertThat(archive.find("BILL-20210101-0001")).isEmpty();
+        assertThat(temp.resolve("bills/2020-01.lookup")).exists();
+    }
+    
+    @Test
+    void mapsNewMonthsOnlyOnRefresh() throws Exception {
+        ArchiveSegmentRepository repository = mock(ArchiveSegmentRepository.class);
+        ArchiveSegment january = segment(1L, LocalDate.of(2020, 1, 1), List.of(
+            bill(1, "BILL-20200105-0001", "2020-01-05T10:00:00", 1)));
+        ArchiveSegment february = segment(2L, LocalDate.of(2020, 2, 1), List.of(
+            bill(4, "BILL-20200203-0001", "2020-02-03T10:00:00", 1)));
+        when(repository.findByDatasetAndStatusNotOrderByPeriodStart(ArchiveStore.BILLS, "WRITING"))
+            .thenReturn(List.of(january))
+            .thenReturn(List.of(january, february));
+        BillArchive archive = new BillArchive(new ArchiveStore(repository, objectMapper, temp.toString()), objectMapper);
+        archive.refresh();
+        
+        // Misses read what is mapped and never query the segments
+        for (int i = 0; i < 100; i++) {
+            assertThat(archive.find("BILL-20200203-0001")).isEmpty();
+        }
+        verify(repository, times(1)).findByDatasetAndStatusNotOrderByPeriodStart(ArchiveStore.BILLS, "WRITING");
+        
+        assertThat(archive.refresh()).isTrue();
+        assertThat(archive.find("BILL-20200203-0001")).isPresent();
+        assertThat(archive.find("BILL-20200105-0001")).isPresent();
+        // Nothing new to map
+        assertThat(archive.refresh()).isFalse();
+    }
+    
+    private ArchiveSegment segment(long id, LocalDate month, List<List<String>> bills) throws Exception {
+        String path = "bills/" + month.toString().substring(0, 7) + ".ndjson.gz";
+        Files.createDirectories(temp.resolve("bills"));
+        try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temp.resolve(path)))) {
+            for (List<String> rows : bills) {
+                for (String row : rows) {
+                    out.write((row + "\n").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+        }
+        return new ArchiveSegment(id, ArchiveStore.BILLS, month, month.plusMonths(1), path, "ARCHIVED", 0L, 0L,
+            LocalDateTime.now(), LocalDateTime.now(), LocalDateTime.now());
+    }
+    
+    // One segment row per line, with the bill columns repeated, as the archiver writes them
+    private static List<String> bill(long id, String number, String date, int lines) {
+        List<String> rows = new ArrayList<>();
+        for (int line = 1; line <= lines; line++) {
+            rows.add("{\"bill_id\":" + id + ",\"bill_number\":\"" + number + "\",\"bill_date\":\"" + date + "\"," +
+                "\"customer_name\":\"Walk-in\",\"customer_phone\":null,\"customer_email\":null," +
+                "\"subtotal\":10.00,\"tax\":0.50,\"discount\":0.00,\"total\":10.50,\"payment_method\":\"CASH\"," +
+                "\"status\":\"COMPLETED\",\"user_id\":1,\"cashier_name\":\"Cashier\",\"location_id\":1," +
+                "\"item_id\":" + (id * 10 + line) + ",\"product_id\":" + line + ",\"sku\":\"SKU-" + line + "\"," +
+                "\"product_name\":\"Product " + line + "\",\"quantity\":1,\"unit_price\":10.00,\"line_total\":10.00}");
+        }
+        return rows;
+    }
+}
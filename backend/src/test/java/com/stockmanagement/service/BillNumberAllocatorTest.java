@@ -0,0 +1,70 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.repository.BillRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A day's first block continues after the highest number already issued that day, however many
+ * numbers earlier blocks skipped.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class BillNumberAllocatorTest {
+    
+    @Autowired
+    private DataSourceProperties dataSourceProperties;
+    
+    @Autowired
+    private BillRepository billRepository;
+    
+    @Test
+    void firstBlockContinuesAfterTheHighestIssuedNumber() {
+        LocalDate day = LocalDate.of(2031, 3, 1);
+        // Two bills, with the numbers between them skipped
+        bill("BILL-20310301-0003", day);
+        bill("BILL-20310301-0045", day);
+        
+        BillNumberAllocator allocator = new BillNumberAllocator(dataSourceProperties, 20);
+        try {
+            assertThat(allocator.nextBillNumber(day)).isEqualTo("BILL-20310301-0046");
+            assertThat(allocator.nextBillNumber(day)).isEqualTo("BILL-20310301-0047");
+        } finally {
+            allocator.close();
+        }
+    }
+    
+    @Test
+    void fiveDigitSuffixesSortAboveFourDigitOnes() {
+        LocalDate day = LocalDate.of(2031, 3, 2);
+        bill("BILL-20310302-9999", day);
+        bill("BILL-20310302-10000", day);
+        
+        BillNumberAllocator allocator = new BillNumberAllocator(dataSourceProperties, 20);
+        try {
+            assertThat(allocator.nextBillNumber(day)).isEqualTo("BILL-20310302-10001");
+            // Other days are numbered from their own bills
+            assertThat(allocator.nextBillNumber(day.plusDays(1))).isEqualTo("BILL-20310303-0001");
+        } finally {
+            allocator.close();
+        }
+    }
+    
+    private void bill(String number, LocalDate day) {
+        Bill bill = new Bill();
+        bill.setBillNumber(number);
+        bill.setBillDate(day.atTime(10, 0));
+        bill.setCustomerName("Walk-in");
+        bill.setPaymentMethod("CASH");
+        bill.setStatus("COMPLETED");
+        billRepository.save(bill);
+    }
+}
@@ -0,0 +1,72 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.CatalogChanges;
+import com.stockmanagement.entity.Product;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The catalog version and the per-product versions are shared through the database, so an
+ * instance that made no change itself still serves the new ETag and the delta.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class CatalogVersionsTest {
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private CatalogVersions catalogVersions;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    @Test
+    void otherInstanceSeesChangesAndDeletes() {
+        CatalogVersions otherInstance = new CatalogVersions(dataSource, transactionManager, entityManagerFactory);
+        otherInstance.init();
+        long before = otherInstance.current();
+        
+        Product product = new Product();
+        product.setName("Versioned Product");
+        product.setSku("VERSIONED-1");
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("1.00"));
+        product.setSellingPrice(new BigDecimal("2.00"));
+        product = productService.createProduct(product);
+        
+        long afterCreate = otherInstance.current();
+        assertThat(afterCreate).isGreaterThan(before).isEqualTo(catalogVersions.current());
+        assertThat(otherInstance.canDiff(before, afterCreate)).isTrue();
+        assertThat(otherInstance.changedSince(before)).contains(product.getId());
+        
+        productService.deleteProduct(product.getId());
+        
+        long afterDelete = otherInstance.current();
+        assertThat(afterDelete).isGreaterThan(afterCreate);
+        assertThat(otherInstance.changedSince(afterCreate)).doesNotContain(product.getId());
+        assertThat(otherInstance.deletedSince(afterCreate)).containsExactly(product.getId());
+        
+        CatalogChanges changes = productService.getChangesSince(before);
+        assertThat(changes.getFullSync()).isFalse();
+        assertThat(changes.getVersion()).isEqualTo(afterDelete);
+        assertThat(changes.getDeletedIds()).contains(product.getId());
+        assertThat(productService.getChangesSince(afterDelete + 1).getFullSync()).isTrue();
+    }
+}
@@ -0,0 +1,195 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.ReorderSuggestion;
+import com.stockmanagement.entity.DemandForecast;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.repository.DemandForecastRepository;
+import com.stockmanagement.repository.ProductRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * The smoothed averages against hand-computed values. Each test runs its own forecast with a
+ * 7-day lead time, 14 coverage days and z = 1.65, and an alpha that keeps the arithmetic exact.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class DemandForecastServiceTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    private static final double EPSILON = 1e-9;
+    
+    @Autowired
+    private DemandForecastRepository forecastRepository;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private ArchiveStore archiveStore;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private final List<DemandForecastService> forecasts = new ArrayList<>();
+    
+    @AfterEach
+    void close() {
+        forecasts.forEach(DemandForecastService::close);
+    }
+    
+    @Test
+    void firstDaySeedsTheMeanAndDaysWithoutSalesFoldInAsZero() {
+        DemandForecastService forecast = forecast(0.5);
+        Product product = createProduct(19);
+        LocalDate today = LocalDate.now();
+        
+        forecast.recorded(List.of(sale(product, today.minusDays(4), 4), sale(product, today.minusDays(3), 6),
+            sale(product, today, 3)));
+        forecast.flush();
+        
+        // 4 seeds the mean; 6: mean 4 + 0.5 * 2 = 5, variance 0.5 * (0 + 2 * 1) = 1;
+        // two empty days: mean 2.5, variance 0.5 * (1 + 5 * 2.5) = 6.75;
+        // then mean 1.25, variance 0.5 * (6.75 + 2.5 * 1.25) = 4.9375. Today's 3 is still open.
+        DemandForecast row = forecastRepository.findById(product.getId()).orElseThrow();
+        assertThat(row.getCurrentDay()).isEqualTo(today);
+        assertThat(row.getCurrentQuantity()).isEqualTo(3);
+        assertThat(row.getMeanDaily()).isCloseTo(1.25, within(EPSILON));
+        assertThat(row.getVariance()).isCloseTo(4.9375, within(EPSILON));
+        assertThat(row.getDaysObserved()).isEqualTo(4);
+    }
+    
+    @Test
+    void alphaWeightsTheLatestDay() {
+        LocalDate today = LocalDate.now();
+        DemandForecastService slow = forecast(0.1);
+        Product slowProduct = createProduct(0);
+        slow.recorded(List.of(sale(slowProduct, today.minusDays(2), 4), sale(slowProduct, today.minusDays(1), 6),
+            sale(slowProduct, today, 1)));
+        slow.flush();
+        DemandForecastService fast = forecast(0.5);
+        Product fastProduct = createProduct(0);
+        fast.recorded(List.of(sale(fastProduct, today.minusDays(2), 4), sale(fastProduct, today.minusDays(1), 6),
+            sale(fastProduct, today, 1)));
+        fast.flush();
+        
+        // mean 4 + alpha * 2, variance (1 - alpha) * (0 + 2 * alpha * 2)
+        DemandForecast slowRow = forecastRepository.findById(slowProduct.getId()).orElseThrow();
+        assertThat(slowRow.getMeanDaily()).isCloseTo(4.2, within(EPSILON));
+        assertThat(slowRow.getVariance()).isCloseTo(0.36, within(EPSILON));
+        DemandForecast fastRow = forecastRepository.findById(fastProduct.getId()).orElseThrow();
+        assertThat(fastRow.getMeanDaily()).isCloseTo(5.0, within(EPSILON));
+        assertThat(fastRow.getVariance()).isCloseTo(1.0, within(EPSILON));
+    }
+    
+    @Test
+    void lateSalesAddTheirWeightedShareToAClosedDay() {
+        DemandForecastService forecast = forecast(0.5);
+        Product product = createProduct(0);
+        LocalDate today = LocalDate.now();
+        forecast.recorded(List.of(sale(product, today.minusDays(4), 4), sale(product, today.minusDays(3), 6),
+            sale(product, today, 3)));
+        forecast.flush();
+        
+        // Two days before the current one closed one day ago: 0.5 * 0.5^1 * 2 = 0.5, the same
+        // mean as folding 4, 6, 2, 0 from scratch
+        forecast.recorded(List.of(sale(product, today.minusDays(2), 2)));
+        forecast.flush();
+        
+        DemandForecast row = forecastRepository.findById(product.getId()).orElseThrow();
+        assertThat(row.getMeanDaily()).isCloseTo(1.75, within(EPSILON));
+        assertThat(row.getVariance()).isCloseTo(4.9375, within(EPSILON));
+        assertThat(row.getDaysObserved()).isEqualTo(4);
+    }
+    
+    @Test
+    void reorderPointRoundsUpTheLeadTimeDemandAndSafetyStock() {
+        DemandForecastService forecast = forecast(0.5);
+        Product product = createProduct(19);
+        LocalDate today = LocalDate.now();
+        forecast.recorded(List.of(sale(product, today.minusDays(4), 4), sale(product, today.minusDays(3), 6),
+            sale(product, today, 3)));
+        forecast.flush();
+        
+        // Mean 1.25 and variance 4.9375 as above: 1.25 * 7 + 1.65 * sqrt(4.9375) * sqrt(7)
+        // = 8.75 + 9.700 = 18.45 -> 19; order up to 19 + ceil(1.25 * 14 = 17.5) = 37
+        ReorderSuggestion suggestion = forecast.getSuggestion(product.getId());
+        assertThat(suggestion.getDailyVelocity()).isEqualTo(1.25);
+        assertThat(suggestion.getDemandStdDev()).isEqualTo(2.222);
+        assertThat(suggestion.getDaysObserved()).isEqualTo(4);
+        assertThat(suggestion.getReorderPoint()).isEqualTo(19);
+        assertThat(suggestion.getOrderUpToLevel()).isEqualTo(37);
+        // Stock at the reorder point already reorders
+        assertThat(suggestion.getNeedsReorder()).isTrue();
+        assertThat(suggestion.getSuggestedOrderQuantity()).isEqualTo(18);
+    }
+    
+    @Test
+    void suggestionsCloseTheDaysSinceTheLastSale() {
+        DemandForecastService forecast = forecast(0.5);
+        Product product = createProduct(100);
+        LocalDate today = LocalDate.now();
+        forecast.recorded(List.of(sale(product, today.minusDays(3), 4)));
+        forecast.flush();
+        
+        // 4 seeds the mean, then two empty days: mean 2, variance 0.5 * (0 + 4 * 2) = 4;
+        // mean 1, variance 0.5 * (4 + 2 * 1) = 3. Reorder point 7 + 1.65 * sqrt(3) * sqrt(7)
+        // = 7 + 7.561 -> 15, order up to 15 + 14 = 29
+        ReorderSuggestion suggestion = forecast.getSuggestion(product.getId());
+        assertThat(suggestion.getDailyVelocity()).isEqualTo(1.0);
+        assertThat(suggestion.getDemandStdDev()).isEqualTo(1.732);
+        assertThat(suggestion.getDaysObserved()).isEqualTo(3);
+        assertThat(suggestion.getReorderPoint()).isEqualTo(15);
+        assertThat(suggestion.getOrderUpToLevel()).isEqualTo(29);
+        assertThat(suggestion.getNeedsReorder()).isFalse();
+        assertThat(suggestion.getSuggestedOrderQuantity()).isZero();
+        // Read only: the row still holds the open day
+        assertThat(forecastRepository.findById(product.getId())).get()
+            .extracting(DemandForecast::getDaysObserved).isEqualTo(0);
+    }
+    
+    private DemandForecastService forecast(double alpha) {
+        DemandForecastService forecast = new DemandForecastService(forecastRepository, archiveStore, dataSource,
+            transactionManager, alpha, 7, 14, 1.65, 1, 1000);
+        forecasts.add(forecast);
+        return forecast;
+    }
+    
+    private Product createProduct(int stock) {
+        Product product = new Product();
+        product.setName("Forecast Product");
+        product.setSku("FORECAST-" + SEQUENCE.incrementAndGet());
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("1.00"));
+        product.setSellingPrice(new BigDecimal("2.00"));
+        product.setCurrentStock(stock);
+        product.setMinStockLevel(0);
+        return productRepository.save(product);
+    }
+    
+    private static StockTransaction sale(Product product, LocalDate day, int quantity) {
+        StockTransaction transaction = new StockTransaction();
+        transaction.setProduct(product);
+        transaction.setTransactionType("OUT");
+        transaction.setQuantity(quantity);
+        transaction.setTransactionDate(day.atTime(12, 0));
+        return transaction;
+    }
+}
@@ -0,0 +1,120 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.BillItemRequest;
+import com.stockmanagement.dto.BillRequest;
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * CSV exports always start with the column line: an empty range gets the same header as one
+ * with rows, and nothing else.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ExportServiceTest {
+    // Nothing else in the test database is dated in these months
+    private static final LocalDateTime EMPTY_START = LocalDateTime.of(1995, 1, 1, 0, 0);
+    private static final LocalDateTime EMPTY_END = LocalDateTime.of(1995, 1, 31, 23, 59);
+    private static final LocalDateTime FILLED_START = LocalDateTime.of(1995, 3, 1, 0, 0);
+    private static final LocalDateTime FILLED_END = LocalDateTime.of(1995, 3, 31, 23, 59);
+    
+    @Autowired
+    private ExportService exportService;
+    
+    @Autowired
+    private BillingService billingService;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Test
+    void emptyRangesStillGetTheHeader() throws Exception {
+        Product product = createProduct();
+        Bill bill = createBill(product);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        LocalDateTime filled = LocalDateTime.of(1995, 3, 10, 12, 0);
+        jdbcTemplate.update("UPDATE bills SET bill_date = ? WHERE id = ?", filled, bill.getId());
+        jdbcTemplate.update("UPDATE stock_transactions SET transaction_date = ? WHERE product_id = ?", filled,
+            product.getId());
+        
+        String emptyBills = exportBills(EMPTY_START, EMPTY_END);
+        String filledBills = exportBills(FILLED_START, FILLED_END);
+        assertThat(emptyBills).startsWith("bill_id,bill_number,bill_date,").endsWith(",line_total\r\n");
+        assertThat(emptyBills.split("\r\n")).hasSize(1);
+        assertThat(filledBills.split("\r\n")).hasSize(2);
+        assertThat(filledBills).startsWith(emptyBills);
+        
+        String emptyMovements = exportStockTransactions(EMPTY_START, EMPTY_END);
+        String filledMovements = exportStockTransactions(FILLED_START, FILLED_END);
+        assertThat(emptyMovements).startsWith("id,transaction_date,").endsWith(",notes\r\n");
+        assertThat(emptyMovements.split("\r\n")).hasSize(1);
+        assertThat(filledMovements.split("\r\n")).hasSizeGreaterThan(1);
+        assertThat(filledMovements).startsWith(emptyMovements);
+        
+        // NDJSON has no header, so an empty range stays empty
+        ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+        exportService.exportBills(EMPTY_START, EMPTY_END, ExportFormat.NDJSON, false, ndjson);
+        assertThat(ndjson.size()).isZero();
+    }
+    
+    private String exportBills(LocalDateTime start, LocalDateTime end) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportBills(start, end, ExportFormat.CSV, false, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+    
+    private String exportStockTransactions(LocalDateTime start, LocalDateTime end) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.exportStockTransactions(start, end, ExportFormat.CSV, false, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+    
+    private Product createProduct() {
+        Product product = new Product();
+        product.setName("Export Product");
+        product.setSku("EXPORT-1");
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("1.00"));
+        product.setSellingPrice(new BigDecimal("2.00"));
+        product.setCurrentStock(10);
+        product.setMinStockLevel(0);
+        return productService.createProduct(product);
+    }
+    
+    private Bill createBill(Product product) {
+        User user = new User();
+        user.setUsername("export-cashier");
+        user.setPassword("secret");
+        user.setFullName("Export Cashier");
+        user.setEmail("export-cashier@stockmanagement.com");
+        user.setRole("USER");
+        User cashier = userService.createUser(user);
+        
+        BillRequest request = new BillRequest();
+        request.setCustomerName("Export Customer");
+        request.setPaymentMethod("CASH");
+        request.setItems(List.of(new BillItemRequest(product.getId(), 1)));
+        return billingService.createBill(request, cashier);
+    }
+}
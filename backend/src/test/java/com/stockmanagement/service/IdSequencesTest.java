@@ -0,0 +1,80 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.StockUpdateRequest;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A database from before the switch to sequences: rows with IDENTITY ids and a sequence that
+ * still starts at 1. Startup must move the sequence past the existing ids.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class IdSequencesTest {
+    @Autowired
+    private IdSequences idSequences;
+    
+    @Autowired
+    private StockService stockService;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Test
+    void advancesSequencesPastExistingIds() {
+        User user = new User();
+        user.setUsername("sequence-cashier");
+        user.setPassword("secret");
+        user.setFullName("Sequence Cashier");
+        user.setEmail("sequence@stockmanagement.com");
+        user.setRole("USER");
+        User cashier = userRepository.save(user);
+        Product product = new Product();
+        product.setName("Sequenced Product");
+        product.setSku("SEQ-1");
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("1.00"));
+        product.setSellingPrice(new BigDecimal("2.00"));
+        product.setCurrentStock(10);
+        product.setMinStockLevel(0);
+        product = productService.createProduct(product);
+        StockTransaction transaction = stockService.updateStock(
+            new StockUpdateRequest(product.getId(), 1, "IN", "Sequence test", null), cashier);
+        
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.update("UPDATE stock_transactions SET id = 5000 WHERE id = ?", transaction.getId());
+        jdbcTemplate.execute("ALTER SEQUENCE stock_transaction_seq RESTART WITH 1");
+        
+        idSequences.advance();
+        
+        Long next = jdbcTemplate.queryForObject(
+            "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'STOCK_TRANSACTION_SEQ'",
+            Long.class);
+        assertThat(next).isEqualTo(5051);
+        
+        // Already ahead: left alone
+        jdbcTemplate.execute("ALTER SEQUENCE stock_transaction_seq RESTART WITH 9000");
+        idSequences.advance();
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'STOCK_TRANSACTION_SEQ'",
+            Long.class)).isEqualTo(9000);
+    }
+}
@@ -0,0 +1,163 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.ApiResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Duplicates of a keyed request run it once, a request that failed before committing runs
+ * again on retry, and one that failed after committing does not.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class IdempotencyStoreTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    
+    @Autowired
+    private IdempotencyStore idempotencyStore;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Test
+    void concurrentDuplicatesRunOnce() throws Exception {
+        String key = "concurrent-" + SEQUENCE.incrementAndGet();
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ResponseEntity<ApiResponse<Integer>>>> responses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                responses.add(executor.submit(() -> {
+                    start.await();
+                    return idempotencyStore.execute(key, "test", "request", () -> {
+                        sleep(100);
+                        return ResponseEntity.ok(ApiResponse.success(runs.incrementAndGet()));
+                    });
+                }));
+            }
+            start.countDown();
+            int replayed = 0;
+            for (Future<ResponseEntity<ApiResponse<Integer>>> response : responses) {
+                ResponseEntity<ApiResponse<Integer>> result = response.get(10, TimeUnit.SECONDS);
+                assertThat(result.getBody().getData()).isEqualTo(1);
+                if (result.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER)) {
+                    replayed++;
+                }
+            }
+            assertThat(runs).hasValue(1);
+            assertThat(replayed).isEqualTo(7);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    @Test
+    void retryRunsAgainWhenNothingCommitted() {
+        String key = "uncommitted-" + SEQUENCE.incrementAndGet();
+        AtomicInteger runs = new AtomicInteger();
+        TransactionTemplate readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        Supplier<ResponseEntity<ApiResponse<Integer>>> failing = () -> {
+            runs.incrementAndGet();
+            // A committed read-only transaction changed nothing
+            readOnly.executeWithoutResult(status -> { });
+            return ResponseEntity.badRequest().body(ApiResponse.error("Insufficient stock"));
+        };
+        
+        idempotencyStore.execute(key, "test", "request", failing);
+        assertThatThrownBy(() -> idempotencyStore.execute(key, "test", "request", () -> {
+            runs.incrementAndGet();
+            throw new IllegalStateException("failed");
+        })).hasMessage("failed");
+        ResponseEntity<ApiResponse<Integer>> retried = idempotencyStore.execute(key, "test", "request",
+            () -> ResponseEntity.ok(ApiResponse.success(runs.incrementAndGet())));
+        
+        assertThat(retried.getBody().getData()).isEqualTo(3);
+        assertThat(retried.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER)).isFalse();
+    }
+    
+    @Test
+    void retryDoesNotRunAgainAfterACommit() {
+        String key = "committed-" + SEQUENCE.incrementAndGet();
+        AtomicInteger runs = new AtomicInteger();
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        
+        assertThatThrownBy(() -> idempotencyStore.execute(key, "test", "request", () -> {
+            transaction.executeWithoutResult(status -> runs.incrementAndGet());
+            throw new IllegalStateException("Response could not be written");
+        })).hasMessage("Response could not be written");
+        ResponseEntity<ApiResponse<Integer>> retried = idempotencyStore.execute(key, "test", "request",
+            () -> ResponseEntity.ok(ApiResponse.success(runs.incrementAndGet())));
+        
+        assertThat(runs).hasValue(1);
+        assertThat(retried.getStatusCode().is5xxServerError()).isTrue();
+        assertThat(retried.getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER)).isTrue();
+    }
+    
+    @Test
+    void inFlightKeysAreNotEvictedByTheSizeBound() throws Exception {
+        IdempotencyStore store = new IdempotencyStore(1, 3600, 10);
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Supplier<ResponseEntity<ApiResponse<Integer>>> slow = () -> {
+                runs.incrementAndGet();
+                running.countDown();
+                await(finish);
+                return ResponseEntity.ok(ApiResponse.success(runs.get()));
+            };
+            Future<ResponseEntity<ApiResponse<Integer>>> first = executor.submit(() -> store.execute("slow", "test", "request", slow));
+            running.await(10, TimeUnit.SECONDS);
+            // More finished keys than the bound holds
+            for (int i = 0; i < 5; i++) {
+                store.execute("other-" + i, "test", "request", () -> ResponseEntity.ok(ApiResponse.success(0)));
+            }
+            Future<ResponseEntity<ApiResponse<Integer>>> duplicate = executor.submit(() -> store.execute("slow", "test", "request", slow));
+            Thread.sleep(100);
+            finish.countDown();
+            
+            assertThat(first.get(10, TimeUnit.SECONDS).getBody().getData()).isEqualTo(1);
+            assertThat(duplicate.get(10, TimeUnit.SECONDS).getHeaders().containsKey(IdempotencyStore.REPLAYED_HEADER)).isTrue();
+            assertThat(runs).hasValue(1);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.ImportError;
+import com.stockmanagement.dto.ImportResult;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.ProductRepository;
+import com.stockmanagement.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * A row the database refuses in the middle of a chunk fails alone: the rows around it are
+ * still imported and the error names its line.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ImportServiceTest {
+    @Autowired
+    private ImportService importService;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private StockTotals stockTotals;
+    
+    @Test
+    void reportsOnlyTheRowThatFailsInTheDatabase() throws Exception {
+        User user = new User();
+        user.setUsername("importer");
+        user.setPassword("secret");
+        user.setFullName("Importer");
+        user.setEmail("importer@stockmanagement.com");
+        user.setRole("ADMIN");
+        user = userRepository.save(user);
+        
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= 9; i++) {
+            // Passes validation, but the name is longer than the column
+            String name = i == 5 ? "x".repeat(300) : "Imported " + i;
+            lines.add("{\"sku\":\"IMP-" + i + "\",\"name\":\"" + name + "\",\"category\":\"Test\"," +
+                "\"purchasePrice\":1.00,\"sellingPrice\":2.00,\"transactionType\":\"IN\",\"quantity\":" + i + "}");
+        }
+        
+        ImportResult result = importService.importRows(
+            new ByteArrayInputStream(String.join("\n", lines).getBytes(StandardCharsets.UTF_8)), ExportFormat.NDJSON, user);
+        
+        assertThat(result.getRowsRead()).isEqualTo(9);
+        assertThat(result.getRowsFailed()).isEqualTo(1);
+        assertThat(result.getErrors()).extracting(ImportError::getRow).containsExactly(5L);
+        assertThat(result.getErrors()).extracting(ImportError::getSku).containsExactly("IMP-5");
+        assertThat(result.getProductsCreated()).isEqualTo(8);
+        assertThat(result.getMovementsApplied()).isEqualTo(8);
+        assertThat(productRepository.findBySku("IMP-5")).isEmpty();
+        stockTotals.flush();
+        assertThat(productRepository.findBySku("IMP-9").orElseThrow().getCurrentStock()).isEqualTo(9);
+    }
+}
@@ -0,0 +1,168 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.byLessThan;
+
+/**
+ * Login times are written in one batch per flush, and only the users written drop out of the
+ * second-level cache. A batch that fails keeps its times for the next flush, except where a
+ * newer login came in while it was failing.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LastLoginRecorderTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private UserRepository userRepository;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    
+    private FailingDataSource failingDataSource;
+    private LastLoginRecorder recorder;
+    private Map<Long, LocalDateTime> pending;
+    private Cache cache;
+    
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        failingDataSource = new FailingDataSource(dataSource);
+        recorder = new LastLoginRecorder(failingDataSource, entityManagerFactory);
+        pending = (Map<Long, LocalDateTime>) ReflectionTestUtils.getField(recorder, "pending");
+        cache = entityManagerFactory.unwrap(SessionFactory.class).getCache();
+    }
+    
+    @Test
+    void flushWritesTheBatchAndEvictsOnlyTheUsersInIt() {
+        User loggedIn = cachedUser();
+        User idle = cachedUser();
+        
+        recorder.record(loggedIn.getId());
+        LocalDateTime recorded = pending.get(loggedIn.getId());
+        recorder.flush();
+        
+        assertThat(pending).isEmpty();
+        assertThat(lastLogin(loggedIn)).isCloseTo(recorded, byLessThan(1, ChronoUnit.MILLIS));
+        assertThat(lastLogin(idle)).isNull();
+        assertThat(cache.containsEntity(User.class, loggedIn.getId())).isFalse();
+        assertThat(cache.containsEntity(User.class, idle.getId())).isTrue();
+        assertThat(userRepository.findById(loggedIn.getId()).orElseThrow().getLastLogin()).isNotNull();
+    }
+    
+    @Test
+    void failedBatchIsKeptForTheNextFlushAndNewerLoginsWin() {
+        User first = cachedUser();
+        User second = cachedUser();
+        recorder.record(first.getId());
+        recorder.record(second.getId());
+        LocalDateTime firstFailed = pending.get(first.getId());
+        LocalDateTime secondFailed = pending.get(second.getId());
+        
+        // The first user logs in again while the batch is failing
+        failingDataSource.failWith(() -> {
+            sleepAMillisecond();
+            recorder.record(first.getId());
+        });
+        recorder.flush();
+        
+        assertThat(lastLogin(first)).isNull();
+        assertThat(lastLogin(second)).isNull();
+        assertThat(pending).containsOnlyKeys(first.getId(), second.getId());
+        assertThat(pending.get(first.getId())).isAfter(firstFailed);
+        assertThat(pending.get(second.getId())).isEqualTo(secondFailed);
+        LocalDateTime firstNewer = pending.get(first.getId());
+        // Nothing was written, so nothing was evicted
+        assertThat(cache.containsEntity(User.class, first.getId())).isTrue();
+        assertThat(cache.containsEntity(User.class, second.getId())).isTrue();
+        
+        failingDataSource.failWith(null);
+        recorder.flush();
+        
+        assertThat(pending).isEmpty();
+        assertThat(lastLogin(first)).isCloseTo(firstNewer, byLessThan(1, ChronoUnit.MILLIS));
+        assertThat(lastLogin(second)).isCloseTo(secondFailed, byLessThan(1, ChronoUnit.MILLIS));
+        assertThat(cache.containsEntity(User.class, first.getId())).isFalse();
+        assertThat(cache.containsEntity(User.class, second.getId())).isFalse();
+    }
+    
+    // Created, then read once so the second-level cache holds it
+    private User cachedUser() {
+        User user = new User();
+        user.setUsername("last-login-" + SEQUENCE.incrementAndGet());
+        user.setPassword("secret");
+        user.setFullName("Last Login User");
+        user.setEmail(user.getUsername() + "@stockmanagement.com");
+        user.setRole("USER");
+        User created = userService.createUser(user);
+        userRepository.findById(created.getId()).orElseThrow();
+        assertThat(cache.containsEntity(User.class, created.getId())).isTrue();
+        return created;
+    }
+    
+    private LocalDateTime lastLogin(User user) {
+        Timestamp lastLogin = new JdbcTemplate(dataSource).queryForObject("SELECT last_login FROM users WHERE id = ?",
+            Timestamp.class, user.getId());
+        return lastLogin == null ? null : lastLogin.toLocalDateTime();
+    }
+    
+    private static void sleepAMillisecond() {
+        try {
+            Thread.sleep(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    // Fails every connection request while a hook is set, after running the hook
+    private static final class FailingDataSource extends DelegatingDataSource {
+        private volatile Runnable failure;
+        
+        FailingDataSource(DataSource target) {
+            super(target);
+        }
+        
+        void failWith(Runnable hook) {
+            failure = hook;
+        }
+        
+        @Override
+        public Connection getConnection() throws SQLException {
+            Runnable hook = failure;
+            if (hook != null) {
+                hook.run();
+                throw new SQLException("Database unavailable");
+            }
+            return super.getConnection();
+        }
+    }
+}
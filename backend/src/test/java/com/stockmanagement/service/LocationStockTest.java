@@ -0,0 +1,226 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.BillItemRequest;
+import com.stockmanagement.dto.BillRequest;
+import com.stockmanagement.dto.ProductStock;
+import com.stockmanagement.dto.StockTransferRequest;
+import com.stockmanagement.entity.Location;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.LocationStockRepository;
+import com.stockmanagement.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Stock held per location: a transfer moves units between two location rows without changing
+ * the product's total, and under concurrent checkouts and transfers at several locations the
+ * written-behind total always ends up equal to the sum of the location rows.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class LocationStockTest {
+    private static final int THREADS = 16;
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    
+    @Autowired
+    private StockService stockService;
+    
+    @Autowired
+    private BillingService billingService;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private LocationService locationService;
+    
+    @Autowired
+    private StockTotals stockTotals;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private LocationStockRepository locationStockRepository;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    private User cashier;
+    
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("location-cashier-" + SEQUENCE.incrementAndGet());
+        user.setPassword("secret");
+        user.setFullName("Location Cashier");
+        user.setEmail(user.getUsername() + "@stockmanagement.com");
+        user.setRole("USER");
+        cashier = userService.createUser(user);
+    }
+    
+    @Test
+    void transferMovesStockBetweenLocationsAndKeepsTheTotal() {
+        Long store = locationService.getDefaultLocationId();
+        Location warehouse = createLocation();
+        Product product = newProduct(50);
+        
+        List<StockTransaction> movements = stockService.transferStock(
+            new StockTransferRequest(product.getId(), store, warehouse.getId(), 20, null), cashier);
+        
+        assertThat(movements).extracting(StockTransaction::getTransactionType)
+            .containsExactly("TRANSFER_OUT", "TRANSFER_IN");
+        assertThat(movements).extracting(StockTransaction::getPreviousStock).containsExactly(50, 0);
+        assertThat(movements).extracting(StockTransaction::getNewStock).containsExactly(30, 20);
+        assertThat(quantity(product, store)).isEqualTo(30);
+        assertThat(quantity(product, warehouse.getId())).isEqualTo(20);
+        stockTotals.flush();
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getCurrentStock()).isEqualTo(50);
+        
+        // More than the source holds: rejected, and neither row changes
+        assertThatThrownBy(() -> stockService.transferStock(
+            new StockTransferRequest(product.getId(), warehouse.getId(), store, 21, null), cashier))
+            .hasMessageStartingWith("Insufficient stock");
+        assertThat(quantity(product, store)).isEqualTo(30);
+        assertThat(quantity(product, warehouse.getId())).isEqualTo(20);
+    }
+    
+    @Test
+    void totalsMatchTheLocationsUnderConcurrentCheckoutsAndTransfers() throws Exception {
+        Long store = locationService.getDefaultLocationId();
+        Location warehouse = createLocation();
+        Product product = newProduct(60);
+        stockService.transferStock(new StockTransferRequest(product.getId(), store, warehouse.getId(), 30, null), cashier);
+        
+        // Bills at both locations while units move back and forth and totals flush in between
+        int requests = 160;
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger billed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+        List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        AtomicBoolean running = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS + 1);
+        try {
+            Future<?> flusher = executor.submit(() -> {
+                while (running.get()) {
+                    stockTotals.flush();
+                }
+                return null;
+            });
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    int n = next.getAndIncrement();
+                    try {
+                        if (n % 4 == 3) {
+                            boolean outbound = n % 8 == 3;
+                            stockService.transferStock(new StockTransferRequest(product.getId(),
+                                outbound ? store : warehouse.getId(), outbound ? warehouse.getId() : store, 1, null),
+                                cashier);
+                        } else {
+                            BillRequest bill = new BillRequest();
+                            bill.setItems(List.of(new BillItemRequest(product.getId(), 1)));
+                            bill.setCustomerName("Walk-in");
+                            bill.setPaymentMethod("CASH");
+                            bill.setLocationId(n % 2 == 0 ? store : warehouse.getId());
+                            billingService.createBill(bill, cashier);
+                            billed.incrementAndGet();
+                        }
+                    } catch (RuntimeException e) {
+                        if (e.getMessage() != null && e.getMessage().startsWith("Insufficient stock")) {
+                            rejected.incrementAndGet();
+                        } else {
+                            failures.add(e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            running.set(false);
+            flusher.get(60, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+        
+        assertThat(failures).isEmpty();
+        // 120 bills for 60 units, so at least half of them were turned away
+        assertThat(billed.get()).isLessThanOrEqualTo(60);
+        assertThat(rejected.get()).isGreaterThanOrEqualTo(120 - billed.get());
+        List<ProductStock> rows = stockService.getStockByLocation(product.getId());
+        assertThat(rows).allSatisfy(row -> assertThat(row.getQuantity()).isGreaterThanOrEqualTo(0));
+        int sum = rows.stream().mapToInt(ProductStock::getQuantity).sum();
+        assertThat(sum).isEqualTo(60 - billed.get());
+        
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM stock_transactions WHERE product_id = ? AND transaction_type = 'OUT'",
+            Integer.class, product.getId())).isEqualTo(billed.get());
+        assertThat(jdbcTemplate.queryForObject(
+            "SELECT MIN(new_stock) FROM stock_transactions WHERE product_id = ?", Integer.class, product.getId()))
+            .isGreaterThanOrEqualTo(0);
+        
+        stockTotals.flush();
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getCurrentStock()).isEqualTo(sum);
+        assertThat(locationStockRepository.sumByProduct(List.of(product.getId())))
+            .singleElement().satisfies(row -> assertThat(((Number) row[1]).intValue()).isEqualTo(sum));
+    }
+    
+    private Location createLocation() {
+        Location location = new Location();
+        location.setCode("WH-" + SEQUENCE.incrementAndGet());
+        location.setName("Warehouse");
+        location.setType("WAREHOUSE");
+        return locationService.createLocation(location);
+    }
+    
+    private Product newProduct(int stock) {
+        int n = SEQUENCE.incrementAndGet();
+        Product product = new Product();
+        product.setName("Located Product " + n);
+        product.setSku("LOC-" + n);
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("5.00"));
+        product.setSellingPrice(new BigDecimal("9.99"));
+        product.setCurrentStock(stock);
+        product.setMinStockLevel(0);
+        return productService.createProduct(product);
+    }
+    
+    private int quantity(Product product, Long locationId) {
+        return stockService.getStockByLocation(product.getId()).stream()
+            .filter(stock -> stock.getLocationId().equals(locationId))
+            .findFirst().orElseThrow()
+            .getQuantity();
+    }
+}
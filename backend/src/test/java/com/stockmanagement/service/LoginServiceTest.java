@@ -0,0 +1,106 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.controller.AuthController;
+import com.stockmanagement.dto.ApiResponse;
+import com.stockmanagement.dto.LoginRequest;
+import com.stockmanagement.dto.LoginResponse;
+import com.stockmanagement.security.AppUserDetails;
+import com.stockmanagement.security.JwtUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * The login pool is bounded: with every thread busy and the queue full, a further login fails
+ * straight away with RejectedExecutionException, which the login endpoint answers with 503.
+ * BCrypt is stood in for by an authentication that waits until the test releases it.
+ */
+class LoginServiceTest {
+    private final AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+    private final JwtUtil jwtUtil = mock(JwtUtil.class);
+    private final LastLoginRecorder lastLoginRecorder = mock(LastLoginRecorder.class);
+    private final CountDownLatch release = new CountDownLatch(1);
+    
+    // One thread and a queue of one: two logins in progress fill the pool
+    private final LoginService loginService = new LoginService(authenticationManager, jwtUtil, lastLoginRecorder, 1, 1);
+    
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        loginService.shutdown();
+    }
+    
+    @Test
+    void loginsBeyondTheQueueAreRejected() throws Exception {
+        blockAuthentication();
+        CompletableFuture<LoginResponse> running = loginService.login(new LoginRequest("cashier", "secret"));
+        CompletableFuture<LoginResponse> queued = loginService.login(new LoginRequest("cashier", "secret"));
+        
+        CompletableFuture<LoginResponse> rejected = loginService.login(new LoginRequest("cashier", "secret"));
+        
+        assertThat(rejected).isCompletedExceptionally();
+        assertThatThrownBy(rejected::get).isInstanceOf(ExecutionException.class)
+            .hasCauseInstanceOf(RejectedExecutionException.class);
+        
+        // Once the pool drains, the accepted logins finish and new ones are taken again
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS).getToken()).isEqualTo("jwt");
+        assertThat(queued.get(5, TimeUnit.SECONDS).getToken()).isEqualTo("jwt");
+        assertThat(loginService.login(new LoginRequest("cashier", "secret")).get(5, TimeUnit.SECONDS).getUsername())
+            .isEqualTo("cashier");
+        verify(lastLoginRecorder, times(3)).record(7L);
+    }
+    
+    @Test
+    void endpointAnswersAFullQueueWith503AndBadCredentialsWith400() throws Exception {
+        AuthController controller = new AuthController(loginService, null);
+        blockAuthentication();
+        CompletableFuture<?> running = controller.login(new LoginRequest("cashier", "secret"));
+        CompletableFuture<?> queued = controller.login(new LoginRequest("cashier", "secret"));
+        
+        ResponseEntity<ApiResponse<LoginResponse>> busy = controller.login(new LoginRequest("cashier", "secret"))
+            .get(5, TimeUnit.SECONDS);
+        
+        assertThat(busy.getStatusCode()).isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(busy.getBody().getMessage()).isEqualTo("Too many logins in progress, please retry");
+        
+        release.countDown();
+        running.get(5, TimeUnit.SECONDS);
+        queued.get(5, TimeUnit.SECONDS);
+        doThrow(new BadCredentialsException("Bad credentials")).when(authenticationManager).authenticate(any());
+        ResponseEntity<ApiResponse<LoginResponse>> wrongPassword = controller.login(new LoginRequest("cashier", "wrong"))
+            .get(5, TimeUnit.SECONDS);
+        assertThat(wrongPassword.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+    
+    private void blockAuthentication() {
+        AppUserDetails user = new AppUserDetails(7L, "cashier", "", true, "Cashier", "USER", 0, List.of());
+        Authentication authenticated = new UsernamePasswordAuthenticationToken(user, null, List.of());
+        when(authenticationManager.authenticate(any())).thenAnswer(invocation -> {
+            release.await();
+            return authenticated;
+        });
+        when(jwtUtil.generateToken(user)).thenReturn("jwt");
+    }
+}
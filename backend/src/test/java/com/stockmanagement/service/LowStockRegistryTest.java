@@ -0,0 +1,239 @@
+package com.stockmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmanagement.dto.LowStockEvent;
+import com.stockmanagement.dto.StockUpdateRequest;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.security.CustomUserDetailsService;
+import com.stockmanagement.security.JwtUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+
+/**
+ * Threshold crossings as the registry lists them and as a subscriber of the low-stock stream
+ * sees them: one event per crossing in either direction, none while stock stays on one side.
+ * Each test subscribes to the stream first and reads only its own product's events.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class LowStockRegistryTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    private static final long EVENT_WAIT_MILLIS = 5000;
+    
+    @Autowired
+    private MockMvc mockMvc;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private LowStockRegistry lowStockRegistry;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private StockService stockService;
+    
+    @Autowired
+    private StockTotals stockTotals;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private CustomUserDetailsService userDetailsService;
+    
+    @Autowired
+    private JwtUtil jwtUtil;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    private User cashier;
+    private MvcResult stream;
+    
+    @BeforeEach
+    void subscribe() throws Exception {
+        User user = new User();
+        user.setUsername("low-stock-" + SEQUENCE.incrementAndGet());
+        user.setPassword("secret");
+        user.setFullName("Low Stock Watcher");
+        user.setEmail(user.getUsername() + "@stockmanagement.com");
+        user.setRole("USER");
+        cashier = userService.createUser(user);
+        String token = jwtUtil.generateToken(userDetailsService.loadUserByUsername(cashier.getUsername()));
+        stream = mockMvc.perform(get("/api/products/low-stock/stream")
+                .header(HttpHeaders.AUTHORIZATION, "Bearer " + token))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+    }
+    
+    @Test
+    void crossingsAreAnnouncedOnceInEachDirection() throws Exception {
+        Product product = createProduct(20, 5);
+        
+        move(product, "OUT", 10);
+        assertThat(listed(product)).isFalse();
+        // Down to the threshold counts as low
+        move(product, "OUT", 5);
+        assertThat(listed(product)).isTrue();
+        // Still low: no second event
+        move(product, "OUT", 2);
+        assertThat(listed(product)).isTrue();
+        move(product, "IN", 10);
+        assertThat(listed(product)).isFalse();
+        
+        List<LowStockEvent> events = awaitEvents(product, 2);
+        assertThat(events).extracting(LowStockEvent::getType).containsExactly("LOW", "RESTOCKED");
+        assertThat(events).extracting(LowStockEvent::getCurrentStock).containsExactly(5, 13);
+        assertThat(events).extracting(LowStockEvent::getMinStockLevel).containsExactly(5, 5);
+    }
+    
+    @Test
+    void productsWithoutAThresholdGetTheGlobalDefault() throws Exception {
+        // stock.alert.threshold is 10
+        Product product = productService.createProduct(newProduct(10, null));
+        assertThat(product.getMinStockLevel()).isEqualTo(10);
+        assertThat(listed(product)).isTrue();
+        
+        productService.updateProduct(product.getId(), withThreshold(product, 4));
+        assertThat(listed(product)).isFalse();
+        productService.updateProduct(product.getId(), withThreshold(product, null));
+        assertThat(listed(product)).isTrue();
+        
+        List<LowStockEvent> events = awaitEvents(product, 3);
+        assertThat(events).extracting(LowStockEvent::getType).containsExactly("LOW", "RESTOCKED", "LOW");
+        assertThat(events).extracting(LowStockEvent::getMinStockLevel).containsExactly(10, 4, 10);
+    }
+    
+    @Test
+    void aMissingThresholdIsNeverLow() throws Exception {
+        Product product = createProduct(0, 5);
+        Product withoutThreshold = withThreshold(product, null);
+        withoutThreshold.setId(product.getId());
+        withoutThreshold.setCurrentStock(0);
+        
+        lowStockRegistry.update(withoutThreshold);
+        
+        assertThat(listed(product)).isFalse();
+        assertThat(awaitEvents(product, 2)).extracting(LowStockEvent::getType).containsExactly("LOW", "RESTOCKED");
+    }
+    
+    @Test
+    void deletingALowProductRemovesIt() throws Exception {
+        Product product = createProduct(2, 5);
+        assertThat(listed(product)).isTrue();
+        
+        productService.deleteProduct(product.getId());
+        
+        assertThat(listed(product)).isFalse();
+        assertThat(awaitEvents(product, 2)).extracting(LowStockEvent::getType).containsExactly("LOW", "RESTOCKED");
+    }
+    
+    @Test
+    void reconcileCorrectsDriftInBothDirections() throws Exception {
+        Product product = createProduct(8, 5);
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        
+        // Changed outside the app: the registry only notices on reconcile
+        jdbcTemplate.update("UPDATE products SET min_stock_level = 20 WHERE id = ?", product.getId());
+        assertThat(listed(product)).isFalse();
+        lowStockRegistry.reconcile();
+        assertThat(listed(product)).isTrue();
+        
+        jdbcTemplate.update("UPDATE products SET min_stock_level = 1 WHERE id = ?", product.getId());
+        lowStockRegistry.reconcile();
+        assertThat(listed(product)).isFalse();
+        
+        List<LowStockEvent> events = awaitEvents(product, 2);
+        assertThat(events).extracting(LowStockEvent::getType).containsExactly("LOW", "RESTOCKED");
+        assertThat(events).extracting(LowStockEvent::getMinStockLevel).containsExactly(20, 20);
+    }
+    
+    private void move(Product product, String type, int quantity) {
+        stockService.updateStock(new StockUpdateRequest(product.getId(), quantity, type, null, null), cashier);
+        // Product totals, and with them the registry, follow location stock on the write-behind flush
+        stockTotals.flush();
+    }
+    
+    private boolean listed(Product product) {
+        return lowStockRegistry.getLowStockProducts().stream().anyMatch(low -> low.getId().equals(product.getId()));
+    }
+    
+    // Events are pushed from the registry's own thread, in the order the crossings were applied
+    private List<LowStockEvent> awaitEvents(Product product, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + EVENT_WAIT_MILLIS;
+        List<LowStockEvent> events = events(product);
+        while (events.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            events = events(product);
+        }
+        return events;
+    }
+    
+    private List<LowStockEvent> events(Product product) throws Exception {
+        List<LowStockEvent> events = new ArrayList<>();
+        // Only events already ended by their blank line; the last one may still be being written
+        String content = stream.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        for (String line : content.substring(0, Math.max(0, content.lastIndexOf("\n\n"))).split("\n")) {
+            if (line.startsWith("data:")) {
+                LowStockEvent event = objectMapper.readValue(line.substring("data:".length()), LowStockEvent.class);
+                if (event.getProductId().equals(product.getId())) {
+                    events.add(event);
+                }
+            }
+        }
+        return events;
+    }
+    
+    private Product createProduct(int stock, Integer minStockLevel) {
+        return productService.createProduct(newProduct(stock, minStockLevel));
+    }
+    
+    private static Product newProduct(int stock, Integer minStockLevel) {
+        int n = SEQUENCE.incrementAndGet();
+        Product product = new Product();
+        product.setName("Low Stock Product " + n);
+        product.setSku("LOW-" + n);
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("1.00"));
+        product.setSellingPrice(new BigDecimal("2.00"));
+        product.setCurrentStock(stock);
+        product.setMinStockLevel(minStockLevel);
+        return product;
+    }
+    
+    private static Product withThreshold(Product product, Integer minStockLevel) {
+        Product details = new Product();
+        details.setName(product.getName());
+        details.setSku(product.getSku());
+        details.setCategory(product.getCategory());
+        details.setPurchasePrice(product.getPurchasePrice());
+        details.setSellingPrice(product.getSellingPrice());
+        details.setMinStockLevel(minStockLevel);
+        details.setActive(true);
+        return details;
+    }
+}
@@ -0,0 +1,189 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.entity.Product;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Substring and word-prefix matching, ranking and the result limit, and how the index follows
+ * commits, rollbacks and changes made on other instances. Each test builds its own index from
+ * the database; products that only need to be searched get ids far above any real row.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ProductSearchIndexTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    private static final long UNSAVED_IDS = 1_000_000_000L;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private CatalogVersions catalogVersions;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    private ProductSearchIndex index;
+    
+    @BeforeEach
+    void setUp() {
+        index = new ProductSearchIndex(dataSource, catalogVersions);
+        index.rebuild();
+    }
+    
+    @Test
+    void shortKeywordsMatchWordStartsAndLongerOnesAnySubstring() {
+        Product product = product("Kestrowan Tool", "KT-1", "Hardware");
+        index.put(product);
+        
+        assertThat(index.search("ke", 100)).contains(product.getId());
+        assertThat(index.search("To", 100)).contains(product.getId());
+        // Two characters inside a word are not a match, three are
+        assertThat(index.search("es", 100)).doesNotContain(product.getId());
+        assertThat(index.search("str", 100)).contains(product.getId());
+        assertThat(index.search("ROWAN T", 100)).contains(product.getId());
+        assertThat(index.search("kt-1", 100)).containsExactly(product.getId());
+        assertThat(index.search("  ", 100)).isEmpty();
+    }
+    
+    @Test
+    void candidatesWithAllTrigramsButNoMatchAreDropped() {
+        // Both products hold the trigrams of "qjwk", only one holds the keyword itself
+        Product scattered = product("Qjw Jwk", "SC-1", "Test");
+        Product whole = product("Qjwk", "WH-1", "Test");
+        index.put(scattered);
+        index.put(whole);
+        
+        assertThat(index.search("qjwk", 100)).containsExactly(whole.getId());
+        assertThat(index.search("jwk", 100)).containsExactly(scattered.getId(), whole.getId());
+        assertThat(index.search("qjwkx", 100)).isEmpty();
+    }
+    
+    @Test
+    void ranksByMatchThenShorterNameThenLowerId() {
+        Product category = product("Plain Item", "ORD-1", "Vorlix Goods");
+        Product skuSubstring = product("Other Item", "AB-XVORLIX", "Test");
+        Product nameSubstring = product("Supervorlix", "ORD-2", "Test");
+        Product nameWord = product("Big Vorlix", "ORD-3", "Test");
+        Product longerNamePrefix = product("Vorlix Abcdef", "ORD-4", "Test");
+        Product namePrefix = product("Vorlix B", "ORD-5", "Test");
+        Product laterNamePrefix = product("Vorlix A", "ORD-6", "Test");
+        Product skuPrefix = product("Beta", "VORLIX-2", "Test");
+        Product sku = product("Alpha", "VORLIX", "Test");
+        // Put in reverse so the ranking does not just follow insertion order
+        for (Product product : new Product[] {sku, skuPrefix, namePrefix, laterNamePrefix, longerNamePrefix,
+                nameWord, nameSubstring, skuSubstring, category}) {
+            index.put(product);
+        }
+        
+        // Equal scores and name lengths go by id, not by name
+        assertThat(index.search("vorlix", 100)).containsExactly(sku.getId(), skuPrefix.getId(),
+            namePrefix.getId(), laterNamePrefix.getId(), longerNamePrefix.getId(), nameWord.getId(),
+            nameSubstring.getId(), skuSubstring.getId(), category.getId());
+        assertThat(index.search("vorlix", 3)).containsExactly(sku.getId(), skuPrefix.getId(), namePrefix.getId());
+    }
+    
+    @Test
+    void removedProductsDropOutAndTheirSlotsAreReused() {
+        Product first = product("Drellic Pump", "DP-1", "Test");
+        Product second = product("Drellic Valve", "DV-1", "Test");
+        index.put(first);
+        index.put(second);
+        int docCount = (int) ReflectionTestUtils.getField(index, "docCount");
+        
+        index.remove(first.getId());
+        assertThat(index.search("drellic", 100)).containsExactly(second.getId());
+        assertThat(index.search("pump", 100)).doesNotContain(first.getId());
+        
+        Product third = product("Drellic Hose", "DH-1", "Test");
+        index.put(third);
+        assertThat(ReflectionTestUtils.getField(index, "docCount")).isEqualTo(docCount);
+        assertThat(index.search("drellic", 100)).containsExactly(third.getId(), second.getId());
+        
+        // A rename re-indexes the product under its new text only
+        second.setName("Ombrix Valve");
+        index.put(second);
+        assertThat(index.search("drellic", 100)).containsExactly(third.getId());
+        assertThat(index.search("ombrix", 100)).containsExactly(second.getId());
+    }
+    
+    @Test
+    void changesApplyOnlyWhenTheirTransactionCommits() {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        Product committed = product("Fennick Lamp", "FL-1", "Test");
+        Product rolledBack = product("Fennick Bulb", "FB-1", "Test");
+        
+        transactionTemplate.executeWithoutResult(status -> {
+            index.put(committed);
+            assertThat(index.search("fennick", 100)).isEmpty();
+        });
+        transactionTemplate.executeWithoutResult(status -> {
+            index.put(rolledBack);
+            index.remove(committed.getId());
+            status.setRollbackOnly();
+        });
+        assertThat(index.search("fennick", 100)).containsExactly(committed.getId());
+        
+        transactionTemplate.executeWithoutResult(status -> index.remove(committed.getId()));
+        assertThat(index.search("fennick", 100)).isEmpty();
+    }
+    
+    @Test
+    void resyncPicksUpProductsChangedOnOtherInstances() {
+        // Written through the service, whose index is another instance's as far as this one is concerned
+        Product created = productService.createProduct(saved("Thessaly Crate", "TC-"));
+        Product renamed = productService.createProduct(saved("Thessaly Box", "TB-"));
+        assertThat(index.search("thessaly", 100)).isEmpty();
+        
+        index.resync();
+        assertThat(index.search("thessaly", 100)).containsExactlyInAnyOrder(created.getId(), renamed.getId());
+        
+        new JdbcTemplate(dataSource).update("UPDATE products SET name = ? WHERE id = ?", "Marrow Box", renamed.getId());
+        catalogVersions.changed(renamed.getId());
+        productService.deleteProduct(created.getId());
+        index.resync();
+        assertThat(index.search("thessaly", 100)).isEmpty();
+        assertThat(index.search("marrow box", 100)).containsExactly(renamed.getId());
+        
+        // Nothing changed since: the overlap pass re-applies the same rows and then polls stop
+        index.resync();
+        index.resync();
+        assertThat(index.search("marrow box", 100)).containsExactly(renamed.getId());
+    }
+    
+    private static Product saved(String name, String skuPrefix) {
+        Product product = product(name, skuPrefix + SEQUENCE.incrementAndGet(), "Test");
+        product.setId(null);
+        return product;
+    }
+    
+    private static Product product(String name, String sku, String category) {
+        Product product = new Product();
+        product.setId(UNSAVED_IDS + SEQUENCE.incrementAndGet());
+        product.setName(name);
+        product.setSku(sku);
+        product.setCategory(category);
+        product.setPurchasePrice(new BigDecimal("1.00"));
+        product.setSellingPrice(new BigDecimal("2.00"));
+        product.setCurrentStock(10);
+        product.setMinStockLevel(0);
+        return product;
+    }
+}
@@ -0,0 +1,117 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.entity.BillItem;
+import com.stockmanagement.entity.Product;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Bills for the same day, product and payment method racing to create and add to one rollup
+ * row: every line must be counted exactly once, also when only part of a bill's batch fails.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class SalesRollupServiceTest {
+    private static final int THREADS = 16;
+    private static final long PRODUCT_ID = 990_101L;
+    
+    @Autowired
+    private SalesRollupService salesRollupService;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Test
+    void concurrentBillsAddUpInOneRow() throws Exception {
+        LocalDateTime billDate = LocalDateTime.of(2031, 3, 14, 10, 0);
+        int bills = 200;
+        
+        recordConcurrently(bills, () -> bill(billDate, PRODUCT_ID));
+        
+        assertRow(PRODUCT_ID, bills);
+    }
+    
+    @Test
+    void batchesThatLoseTheRaceOnSomeLinesCountEveryLineOnce() throws Exception {
+        // Every bill's batch races the others to create all three rows, so some of its lines
+        // fail while the rest of the batch goes through
+        LocalDateTime billDate = LocalDateTime.of(2031, 3, 15, 10, 0);
+        long[] productIds = {PRODUCT_ID + 1, PRODUCT_ID + 2, PRODUCT_ID + 3};
+        int bills = 100;
+        
+        recordConcurrently(bills, () -> bill(billDate, productIds));
+        
+        for (long productId : productIds) {
+            assertRow(productId, bills);
+        }
+    }
+    
+    private void recordConcurrently(int bills, Supplier<Bill> bill) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < bills; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    salesRollupService.recordBill(bill.get());
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+    
+    private void assertRow(long productId, int bills) {
+        List<Map<String, Object>> rows = new JdbcTemplate(dataSource).queryForList(
+            "SELECT quantity, gross_amount, net_amount FROM daily_sales_rollups WHERE product_id = ?", productId);
+        assertThat(rows).hasSize(1);
+        assertThat(((Number) rows.get(0).get("QUANTITY")).longValue()).isEqualTo(bills * 2L);
+        assertThat((BigDecimal) rows.get(0).get("GROSS_AMOUNT")).isEqualByComparingTo(BigDecimal.valueOf(bills * 10L));
+        assertThat((BigDecimal) rows.get(0).get("NET_AMOUNT")).isEqualByComparingTo(BigDecimal.valueOf(bills * 11L));
+    }
+    
+    // Two units at 5.00 per product, billed at 11.00 a line after tax
+    private static Bill bill(LocalDateTime billDate, long... productIds) {
+        List<BillItem> items = new ArrayList<>();
+        for (long productId : productIds) {
+            Product product = new Product();
+            product.setId(productId);
+            BillItem item = new BillItem();
+            item.setProduct(product);
+            item.setQuantity(2);
+            item.setLineTotal(new BigDecimal("10.00"));
+            items.add(item);
+        }
+        Bill bill = new Bill();
+        bill.setBillDate(billDate);
+        bill.setPaymentMethod("CASH");
+        bill.setItems(items);
+        bill.setTotal(new BigDecimal("11.00").multiply(BigDecimal.valueOf(productIds.length)));
+        return bill;
+    }
+}
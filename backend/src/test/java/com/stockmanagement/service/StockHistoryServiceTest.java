@@ -0,0 +1,123 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.StockHistory;
+import com.stockmanagement.dto.StockPosition;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockSnapshot;
+import com.stockmanagement.entity.StockSnapshotId;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.repository.ProductRepository;
+import com.stockmanagement.repository.StockSnapshotRepository;
+import com.stockmanagement.repository.StockTransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Thinning keeps the replay window of an as-of query bounded by the snapshot spacing: every
+ * snapshot of the recent days stays, and older days keep their first one. Times before a
+ * product's first snapshot are rolled back from its next snapshot rather than from the live level.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+@Transactional
+class StockHistoryServiceTest {
+    private static final Long PRODUCT_ID = 990_001L;
+    
+    @Autowired
+    private StockHistoryService stockHistoryService;
+    
+    @Autowired
+    private StockSnapshotRepository snapshotRepository;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private StockTransactionRepository stockTransactionRepository;
+    
+    @Test
+    void thinningKeepsRecentSnapshotsAndTheFirstOfEachOlderDay() {
+        LocalDateTime now = LocalDateTime.of(2030, 1, 31, 12, 0);
+        for (LocalDateTime at = now.minusDays(30); !at.isAfter(now); at = at.plusHours(1)) {
+            snapshotRepository.save(new StockSnapshot(new StockSnapshotId(PRODUCT_ID, at), 10));
+        }
+        
+        stockHistoryService.thin(now);
+        
+        LocalDateTime fullFrom = now.minusDays(7);
+        List<LocalDateTime> expected = new ArrayList<>();
+        expected.add(now.minusDays(30));
+        for (LocalDateTime day = now.minusDays(29).toLocalDate().atStartOfDay(); day.isBefore(fullFrom);
+             day = day.plusDays(1)) {
+            expected.add(day);
+        }
+        for (LocalDateTime at = fullFrom; !at.isAfter(now); at = at.plusHours(1)) {
+            expected.add(at);
+        }
+        List<LocalDateTime> remaining = snapshotRepository.findSnapshotTimesBefore(now.plusSeconds(1));
+        assertThat(remaining).containsExactlyElementsOf(expected);
+        for (int i = 1; i < remaining.size(); i++) {
+            assertThat(remaining.get(i - 1).plusDays(1)).isAfterOrEqualTo(remaining.get(i));
+        }
+    }
+    
+    @Test
+    void timesBeforeTheFirstSnapshotRollBackFromTheNextOne() {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+        Product product = new Product();
+        product.setName("History Product");
+        product.setSku("HISTORY-ANCHOR");
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("1.00"));
+        product.setSellingPrice(new BigDecimal("2.00"));
+        product.setCurrentStock(0);
+        product.setMinStockLevel(0);
+        product.setCreatedAt(now.minusDays(3));
+        product = productRepository.save(product);
+        // 0 -> 10 -> 15 -> 12; the product has no location rows, so its live level reads 0
+        movement(product, now.minusDays(2), 0, 10);
+        movement(product, now.minusDays(1), 10, 15);
+        movement(product, now.minusHours(1), 15, 12);
+        LocalDateTime snapshotAt = now.minusHours(12);
+        snapshotRepository.save(new StockSnapshot(new StockSnapshotId(product.getId(), snapshotAt), 15));
+        
+        LocalDateTime at = now.minusHours(36);
+        StockHistory history = stockHistoryService.getProductStockAt(product.getId(), at);
+        assertThat(history.getPositions().get(0).getStockLevel()).isEqualTo(10);
+        assertThat(history.getSnapshotAt()).isEqualTo(snapshotAt);
+        assertThat(history.getTransactionsReplayed()).isEqualTo(1L);
+        
+        Long productId = product.getId();
+        StockPosition position = stockHistoryService.getCatalogStockAt(at).getPositions().stream()
+            .filter(p -> p.getProductId().equals(productId))
+            .findFirst().orElseThrow();
+        assertThat(position.getStockLevel()).isEqualTo(10);
+        
+        // After the snapshot its changes are added forward instead
+        StockHistory latest = stockHistoryService.getProductStockAt(product.getId(), now);
+        assertThat(latest.getPositions().get(0).getStockLevel()).isEqualTo(12);
+        assertThat(latest.getSnapshotAt()).isEqualTo(snapshotAt);
+    }
+    
+    private void movement(Product product, LocalDateTime at, int previousStock, int newStock) {
+        StockTransaction transaction = new StockTransaction();
+        transaction.setProduct(product);
+        transaction.setTransactionType(newStock > previousStock ? "IN" : "OUT");
+        transaction.setQuantity(Math.abs(newStock - previousStock));
+        transaction.setPreviousStock(previousStock);
+        transaction.setNewStock(newStock);
+        transaction.setTransactionDate(at);
+        stockTransactionRepository.save(transaction);
+    }
+}
@@ -0,0 +1,246 @@
+package com.stockmanagement.service;
+
+import com.stockmanagement.dto.BillItemRequest;
+import com.stockmanagement.dto.BillRequest;
+import com.stockmanagement.dto.StockUpdateRequest;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.ProductRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * Many threads draw on one product with limited stock at once: exactly as many requests as
+ * the stock covers must succeed, every other one must be rejected for insufficient stock, and
+ * no movement may take the level below zero.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class StockServiceConcurrencyTest {
+    private static final int THREADS = 16;
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    
+    @Autowired
+    private StockService stockService;
+    
+    @Autowired
+    private BillingService billingService;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private UserService userService;
+    
+    @Autowired
+    private LocationService locationService;
+    
+    @Autowired
+    private StockTotals stockTotals;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    private User cashier;
+    
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("cashier-" + SEQUENCE.incrementAndGet());
+        user.setPassword("secret");
+        user.setFullName("Test Cashier");
+        user.setEmail(user.getUsername() + "@stockmanagement.com");
+        user.setRole("USER");
+        cashier = userService.createUser(user);
+    }
+    
+    @Test
+    void concurrentOutMovementsNeverOversell() throws Exception {
+        // Warm up first, so the reported throughput is not dominated by JIT compilation
+        Product warmUp = newProduct(1_000_000);
+        run(600, () -> stockService.updateStock(
+            new StockUpdateRequest(warmUp.getId(), 1, "OUT", "Warm-up", null), cashier));
+        
+        Product product = newProduct(1000);
+        int requests = 1200;
+        
+        Outcome outcome = run(requests, () -> stockService.updateStock(
+            new StockUpdateRequest(product.getId(), 1, "OUT", "Concurrency test", null), cashier));
+        
+        assertThat(outcome.failures).isEmpty();
+        assertThat(outcome.accepted.get()).isEqualTo(1000);
+        assertThat(outcome.rejected.get()).isEqualTo(requests - 1000);
+        assertStock(product, 0, 1000);
+        System.out.printf("Concurrent OUT movements: %d requests on %d threads, %.0f requests/s%n",
+            requests, THREADS, outcome.throughput(requests));
+    }
+    
+    @Test
+    void concurrentBillsAndMovementsNeverOversell() throws Exception {
+        // Bills and OUT movements interleaved, two units each
+        Product product = newProduct(100);
+        int requests = 200;
+        AtomicInteger next = new AtomicInteger();
+        
+        Outcome outcome = run(requests, () -> {
+            if (next.getAndIncrement() % 2 == 0) {
+                BillRequest bill = new BillRequest();
+                bill.setItems(List.of(new BillItemRequest(product.getId(), 2)));
+                bill.setCustomerName("Walk-in");
+                bill.setPaymentMethod("CASH");
+                return billingService.createBill(bill, cashier);
+            }
+            return stockService.updateStock(new StockUpdateRequest(product.getId(), 2, "OUT", "Concurrency test", null),
+                cashier);
+        });
+        
+        assertThat(outcome.failures).isEmpty();
+        assertThat(outcome.accepted.get()).isEqualTo(50);
+        assertThat(outcome.rejected.get()).isEqualTo(requests - 50);
+        assertStock(product, 0, 50);
+    }
+    
+    @Test
+    void concurrentMultiLineBillsNeverOversell() throws Exception {
+        // Half the bills list the products in the opposite order, so lock ordering matters
+        Product first = newProduct(100);
+        Product second = newProduct(100);
+        int requests = 150;
+        AtomicInteger next = new AtomicInteger();
+        
+        Outcome outcome = run(requests, () -> {
+            boolean reversed = next.getAndIncrement() % 2 == 0;
+            BillRequest bill = new BillRequest();
+            bill.setItems(reversed
+                ? List.of(new BillItemRequest(second.getId(), 1), new BillItemRequest(first.getId(), 1))
+                : List.of(new BillItemRequest(first.getId(), 1), new BillItemRequest(second.getId(), 1)));
+            bill.setCustomerName("Walk-in");
+            bill.setPaymentMethod("CASH");
+            return billingService.createBill(bill, cashier);
+        });
+        
+        assertThat(outcome.failures).isEmpty();
+        assertThat(outcome.accepted.get()).isEqualTo(100);
+        assertThat(outcome.rejected.get()).isEqualTo(requests - 100);
+        assertStock(first, 0, 100);
+        assertStock(second, 0, 100);
+    }
+    
+    @Test
+    void batchChecksEveryIntermediateLevel() {
+        Product product = newProduct(0);
+        List<StockTransaction> accepted = stockService.updateStockBatch(List.of(
+            new StockUpdateRequest(product.getId(), 5, "IN", "Restock", null),
+            new StockUpdateRequest(product.getId(), 3, "OUT", "Sale", null)), cashier);
+        assertThat(accepted).extracting(StockTransaction::getPreviousStock).containsExactly(0, 5);
+        assertThat(accepted).extracting(StockTransaction::getNewStock).containsExactly(5, 2);
+        
+        // Ends at 2 again, but the first movement would take the level below zero
+        assertThatThrownBy(() -> stockService.updateStockBatch(List.of(
+            new StockUpdateRequest(product.getId(), 3, "OUT", "Sale", null),
+            new StockUpdateRequest(product.getId(), 3, "IN", "Restock", null)), cashier))
+            .hasMessageStartingWith("Insufficient stock");
+        assertStock(product, 2, 1);
+    }
+    
+    private Product newProduct(int stock) {
+        int n = SEQUENCE.incrementAndGet();
+        Product product = new Product();
+        product.setName("Contended Product " + n);
+        product.setSku("CONC-" + n);
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("5.00"));
+        product.setSellingPrice(new BigDecimal("9.99"));
+        product.setCurrentStock(stock);
+        product.setMinStockLevel(0);
+        return productService.createProduct(product);
+    }
+    
+    private void assertStock(Product product, int expected, int movements) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        Integer level = jdbcTemplate.queryForObject(
+            "SELECT quantity FROM location_stock WHERE product_id = ? AND location_id = ?", Integer.class,
+            product.getId(), locationService.getDefaultLocationId());
+        assertThat(level).isEqualTo(expected);
+        Integer count = jdbcTemplate.queryForObject(
+            "SELECT COUNT(*) FROM stock_transactions WHERE product_id = ? AND transaction_type = 'OUT'", Integer.class,
+            product.getId());
+        assertThat(count).isEqualTo(movements);
+        Integer lowest = jdbcTemplate.queryForObject(
+            "SELECT MIN(new_stock) FROM stock_transactions WHERE product_id = ?", Integer.class, product.getId());
+        assertThat(lowest).isGreaterThanOrEqualTo(0);
+        
+        stockTotals.flush();
+        assertThat(productRepository.findById(product.getId()).orElseThrow().getCurrentStock()).isEqualTo(expected);
+    }
+    
+    // Runs the call the given number of times on THREADS threads released together
+    private Outcome run(int requests, Callable<?> call) throws Exception {
+        Outcome outcome = new Outcome();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> futures = new ArrayList<>(requests);
+            for (int i = 0; i < requests; i++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        call.call();
+                        outcome.accepted.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        if (e.getMessage() != null && e.getMessage().startsWith("Insufficient stock")) {
+                            outcome.rejected.incrementAndGet();
+                        } else {
+                            outcome.failures.add(e);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            long began = System.nanoTime();
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            outcome.elapsedNanos = System.nanoTime() - began;
+        } finally {
+            executor.shutdownNow();
+        }
+        return outcome;
+    }
+    
+    private static final class Outcome {
+        final AtomicInteger accepted = new AtomicInteger();
+        final AtomicInteger rejected = new AtomicInteger();
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<>());
+        long elapsedNanos;
+        
+        double throughput(int requests) {
+            return requests / (elapsedNanos / 1e9);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.stockmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.StockJournalCheckpoint;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.repository.ProductRepository;
+import com.stockmanagement.repository.StockJournalCheckpointRepository;
+import com.stockmanagement.repository.StockTransactionRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * The journal replays what an earlier run appended but did not flush, skips movements that
+ * rolled back, and rolls a movement back when its rows cannot be appended.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class StockTransactionJournalTest {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+    
+    @TempDir
+    Path temp;
+    
+    @Autowired
+    private StockTransactionRepository stockTransactionRepository;
+    
+    @Autowired
+    private StockJournalCheckpointRepository checkpointRepository;
+    
+    @Autowired
+    private ProductRepository productRepository;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private EntityManager entityManager;
+    
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Test
+    void replaysUnflushedRecordsExceptVoidedOnes() throws Exception {
+        Product product = createProduct();
+        String name = "replay-" + SEQUENCE.incrementAndGet();
+        Files.writeString(temp.resolve("stock-journal-00000000000000000001.log"),
+            record(1, product, "first") + "\n" + record(2, product, "rolled back") + "\n" +
+            record(3, product, "third") + "\n" + "{\"sequence\":2,\"voided\":true}\n");
+        
+        StockTransactionJournal journal = journal(name);
+        journal.recover();
+        journal.close();
+        
+        assertThat(notes(product)).containsExactlyInAnyOrder("first", "third");
+        assertThat(checkpointRepository.findById(name)).get()
+            .extracting(StockJournalCheckpoint::getLastSequence).isEqualTo(3L);
+        assertThat(segments()).isEmpty();
+        
+        // A second startup finds nothing left to replay
+        journal = journal(name);
+        journal.recover();
+        journal.close();
+        assertThat(notes(product)).hasSize(2);
+    }
+    
+    @Test
+    void flushesCommittedMovementsAndVoidsRolledBackOnes() throws Exception {
+        Product product = createProduct();
+        String name = "flush-" + SEQUENCE.incrementAndGet();
+        StockTransactionJournal journal = journal(name);
+        journal.recover();
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+        
+        transactions.executeWithoutResult(status -> journal.append(List.of(transaction(product, "committed"))));
+        assertThatThrownBy(() -> transactions.executeWithoutResult(status -> {
+            journal.append(List.of(transaction(product, "rolled back")));
+            // Fails the commit after the journal has appended
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    throw new IllegalStateException("commit refused");
+                }
+            });
+        })).hasMessage("commit refused");
+        transactions.executeWithoutResult(status -> journal.append(List.of(transaction(product, "after"))));
+        
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (notes(product).size() < 2 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        journal.close();
+        assertThat(notes(product)).containsExactlyInAnyOrder("committed", "after");
+        
+        // Nothing the flusher skipped comes back at the next startup
+        StockTransactionJournal restarted = journal(name);
+        restarted.recover();
+        restarted.close();
+        assertThat(notes(product)).containsExactlyInAnyOrder("committed", "after");
+    }
+    
+    @Test
+    void failedAppendRollsTheMovementBack() throws Exception {
+        Product product = createProduct();
+        StockTransactionJournal journal = journal("failure-" + SEQUENCE.incrementAndGet());
+        journal.recover();
+        // The first append opens a segment in a directory that is no longer there
+        Files.delete(temp);
+        Files.createFile(temp);
+        
+        TransactionTemplate transactions = new TransactionTemplate(transactionManager);
+        assertThatThrownBy(() -> transactions.executeWithoutResult(status -> {
+            Product changed = productRepository.findById(product.getId()).orElseThrow();
+            changed.setName("Changed by a failed movement");
+            productRepository.save(changed);
+            journal.append(List.of(transaction(changed, "lost")));
+        })).isInstanceOf(UncheckedIOException.class);
+        journal.close();
+        Files.delete(temp);
+        Files.createDirectory(temp);
+        
+        assertThat(productRepository.findById(product.getId())).get()
+            .extracting(Product::getName).isEqualTo("Journaled Product");
+        assertThat(notes(product)).isEmpty();
+    }
+    
+    private StockTransactionJournal journal(String name) {
+        return new StockTransactionJournal(stockTransactionRepository, checkpointRepository, entityManager,
+            transactionManager, objectMapper, true, temp.toString(), name, 100, 10, 20, 1 << 20, true);
+    }
+    
+    private Product createProduct() {
+        Product product = new Product();
+        product.setName("Journaled Product");
+        product.setSku("JOURNAL-" + SEQUENCE.incrementAndGet());
+        product.setCategory("Test");
+        product.setPurchasePrice(new BigDecimal("1.00"));
+        product.setSellingPrice(new BigDecimal("2.00"));
+        product.setCurrentStock(0);
+        product.setMinStockLevel(0);
+        return productService.createProduct(product);
+    }
+    
+    private StockTransaction transaction(Product product, String notes) {
+        StockTransaction transaction = new StockTransaction();
+        transaction.setProduct(product);
+        transaction.setTransactionType("IN");
+        transaction.setQuantity(1);
+        transaction.setPreviousStock(0);
+        transaction.setNewStock(1);
+        transaction.setNotes(notes);
+        transaction.setTransactionDate(LocalDateTime.now());
+        return transaction;
+    }
+    
+    private String record(long sequence, Product product, String notes) throws Exception {
+        StockTransactionJournal.JournalRecord record = StockTransactionJournal.JournalRecord.of(transaction(product, notes));
+        record.setSequence(sequence);
+        return objectMapper.writeValueAsString(record);
+    }
+    
+    private List<String> notes(Product product) {
+        return stockTransactionRepository.findByProductId(product.getId()).stream()
+            .map(StockTransaction::getNotes)
+            .toList();
+    }
+    
+    private List<Path> segments() throws Exception {
+        try (Stream<Path> files = Files.list(temp)) {
+            return files.filter(file -> file.getFileName().toString().startsWith("stock-journal-0")).toList();
+        }
+    }
+}
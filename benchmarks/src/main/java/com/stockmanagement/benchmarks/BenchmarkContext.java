@@ -0,0 +1,104 @@
+package com.stockmanagement.benchmarks;
+
+import com.stockmanagement.StockManagementApplication;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.repository.ProductRepository;
+import com.stockmanagement.service.LocationService;
+import com.stockmanagement.service.LowStockRegistry;
+import com.stockmanagement.service.ProductSearchIndex;
+import com.stockmanagement.service.UserService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The application, started once per benchmark JVM against an in-memory H2 database and
+ * seeded with a cashier and a catalog large enough for search to be meaningful.
+ */
+public final class BenchmarkContext {
+    public static final int PRODUCT_COUNT = 5000;
+    // Enough stock that no measurement iteration runs a product dry
+    public static final int INITIAL_STOCK = 1_000_000_000;
+    
+    private static final String[] COLOURS = {"Red", "Blue", "Green", "Black", "White", "Yellow", "Grey", "Orange"};
+    private static final String[] ITEMS = {"Pen", "Notebook", "Stapler", "Marker", "Folder", "Eraser", "Ruler", "Mug",
+        "Bottle", "Charger", "Cable", "Lamp"};
+    private static final String[] CATEGORIES = {"Stationery", "Kitchen", "Electronics", "Office"};
+    
+    private static ConfigurableApplicationContext context;
+    private static User cashier;
+    private static List<Product> products;
+    
+    private BenchmarkContext() {
+    }
+    
+    public static synchronized ConfigurableApplicationContext context() {
+        if (context == null) {
+            start();
+        }
+        return context;
+    }
+    
+    public static <T> T bean(Class<T> type) {
+        return context().getBean(type);
+    }
+    
+    public static User cashier() {
+        context();
+        return cashier;
+    }
+    
+    public static List<Product> products() {
+        context();
+        return products;
+    }
+    
+    private static void start() {
+        // Command line arguments, so they win over application.properties
+        context = new SpringApplicationBuilder(StockManagementApplication.class).run(
+            "--server.port=0",
+            "--spring.main.banner-mode=off",
+            "--spring.datasource.url=jdbc:h2:mem:benchmarks;DB_CLOSE_DELAY=-1",
+            "--spring.datasource.driverClassName=org.h2.Driver",
+            "--spring.datasource.username=sa",
+            "--spring.datasource.password=",
+            "--spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+            "--spring.jpa.hibernate.ddl-auto=create-drop",
+            "--spring.jpa.show-sql=false",
+            "--logging.level.root=WARN",
+            "--logging.level.com.stockmanagement=WARN",
+            "--logging.level.org.springframework.security=WARN",
+            "--archive.directory=" + System.getProperty("java.io.tmpdir"));
+        
+        User user = new User();
+        user.setUsername("bench");
+        user.setPassword("bench123");
+        user.setFullName("Benchmark Cashier");
+        user.setEmail("bench@stockmanagement.com");
+        user.setRole("ADMIN");
+        user.setActive(true);
+        cashier = context.getBean(UserService.class).createUser(user);
+        
+        List<Product> catalog = new ArrayList<>(PRODUCT_COUNT);
+        for (int i = 0; i < PRODUCT_COUNT; i++) {
+            Product product = new Product();
+            product.setName(COLOURS[i % COLOURS.length] + " " + ITEMS[(i / COLOURS.length) % ITEMS.length] + " " + i);
+            product.setSku(String.format("SKU-%05d", i));
+            product.setCategory(CATEGORIES[i % CATEGORIES.length]);
+            product.setPurchasePrice(BigDecimal.valueOf(5 + i % 50));
+            product.setSellingPrice(BigDecimal.valueOf(10 + i % 50, 0).add(new BigDecimal("0.99")));
+            product.setCurrentStock(INITIAL_STOCK);
+            product.setMinStockLevel(10);
+            catalog.add(product);
+        }
+        products = context.getBean(ProductRepository.class).saveAll(catalog);
+        // Saved in bulk, so the stock rows are created in one pass as well
+        context.getBean(LocationService.class).initializeStock();
+        context.getBean(ProductSearchIndex.class).rebuild();
+        context.getBean(LowStockRegistry.class).reconcile();
+    }
+}
@@ -0,0 +1,53 @@
+package com.stockmanagement.benchmarks;
+
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.entity.BillItem;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// Pure in-memory totals, no application context
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BillCalculationBenchmark {
+    @Param({"1", "10", "100"})
+    public int lineItems;
+    
+    private Bill bill;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        bill = new Bill();
+        bill.setTax(new BigDecimal("18.00"));
+        bill.setDiscount(new BigDecimal("5.00"));
+        for (int i = 0; i < lineItems; i++) {
+            BillItem item = new BillItem();
+            item.setBill(bill);
+            item.setQuantity(1 + i % 7);
+            item.setUnitPrice(BigDecimal.valueOf(1099 + i, 2));
+            item.calculateLineTotal();
+            bill.getItems().add(item);
+        }
+    }
+    
+    @Benchmark
+    public BigDecimal calculateTotals() {
+        bill.calculateTotals();
+        return bill.getTotal();
+    }
+    
+    @Benchmark
+    public BigDecimal calculateLineTotals() {
+        BigDecimal last = null;
+        for (BillItem item : bill.getItems()) {
+            item.calculateLineTotal();
+            last = item.getLineTotal();
+        }
+        return last;
+    }
+}
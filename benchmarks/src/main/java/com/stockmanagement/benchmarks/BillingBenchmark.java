@@ -0,0 +1,52 @@
+package com.stockmanagement.benchmarks;
+
+import com.stockmanagement.dto.BillItemRequest;
+import com.stockmanagement.dto.BillRequest;
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.service.BillingService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Full checkout: bill number, stock movements, bill and item inserts and sales rollups
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BillingBenchmark {
+    @Param({"1", "10", "100"})
+    public int lineItems;
+    
+    private BillingService billingService;
+    private User cashier;
+    private BillRequest request;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        billingService = BenchmarkContext.bean(BillingService.class);
+        cashier = BenchmarkContext.cashier();
+        List<Product> products = BenchmarkContext.products();
+        
+        List<BillItemRequest> items = new ArrayList<>(lineItems);
+        for (int i = 0; i < lineItems; i++) {
+            items.add(new BillItemRequest(products.get(i * 37 % products.size()).getId(), 1 + i % 3));
+        }
+        request = new BillRequest();
+        request.setCustomerName("Benchmark Customer");
+        request.setPaymentMethod("CASH");
+        request.setTax(18.0);
+        request.setDiscount(5.0);
+        request.setItems(items);
+    }
+    
+    @Benchmark
+    public Bill createBill() {
+        return billingService.createBill(request, cashier);
+    }
+}
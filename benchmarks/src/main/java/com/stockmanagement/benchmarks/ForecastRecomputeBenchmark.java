@@ -0,0 +1,82 @@
+package com.stockmanagement.benchmarks;
+
+import com.stockmanagement.dto.ForecastRecomputeResult;
+import com.stockmanagement.service.DemandForecastService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Full demand forecast recompute over a catalog of 100k SKUs with 2M movements spread over the
+ * last 90 days, three quarters of them OUT. Each run rebuilds every forecast row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class ForecastRecomputeBenchmark {
+    private static final int SKU_COUNT = 100_000;
+    private static final int DAYS = 90;
+    private static final int OUT_PER_SKU = 15;
+    private static final int IN_PER_SKU = 5;
+    private static final int BATCH_SIZE = 5000;
+    
+    private DemandForecastService forecastService;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(BenchmarkContext.bean(DataSource.class));
+        forecastService = BenchmarkContext.bean(DemandForecastService.class);
+        
+        List<Object[]> products = new ArrayList<>(BATCH_SIZE);
+        Timestamp created = Timestamp.valueOf(LocalDate.now().minusDays(DAYS + 1).atStartOfDay());
+        for (int i = BenchmarkContext.PRODUCT_COUNT; i < SKU_COUNT; i++) {
+            products.add(new Object[] {"Forecast Product " + i, String.format("FC-%06d", i), "Forecast",
+                BigDecimal.ONE, BigDecimal.TEN, 0, 10, true, created});
+            if (products.size() == BATCH_SIZE || i == SKU_COUNT - 1) {
+                jdbcTemplate.batchUpdate("INSERT INTO products (name, sku, category, purchase_price, selling_price, " +
+                    "current_stock, min_stock_level, active, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)", products);
+                products.clear();
+            }
+        }
+        
+        // Explicit ids well past the sequence; nothing else inserts movements in this fork
+        List<Long> productIds = jdbcTemplate.queryForList("SELECT id FROM products ORDER BY id", Long.class);
+        Random random = new Random(42);
+        LocalDate today = LocalDate.now();
+        long id = 100_000_000L;
+        List<Object[]> movements = new ArrayList<>(BATCH_SIZE);
+        for (Long productId : productIds) {
+            for (int i = 0; i < OUT_PER_SKU + IN_PER_SKU; i++) {
+                Timestamp at = Timestamp.valueOf(today.minusDays(1 + random.nextInt(DAYS)).atStartOfDay()
+                    .plusSeconds(random.nextInt(86_400)));
+                movements.add(new Object[] {id++, productId, i < OUT_PER_SKU ? "OUT" : "IN", 1 + random.nextInt(5), at});
+                if (movements.size() == BATCH_SIZE) {
+                    insertMovements(jdbcTemplate, movements);
+                }
+            }
+        }
+        insertMovements(jdbcTemplate, movements);
+    }
+    
+    @Benchmark
+    public ForecastRecomputeResult recompute() {
+        return forecastService.recompute(DAYS);
+    }
+    
+    private static void insertMovements(JdbcTemplate jdbcTemplate, List<Object[]> movements) {
+        jdbcTemplate.batchUpdate("INSERT INTO stock_transactions (id, product_id, transaction_type, quantity, " +
+            "previous_stock, new_stock, transaction_date) VALUES (?, ?, ?, ?, 0, 0, ?)", movements);
+        movements.clear();
+    }
+}
@@ -0,0 +1,71 @@
+package com.stockmanagement.benchmarks;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.stockmanagement.dto.BillResponse;
+import com.stockmanagement.entity.Bill;
+import com.stockmanagement.entity.BillItem;
+import com.stockmanagement.entity.Product;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+// Serialization with the application's own ObjectMapper configuration
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBenchmark {
+    private static final int BILL_LINES = 10;
+    
+    private ObjectMapper objectMapper;
+    private Product product;
+    private Bill bill;
+    private BillResponse billResponse;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = BenchmarkContext.bean(ObjectMapper.class);
+        product = BenchmarkContext.products().get(0);
+        
+        bill = new Bill();
+        bill.setId(1L);
+        bill.setBillNumber("BILL-20240101-0001");
+        bill.setCustomerName("Benchmark Customer");
+        bill.setPaymentMethod("CASH");
+        bill.setStatus("COMPLETED");
+        bill.setUser(BenchmarkContext.cashier());
+        for (int i = 0; i < BILL_LINES; i++) {
+            Product lineProduct = BenchmarkContext.products().get(i);
+            BillItem item = new BillItem();
+            item.setId((long) i + 1);
+            item.setBill(bill);
+            item.setProduct(lineProduct);
+            item.setQuantity(1 + i % 3);
+            item.setUnitPrice(lineProduct.getSellingPrice());
+            item.calculateLineTotal();
+            bill.getItems().add(item);
+        }
+        bill.setTax(new BigDecimal("18.00"));
+        bill.calculateTotals();
+        billResponse = BillResponse.from(bill);
+    }
+    
+    @Benchmark
+    public byte[] serializeProduct() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(product);
+    }
+    
+    @Benchmark
+    public byte[] serializeBill() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(bill);
+    }
+    
+    @Benchmark
+    public byte[] serializeBillResponse() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(billResponse);
+    }
+}
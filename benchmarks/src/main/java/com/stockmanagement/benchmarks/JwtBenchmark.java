@@ -0,0 +1,44 @@
+package com.stockmanagement.benchmarks;
+
+import com.stockmanagement.security.CustomUserDetailsService;
+import com.stockmanagement.security.JwtUtil;
+import io.jsonwebtoken.Claims;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JwtBenchmark {
+    private JwtUtil jwtUtil;
+    private UserDetails userDetails;
+    private String token;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        jwtUtil = BenchmarkContext.bean(JwtUtil.class);
+        userDetails = BenchmarkContext.bean(CustomUserDetailsService.class)
+            .loadUserByUsername(BenchmarkContext.cashier().getUsername());
+        token = jwtUtil.generateToken(userDetails);
+    }
+    
+    @Benchmark
+    public String generateToken() {
+        return jwtUtil.generateToken(userDetails);
+    }
+    
+    @Benchmark
+    public Claims parseToken() {
+        return jwtUtil.parseToken(token);
+    }
+    
+    @Benchmark
+    public Boolean validateToken() {
+        return jwtUtil.validateToken(token, userDetails);
+    }
+}
@@ -0,0 +1,145 @@
+package com.stockmanagement.benchmarks;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load generator for comparing request execution modes of a running server.
+ * Each client sends its next request as soon as the previous one completes, and latencies are
+ * recorded once the warm-up is over. Start the server once with VIRTUAL_THREADS=false and
+ * once with VIRTUAL_THREADS=true (Java 21+) and run this against both.
+ *
+ * The default path is the first keyset page of bills: a bounded response that costs two
+ * queries, so each request mostly waits on JDBC. Seed some bills before running it.
+ *
+ * Settings are system properties: load.url, load.path, load.clients, load.seconds,
+ * load.warmup-seconds, load.username and load.password.
+ */
+public final class LoadTest {
+    
+    private LoadTest() {
+    }
+    
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url", "http://localhost:8080");
+        String path = System.getProperty("load.path", "/api/bills?limit=20");
+        int clients = Integer.getInteger("load.clients", 1000);
+        int seconds = Integer.getInteger("load.seconds", 30);
+        int warmupSeconds = Integer.getInteger("load.warmup-seconds", 10);
+        String username = System.getProperty("load.username", "admin");
+        String password = System.getProperty("load.password", "admin123");
+        
+        HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+        String token = login(client, url, username, password);
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + path))
+            .header("Authorization", "Bearer " + token)
+            .timeout(Duration.ofSeconds(60))
+            .GET()
+            .build();
+        
+        long start = System.nanoTime();
+        long measureFrom = start + Duration.ofSeconds(warmupSeconds).toNanos();
+        long measureUntil = measureFrom + Duration.ofSeconds(seconds).toNanos();
+        AtomicLong errors = new AtomicLong();
+        long[][] latencies = new long[clients][];
+        int[] counts = new int[clients];
+        CountDownLatch done = new CountDownLatch(clients);
+        
+        for (int i = 0; i < clients; i++) {
+            int clientIndex = i;
+            Thread thread = new Thread(() -> {
+                long[] samples = new long[1024];
+                int count = 0;
+                try {
+                    while (true) {
+                        long sent = System.nanoTime();
+                        if (sent >= measureUntil) {
+                            break;
+                        }
+                        boolean ok;
+                        try {
+                            ok = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200;
+                        } catch (Exception e) {
+                            ok = false;
+                        }
+                        long received = System.nanoTime();
+                        if (sent < measureFrom) {
+                            continue;
+                        }
+                        if (!ok) {
+                            errors.incrementAndGet();
+                            continue;
+                        }
+                        if (count == samples.length) {
+                            samples = Arrays.copyOf(samples, count * 2);
+                        }
+                        samples[count++] = received - sent;
+                    }
+                } finally {
+                    latencies[clientIndex] = samples;
+                    counts[clientIndex] = count;
+                    done.countDown();
+                }
+            }, "load-client-" + i);
+            thread.setDaemon(true);
+            thread.start();
+        }
+        done.await();
+        
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        long[] all = new long[total];
+        int offset = 0;
+        for (int i = 0; i < clients; i++) {
+            System.arraycopy(latencies[i], 0, all, offset, counts[i]);
+            offset += counts[i];
+        }
+        Arrays.sort(all);
+        
+        System.out.printf("GET %s%s, %d clients, %ds measured after %ds warm-up%n", url, path, clients, seconds,
+            warmupSeconds);
+        System.out.printf("requests: %d, errors: %d, throughput: %.1f req/s%n", total, errors.get(),
+            total / (double) seconds);
+        System.out.printf("latency ms  p50: %.2f  p90: %.2f  p99: %.2f  p99.9: %.2f  max: %.2f%n",
+            percentile(all, 0.50), percentile(all, 0.90), percentile(all, 0.99), percentile(all, 0.999),
+            all.length == 0 ? 0.0 : all[all.length - 1] / 1e6);
+    }
+    
+    private static String login(HttpClient client, String url, String username, String password) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        String body = mapper.createObjectNode()
+            .put("username", username)
+            .put("password", password)
+            .toString();
+        HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/auth/login"))
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body))
+            .build();
+        JsonNode response = mapper.readTree(client.send(request, HttpResponse.BodyHandlers.ofString()).body());
+        if (!response.path("success").asBoolean()) {
+            throw new IllegalStateException("Login failed: " + response.path("message").asText());
+        }
+        return response.path("data").path("token").asText();
+    }
+    
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0.0;
+        }
+        int index = (int) Math.ceil(quantile * sorted.length) - 1;
+        return sorted[Math.max(index, 0)] / 1e6;
+    }
+}
@@ -0,0 +1,41 @@
+package com.stockmanagement.benchmarks;
+
+import com.stockmanagement.entity.Product;
+import com.stockmanagement.repository.ProductRepository;
+import com.stockmanagement.service.ProductService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Index-backed search against the LIKE query it replaced, over BenchmarkContext.PRODUCT_COUNT products
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProductSearchBenchmark {
+    @Param({"blue", "SKU-0042", "note", "xyz"})
+    public String keyword;
+    
+    private ProductService productService;
+    private ProductRepository productRepository;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        productService = BenchmarkContext.bean(ProductService.class);
+        productRepository = BenchmarkContext.bean(ProductRepository.class);
+        BenchmarkContext.products();
+    }
+    
+    @Benchmark
+    public List<Product> indexedSearch() {
+        return productService.searchProducts(keyword, 20);
+    }
+    
+    @Benchmark
+    public List<Product> likeQuery() {
+        return productRepository.searchProducts(keyword);
+    }
+}
@@ -0,0 +1,55 @@
+package com.stockmanagement.benchmarks;
+
+import com.stockmanagement.dto.StockUpdateRequest;
+import com.stockmanagement.entity.StockTransaction;
+import com.stockmanagement.entity.User;
+import com.stockmanagement.service.StockService;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StockBenchmark {
+    private static final int BATCH_SIZE = 10;
+    
+    private StockService stockService;
+    private User cashier;
+    private StockUpdateRequest stockIn;
+    private StockUpdateRequest stockOut;
+    private List<StockUpdateRequest> batch;
+    
+    @Setup(Level.Trial)
+    public void setUp() {
+        stockService = BenchmarkContext.bean(StockService.class);
+        cashier = BenchmarkContext.cashier();
+        Long productId = BenchmarkContext.products().get(1).getId();
+        stockIn = new StockUpdateRequest(productId, 5, "IN", "Benchmark", null);
+        stockOut = new StockUpdateRequest(productId, 1, "OUT", "Benchmark", null);
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            batch.add(new StockUpdateRequest(BenchmarkContext.products().get(100 + i).getId(), 5, "IN", "Benchmark", null));
+        }
+    }
+    
+    @Benchmark
+    public StockTransaction updateStockIn() {
+        return stockService.updateStock(stockIn, cashier);
+    }
+    
+    @Benchmark
+    public StockTransaction updateStockOut() {
+        return stockService.updateStock(stockOut, cashier);
+    }
+    
+    @Benchmark
+    public List<StockTransaction> updateStockBatch() {
+        return stockService.updateStockBatch(batch, cashier);
+    }
+}
@@ -35,7 +35,7 @@ export default function Billing() {
 
   const loadBills = async () => {
     const result = await apiCall('/bills');
-    if (result?.success) setBills(result.data);
+    if (result?.success) setBills(result.data.items);
   };
 
   const selectedProduct = products.find(p => p.id === parseInt(selectedProductId));